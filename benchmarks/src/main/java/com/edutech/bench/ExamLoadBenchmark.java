@@ -0,0 +1,105 @@
+package com.edutech.bench;
+
+import com.edutech.db.ExamLoader;
+import com.edutech.db.ExamWriter;
+import com.edutech.model.Exam;
+import com.edutech.scoring.AnswerKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the exam graph from result sets with ExamLoader, against H2 in
+ * MySQL mode holding the same tables and indexes the migrations create.
+ * Rows are written with ExamWriter, so ids and flags look like production.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExamLoadBenchmark {
+
+    // Schema after migration V3, minus the users and results tables the loader never reads
+    private static final String[] SCHEMA = {
+        "CREATE TABLE exams (id BINARY(16) PRIMARY KEY, title VARCHAR(255), " +
+            "description TEXT, duration_minutes INT)",
+        "CREATE TABLE questions (id BINARY(16) PRIMARY KEY, exam_id BINARY(16), text TEXT, " +
+            "FOREIGN KEY (exam_id) REFERENCES exams(id) ON DELETE CASCADE)",
+        "CREATE TABLE options (id BINARY(16) PRIMARY KEY, question_id BINARY(16), " +
+            "text VARCHAR(255), is_correct BOOLEAN DEFAULT FALSE, " +
+            "FOREIGN KEY (question_id) REFERENCES questions(id) ON DELETE CASCADE)",
+        "CREATE INDEX idx_questions_exam ON questions (exam_id, id)",
+        "CREATE INDEX idx_options_question_correct ON options (question_id, is_correct)"
+    };
+
+    // Other exams in the tables, so the loader has to seek rather than scan everything
+    private static final int OTHER_EXAMS = 20;
+
+    @Param({"10", "50", "200"})
+    public int questions;
+
+    @Param({"4", "6"})
+    public int options;
+
+    private Connection conn;
+    private String examId;
+
+    @Setup
+    public void setup() throws SQLException {
+        String url = "jdbc:h2:mem:exams_" + questions + "_" + options + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+        conn = DriverManager.getConnection(url, "sa", "");
+        try (Statement st = conn.createStatement()) {
+            for (String sql : SCHEMA) st.execute(sql);
+        }
+
+        conn.setAutoCommit(false);
+        try (ExamWriter writer = new ExamWriter(conn)) {
+            for (int i = 0; i < OTHER_EXAMS / 2; i++) writer.add(Fixtures.newExamRequest(questions, options, 100 + i));
+            examId = writer.add(Fixtures.newExamRequest(questions, options, 42));
+            for (int i = OTHER_EXAMS / 2; i < OTHER_EXAMS; i++) writer.add(Fixtures.newExamRequest(questions, options, 100 + i));
+            writer.flush();
+        }
+        conn.commit();
+        conn.setAutoCommit(true);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("DROP ALL OBJECTS");
+        }
+        conn.close();
+    }
+
+    @Benchmark
+    public Exam loadStudentView() throws SQLException {
+        return ExamLoader.load(conn, examId, false);
+    }
+
+    @Benchmark
+    public Exam loadAdminView() throws SQLException {
+        return ExamLoader.load(conn, examId, true);
+    }
+
+    @Benchmark
+    public AnswerKey loadAnswerKey() throws SQLException {
+        return ExamLoader.loadAnswerKey(conn, examId);
+    }
+}
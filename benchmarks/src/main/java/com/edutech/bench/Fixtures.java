@@ -0,0 +1,178 @@
+package com.edutech.bench;
+
+import com.edutech.model.Exam;
+import com.edutech.model.Option;
+import com.edutech.model.Question;
+import com.edutech.scoring.AnswerKey;
+import com.edutech.util.Ids;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Deterministic exam graphs, submissions and minimal servlet request/response
+ * stand-ins, so every suite measures the same shapes from run to run.
+ */
+public class Fixtures {
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    // Roughly the length of real question and option texts
+    private static final String QUESTION_TEXT =
+        "Which of the following statements about the topic covered in this section is correct? ";
+    private static final String OPTION_TEXT = "A plausible answer choice of ordinary length ";
+
+    /** A create request as the admin dashboard sends it: no ids, correctOptionIndex set. */
+    public static Exam newExamRequest(int questions, int options, long seed) {
+        Random random = new Random(seed);
+        Exam exam = new Exam();
+        exam.setTitle("Benchmark exam " + seed);
+        exam.setDescription("Generated with " + questions + " questions of " + options + " options");
+        exam.setDurationMinutes(60);
+        List<Question> qs = new ArrayList<>(questions);
+        for (int i = 0; i < questions; i++) {
+            Question q = new Question();
+            q.setText(QUESTION_TEXT + i);
+            List<Option> opts = new ArrayList<>(options);
+            for (int j = 0; j < options; j++) opts.add(new Option(null, OPTION_TEXT + j, null, null));
+            q.setOptions(opts);
+            q.setCorrectOptionIndex(random.nextInt(options));
+            qs.add(q);
+        }
+        exam.setQuestions(qs);
+        return exam;
+    }
+
+    /** A stored exam with ids, as ExamLoader returns it (answers included for the admin view). */
+    public static Exam exam(int questions, int options, long seed, boolean includeAnswers) {
+        Exam exam = newExamRequest(questions, options, seed);
+        exam.setId(Ids.newId());
+        for (Question q : exam.getQuestions()) {
+            q.setId(Ids.newId());
+            q.setExam_id(exam.getId());
+            for (int j = 0; j < q.getOptions().size(); j++) {
+                Option o = q.getOptions().get(j);
+                o.setId(Ids.newId());
+                o.setQuestion_id(q.getId());
+                if (includeAnswers) {
+                    boolean correct = j == q.getCorrectOptionIndex();
+                    o.setCorrect(correct);
+                    if (correct) q.setCorrect_option_id(o.getId());
+                }
+            }
+            q.setCorrectOptionIndex(null);
+        }
+        return exam;
+    }
+
+    public static AnswerKey answerKey(Exam exam) {
+        List<String> questionIds = new ArrayList<>();
+        List<List<String>> correct = new ArrayList<>();
+        for (Question q : exam.getQuestions()) {
+            questionIds.add(q.getId());
+            correct.add(q.getCorrect_option_id() == null ? List.of() : List.of(q.getCorrect_option_id()));
+        }
+        return AnswerKey.of(exam.getId(), exam.getTitle(), questionIds, correct);
+    }
+
+    /** Answers every question, picking the correct option about {@code correctRatio} of the time. */
+    public static Map<String, String> answers(Exam exam, double correctRatio, long seed) {
+        Random random = new Random(seed);
+        Map<String, String> answers = new LinkedHashMap<>();
+        for (Question q : exam.getQuestions()) {
+            List<Option> opts = q.getOptions();
+            String pick = random.nextDouble() < correctRatio && q.getCorrect_option_id() != null
+                ? q.getCorrect_option_id()
+                : opts.get(random.nextInt(opts.size())).getId();
+            answers.put(q.getId(), pick);
+        }
+        return answers;
+    }
+
+    public static byte[] toJson(Object value) throws IOException {
+        return mapper.writeValueAsBytes(value);
+    }
+
+    /** A request that only answers what JsonUtil reads: the body and its encoding. */
+    public static HttpServletRequest request(byte[] body) {
+        return (HttpServletRequest) Proxy.newProxyInstance(
+            Fixtures.class.getClassLoader(), new Class<?>[] { HttpServletRequest.class },
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getReader":
+                        return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8));
+                    case "getInputStream":
+                        return new BodyInputStream(body);
+                    case "getCharacterEncoding":
+                        return "UTF-8";
+                    case "getContentLength":
+                        return body.length;
+                    case "getContentLengthLong":
+                        return (long) body.length;
+                    default:
+                        return defaultValue(method.getReturnType());
+                }
+            });
+    }
+
+    /** A response whose body goes nowhere, so only the serializer's own cost is measured. */
+    public static HttpServletResponse discardingResponse() {
+        PrintWriter writer = new PrintWriter(Writer.nullWriter());
+        ServletOutputStream out = new ServletOutputStream() {
+            @Override public boolean isReady() { return true; }
+            @Override public void setWriteListener(WriteListener listener) { }
+            @Override public void write(int b) { }
+            @Override public void write(byte[] b, int off, int len) { }
+        };
+        return (HttpServletResponse) Proxy.newProxyInstance(
+            Fixtures.class.getClassLoader(), new Class<?>[] { HttpServletResponse.class },
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getWriter":
+                        return writer;
+                    case "getOutputStream":
+                        return out;
+                    default:
+                        return defaultValue(method.getReturnType());
+                }
+            });
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) return null;
+        if (type == boolean.class) return false;
+        if (type == long.class) return 0L;
+        return 0;
+    }
+
+    private static final class BodyInputStream extends ServletInputStream {
+        private final ByteArrayInputStream in;
+
+        BodyInputStream(byte[] body) { this.in = new ByteArrayInputStream(body); }
+
+        @Override public boolean isFinished() { return in.available() == 0; }
+        @Override public boolean isReady() { return true; }
+        @Override public void setReadListener(ReadListener listener) { }
+        @Override public int read() { return in.read(); }
+        @Override public int read(byte[] b, int off, int len) { return in.read(b, off, len); }
+    }
+
+    private Fixtures() { }
+}
@@ -0,0 +1,154 @@
+package com.edutech.bench;
+
+import com.edutech.util.Ids;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Key layout of the results table, before and after migration V3: inserts into
+ * a table that already holds prefill rows, keyed by
+ *  - BINARY16_V7:     Ids.newId() stored as BINARY(16), what the schema uses now
+ *  - VARCHAR36_RANDOM: UUID.randomUUID() as VARCHAR(36), what it used before
+ *  - BINARY16_RANDOM: random UUIDs as BINARY(16), to separate width from ordering
+ *
+ * H2 runs file-backed with a small page cache, so keys that land on random
+ * B-tree pages cost page loads and splits as they would on disk. After each
+ * trial the table's size on disk (rows plus indexes) is printed per row.
+ *
+ *   java -jar benchmarks.jar KeyLayout -p prefill=1000000
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeyLayoutBenchmark {
+    private static final int BATCH = 500;
+
+    public enum Layout {
+        BINARY16_V7("BINARY(16)"),
+        VARCHAR36_RANDOM("VARCHAR(36)"),
+        BINARY16_RANDOM("BINARY(16)");
+
+        final String type;
+
+        Layout(String type) {
+            this.type = type;
+        }
+    }
+
+    @Param
+    public Layout layout;
+
+    @Param({"200000"})
+    public int prefill;
+
+    private Path dir;
+    private Connection conn;
+    private PreparedStatement insert;
+    private String[] studentIds;
+    private String examId;
+    private long rows;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException, IOException {
+        dir = Files.createTempDirectory("key-layout");
+        conn = DriverManager.getConnection("jdbc:h2:file:" + dir.resolve("db") +
+            ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;CACHE_SIZE=8192", "sa", "");
+        try (Statement st = conn.createStatement()) {
+            // The results table as migration V3 leaves it, with the key type under test
+            st.execute("CREATE TABLE results (id " + layout.type + " PRIMARY KEY, student_id " + layout.type + ", " +
+                "exam_id " + layout.type + ", score INT, total_questions INT, submitted_at TIMESTAMP)");
+            st.execute("CREATE INDEX idx_results_student_time ON results (student_id, submitted_at, id)");
+            st.execute("CREATE INDEX idx_results_exam ON results (exam_id)");
+        }
+        insert = conn.prepareStatement("INSERT INTO results (id, student_id, exam_id, score, total_questions, submitted_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?)");
+
+        // A school's worth of students sitting one exam
+        studentIds = new String[2000];
+        for (int i = 0; i < studentIds.length; i++) studentIds[i] = newKey();
+        examId = newKey();
+
+        conn.setAutoCommit(false);
+        for (int done = 0; done < prefill; done += BATCH) insertBatch();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException, IOException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT DISK_SPACE_USED('results')")) {
+            rs.next();
+            long bytes = rs.getLong(1);
+            System.out.printf("%n>> %s: %d rows, %d KiB on disk for rows and indexes, %.1f bytes per row%n",
+                layout, rows, bytes / 1024, (double) bytes / rows);
+        }
+        insert.close();
+        conn.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(p);
+        }
+    }
+
+    /** One flush of the result writer: a batch of rows in one transaction. Scores are per row. */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void insertResults() throws SQLException {
+        insertBatch();
+    }
+
+    private void insertBatch() throws SQLException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (int i = 0; i < BATCH; i++) {
+            bind(1, newKey());
+            bind(2, studentIds[random.nextInt(studentIds.length)]);
+            bind(3, examId);
+            insert.setInt(4, random.nextInt(21));
+            insert.setInt(5, 20);
+            insert.setTimestamp(6, now);
+            insert.addBatch();
+        }
+        insert.executeBatch();
+        conn.commit();
+        rows += BATCH;
+    }
+
+    private String newKey() {
+        return layout == Layout.BINARY16_V7 ? Ids.newId() : UUID.randomUUID().toString();
+    }
+
+    private void bind(int index, String key) throws SQLException {
+        if (layout == Layout.VARCHAR36_RANDOM) insert.setString(index, key);
+        else Ids.bind(insert, index, key);
+    }
+}
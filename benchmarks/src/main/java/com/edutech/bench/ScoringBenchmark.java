@@ -0,0 +1,72 @@
+package com.edutech.bench;
+
+import com.edutech.model.Exam;
+import com.edutech.scoring.AnswerKey;
+import com.edutech.util.JsonUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scoring as handleSubmitExam does it: the submission body is parsed into a
+ * Map and walked against the compiled AnswerKey from AnswerKeyCache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScoringBenchmark {
+
+    @Param({"10", "50", "200"})
+    public int questions;
+
+    @Param({"4", "6"})
+    public int options;
+
+    private Exam exam;
+    private AnswerKey key;
+    private Map<String, String> answers;
+    private byte[] body;
+
+    @Setup
+    public void setup() throws IOException {
+        exam = Fixtures.exam(questions, options, 42, true);
+        key = Fixtures.answerKey(exam);
+        answers = Fixtures.answers(exam, 0.7, 7);
+        body = Fixtures.toJson(answers);
+    }
+
+    /** Steady state: the key is cached and the body already parsed. */
+    @Benchmark
+    public int score() {
+        return key.score(answers);
+    }
+
+    /** Everything handleSubmitExam does in memory before the result is queued. */
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public int parseAndScore() throws IOException {
+        Map<String, String> parsed = JsonUtil.parseBody(Fixtures.request(body), Map.class);
+        return key.score(parsed);
+    }
+
+    /** Cache miss: compiling the key from the loaded rows, then scoring. */
+    @Benchmark
+    public int compileAndScore() {
+        return Fixtures.answerKey(exam).score(answers);
+    }
+}
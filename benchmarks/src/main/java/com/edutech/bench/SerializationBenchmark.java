@@ -0,0 +1,77 @@
+package com.edutech.bench;
+
+import com.edutech.cache.ExamSnapshot;
+import com.edutech.cache.ExamView;
+import com.edutech.model.Exam;
+import com.edutech.util.EncodedJson;
+import com.edutech.util.JsonUtil;
+import jakarta.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of Exam -> Question -> Option graphs through JsonUtil,
+ * for both views: writing to a response, encoding once for the cache, and the
+ * full snapshot build an ExamCache miss pays.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"10", "50", "200"})
+    public int questions;
+
+    @Param({"4", "6"})
+    public int options;
+
+    @Param({"STUDENT", "ADMIN"})
+    public ExamView view;
+
+    private Exam exam;
+    private HttpServletResponse response;
+
+    @Setup
+    public void setup() {
+        exam = Fixtures.exam(questions, options, 42, view.includesAnswers());
+        response = Fixtures.discardingResponse();
+    }
+
+    /** The uncached path (exam list, results) straight to the response writer. */
+    @Benchmark
+    public HttpServletResponse sendJson() throws IOException {
+        JsonUtil.sendJson(response, exam);
+        return response;
+    }
+
+    @Benchmark
+    public EncodedJson encode() throws IOException {
+        return JsonUtil.encode(exam, Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public EncodedJson encodeWithGzip() throws IOException {
+        return JsonUtil.encode(exam, 0);
+    }
+
+    /** What an ExamCache miss costs after the rows are loaded: copy, encode, gzip and hash. */
+    @Benchmark
+    public ExamSnapshot snapshot() throws IOException {
+        return ExamSnapshot.of(exam, view, 1024);
+    }
+}
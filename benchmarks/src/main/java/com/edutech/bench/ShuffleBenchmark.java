@@ -0,0 +1,74 @@
+package com.edutech.bench;
+
+import com.edutech.cache.ExamShuffle;
+import com.edutech.cache.ExamSnapshot;
+import com.edutech.cache.ExamView;
+import com.edutech.util.Ids;
+import com.edutech.util.JsonUtil;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serving a cached student snapshot as is versus in the caller's shuffled
+ * order, with the per-request work included (seed from the two ids, the
+ * permutations and the reordered writes).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShuffleBenchmark {
+
+    @Param({"10", "50", "200"})
+    public int questions;
+
+    @Param({"4", "6"})
+    public int options;
+
+    private ExamSnapshot snapshot;
+    private String examId;
+    private String studentId;
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+
+    @Setup
+    public void setup() throws IOException {
+        snapshot = ExamSnapshot.of(Fixtures.exam(questions, options, 42, false), ExamView.STUDENT, Integer.MAX_VALUE);
+        examId = snapshot.getExam().getId();
+        studentId = Ids.newId();
+        request = Fixtures.request(new byte[0]);
+        response = Fixtures.discardingResponse();
+    }
+
+    /** The shared order, pre-encoded bytes written in one go. */
+    @Benchmark
+    public HttpServletResponse unshuffled() throws IOException {
+        JsonUtil.sendEncoded(request, response, snapshot.getBody());
+        return response;
+    }
+
+    /** What ExamServlet does for a student when EXAM_SHUFFLE is on. */
+    @Benchmark
+    public HttpServletResponse shuffled() throws IOException {
+        long seed = ExamShuffle.seed(examId, studentId);
+        JsonUtil.sendVariant(request, response, snapshot.getBody(), Long.toHexString(seed), snapshot.getLength(),
+            out -> snapshot.writeShuffled(out, seed));
+        return response;
+    }
+}
@@ -0,0 +1,78 @@
+package com.edutech.bench;
+
+import com.edutech.model.Exam;
+import com.edutech.scoring.AnswerKey;
+import com.edutech.scoring.SubmissionReader;
+import com.edutech.util.JsonUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing request bodies through JsonUtil.parseBody: a student's answers
+ * (question id -> option id) and an admin's exam create request; and the
+ * answers read and scored the way submissions are, through SubmissionReader
+ * versus a parsed Map.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SubmissionParseBenchmark {
+
+    @Param({"10", "50", "200"})
+    public int questions;
+
+    @Param({"4", "6"})
+    public int options;
+
+    private byte[] submission;
+    private byte[] createRequest;
+    private AnswerKey key;
+
+    @Setup
+    public void setup() throws IOException {
+        Exam exam = Fixtures.exam(questions, options, 42, true);
+        submission = Fixtures.toJson(Fixtures.answers(exam, 0.7, 7));
+        createRequest = Fixtures.toJson(Fixtures.newExamRequest(questions, options, 42));
+        key = Fixtures.answerKey(exam);
+    }
+
+    @Benchmark
+    public Map<?, ?> parseSubmission() throws IOException {
+        return JsonUtil.parseBody(Fixtures.request(submission), Map.class);
+    }
+
+    /** What submissions did before: bind to a Map, then score and cut down from it. */
+    @Benchmark
+    public Map<String, String> scoreFromMap() throws IOException {
+        Map<String, ?> answers = JsonUtil.parseBody(Fixtures.request(submission), Map.class);
+        return key.score(answers) >= 0 ? key.chosen(answers) : null;
+    }
+
+    /** What ExamServlet does now: tokens straight into the key's order. */
+    @Benchmark
+    public Map<String, String> scoreStreamed() throws IOException {
+        String[] answers = SubmissionReader.read(Fixtures.request(submission), key);
+        return key.score(answers) >= 0 ? key.chosen(answers) : null;
+    }
+
+    @Benchmark
+    public Exam parseCreateExam() throws IOException {
+        return JsonUtil.parseBody(Fixtures.request(createRequest), Exam.class);
+    }
+}
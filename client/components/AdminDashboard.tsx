@@ -1,14 +1,17 @@
 
 import React, { useState, useEffect } from 'react';
 import { api } from '../services/api';
-import { Exam, Question, ExamResult, User, UserRole } from '../types';
+import { Exam, Question, ExamResult, RosterImportReport, User, UserRole } from '../types';
 
 type DashboardView = 'results' | 'create' | 'users';
 
 const AdminDashboard: React.FC = () => {
   const [view, setView] = useState<DashboardView>('results');
   const [results, setResults] = useState<ExamResult[]>([]);
+  const [resultsCursor, setResultsCursor] = useState<string | null>(null);
   const [students, setStudents] = useState<User[]>([]);
+  const [studentsCursor, setStudentsCursor] = useState<string | null>(null);
+  const [studentSearch, setStudentSearch] = useState('');
   const [loading, setLoading] = useState(false);
 
   // Exam Creation State
@@ -20,6 +23,7 @@ const AdminDashboard: React.FC = () => {
   // User Creation State
   const [newUsername, setNewUsername] = useState('');
   const [newPassword, setNewPassword] = useState('');
+  const [rosterReport, setRosterReport] = useState<RosterImportReport | null>(null);
 
   useEffect(() => {
     loadData();
@@ -29,11 +33,13 @@ const AdminDashboard: React.FC = () => {
     setLoading(true);
     try {
       if (view === 'results') {
-        const data = await api.getResults();
-        setResults(data);
+        const page = await api.getResults();
+        setResults(page.items);
+        setResultsCursor(page.nextCursor);
       } else if (view === 'users') {
-        const data = await api.getStudents();
-        setStudents(data);
+        const page = await api.getStudents(studentSearch);
+        setStudents(page.items);
+        setStudentsCursor(page.nextCursor);
       }
     } catch (err) {
       console.error(err);
@@ -42,6 +48,20 @@ const AdminDashboard: React.FC = () => {
     }
   };
 
+  const loadMoreResults = async () => {
+    if (!resultsCursor) return;
+    setLoading(true);
+    try {
+      const page = await api.getResults(resultsCursor);
+      setResults(prev => [...prev, ...page.items]);
+      setResultsCursor(page.nextCursor);
+    } catch (err) {
+      console.error(err);
+    } finally {
+      setLoading(false);
+    }
+  };
+
   const addQuestion = () => {
     const qId = Date.now().toString();
     const newQ: Question = {
@@ -106,6 +126,40 @@ const AdminDashboard: React.FC = () => {
     }
   };
 
+  const loadMoreStudents = async () => {
+    if (!studentsCursor) return;
+    setLoading(true);
+    try {
+      const page = await api.getStudents(studentSearch, studentsCursor);
+      setStudents(prev => [...prev, ...page.items]);
+      setStudentsCursor(page.nextCursor);
+    } catch (err) {
+      console.error(err);
+    } finally {
+      setLoading(false);
+    }
+  };
+
+  const handleSearchStudents = async (e: React.FormEvent) => {
+    e.preventDefault();
+    await loadData();
+  };
+
+  const handleImportRoster = async (e: React.ChangeEvent<HTMLInputElement>) => {
+    const file = e.target.files?.[0];
+    e.target.value = '';
+    if (!file) return;
+    setLoading(true);
+    try {
+      setRosterReport(await api.importStudents(file));
+      await loadData();
+    } catch (err: any) {
+      alert(err.message);
+    } finally {
+      setLoading(false);
+    }
+  };
+
   const handleCreateUser = async (e: React.FormEvent) => {
     e.preventDefault();
     if (!newUsername || !newPassword) return;
@@ -208,6 +262,17 @@ const AdminDashboard: React.FC = () => {
               </tbody>
             </table>
           </div>
+          {resultsCursor && (
+            <div className="p-4 border-t border-slate-100 text-center">
+              <button
+                onClick={loadMoreResults}
+                disabled={loading}
+                className="px-4 py-2 rounded-lg font-bold text-xs text-navy hover:bg-slate-50 disabled:opacity-50"
+              >
+                {loading ? 'Loading...' : 'Load more'}
+              </button>
+            </div>
+          )}
         </div>
       )}
 
@@ -248,11 +313,46 @@ const AdminDashboard: React.FC = () => {
                 </button>
               </form>
             </div>
+            <div className="bg-white p-6 rounded-2xl shadow-xl border border-slate-200 mt-8">
+              <h3 className="font-bold text-navy mb-2 uppercase text-xs tracking-widest">Import Roster</h3>
+              <p className="text-xs text-slate-400 mb-4">CSV with username,password per line, or a JSON array of users.</p>
+              <input
+                type="file"
+                accept=".csv,.json"
+                disabled={loading}
+                onChange={handleImportRoster}
+                className="w-full text-xs text-slate-500"
+              />
+              {rosterReport && (
+                <div className="mt-4 text-xs">
+                  <p className="font-bold text-slate-700">
+                    {rosterReport.created} created, {rosterReport.failed} failed
+                  </p>
+                  <ul className="mt-2 max-h-48 overflow-y-auto space-y-1 text-red-500">
+                    {rosterReport.errors.map((err, i) => (
+                      <li key={i}>
+                        {err.index >= 0 ? `Row ${err.index + 1}` : 'Import'}{err.username ? ` (${err.username})` : ''}: {err.error}
+                      </li>
+                    ))}
+                    {rosterReport.errorsTruncated && <li>…and {rosterReport.errorsTruncated} more</li>}
+                  </ul>
+                </div>
+              )}
+            </div>
           </div>
           <div className="lg:col-span-2">
             <div className="bg-white rounded-2xl shadow-xl border border-slate-200 overflow-hidden">
-              <div className="p-6 bg-slate-50 border-b border-slate-100">
+              <div className="p-6 bg-slate-50 border-b border-slate-100 flex flex-col md:flex-row justify-between md:items-center gap-4">
                 <h3 className="font-bold text-navy uppercase text-xs tracking-widest">Enrolled Students</h3>
+                <form onSubmit={handleSearchStudents}>
+                  <input
+                    type="search"
+                    className="px-4 py-2 rounded-lg border border-slate-200 focus:ring-2 focus:ring-navy outline-none text-sm"
+                    placeholder="Search username"
+                    value={studentSearch}
+                    onChange={(e) => setStudentSearch(e.target.value)}
+                  />
+                </form>
               </div>
               <div className="overflow-x-auto">
                 <table className="w-full text-left">
@@ -288,6 +388,17 @@ const AdminDashboard: React.FC = () => {
                   </tbody>
                 </table>
               </div>
+              {studentsCursor && (
+                <div className="p-4 border-t border-slate-100 text-center">
+                  <button
+                    onClick={loadMoreStudents}
+                    disabled={loading}
+                    className="px-4 py-2 rounded-lg font-bold text-xs text-navy hover:bg-slate-50 disabled:opacity-50"
+                  >
+                    {loading ? 'Loading...' : 'Load more'}
+                  </button>
+                </div>
+              )}
             </div>
           </div>
         </div>
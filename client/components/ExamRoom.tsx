@@ -1,9 +1,12 @@
 
-import React, { useState, useEffect, useCallback } from 'react';
+import React, { useState, useEffect, useCallback, useRef } from 'react';
 import { useParams, useNavigate } from 'react-router-dom';
 import { api } from '../services/api';
 import { Exam } from '../types';
 
+// Clicks within this window are sent as one save
+const AUTOSAVE_DELAY_MS = 1500;
+
 const ExamRoom: React.FC = () => {
   const { examId } = useParams<{ examId: string }>();
   const navigate = useNavigate();
@@ -13,16 +16,30 @@ const ExamRoom: React.FC = () => {
   const [timeLeft, setTimeLeft] = useState<number>(0);
   const [isSubmitting, setIsSubmitting] = useState(false);
   const [violationCount, setViolationCount] = useState(0);
+  const answersChanged = useRef(false);
 
-  // Load Exam
+  // Start (or resume) the attempt, then load the exam and any answers autosaved before a reload or crash
   useEffect(() => {
     const load = async () => {
       if (!examId) return;
+      let attempt;
+      try {
+        attempt = await api.startAttempt(examId);
+      } catch (err) {
+        alert('This exam has already been submitted or is no longer available.');
+        navigate('/');
+        return;
+      }
       try {
-        const found = await api.getExamById(examId);
+        const [found, draft] = await Promise.all([
+          api.getExamById(examId),
+          api.getDraft(examId).catch(() => ({} as Record<string, string>))
+        ]);
         if (found) {
           setExam(found);
-          setTimeLeft(found.durationMinutes * 60);
+          setAnswers(draft);
+          // The server's deadline, so reloading the page never resets the clock
+          setTimeLeft(attempt.remainingSeconds);
         } else {
           navigate('/');
         }
@@ -34,6 +51,15 @@ const ExamRoom: React.FC = () => {
     load();
   }, [examId, navigate]);
 
+  // Autosave once the student pauses; failures are ignored, the final submit carries the answers anyway
+  useEffect(() => {
+    if (!exam || isSubmitting || !answersChanged.current) return;
+    const timer = setTimeout(() => {
+      api.saveDraft(exam.id, answers).catch(err => console.warn("Autosave failed", err));
+    }, AUTOSAVE_DELAY_MS);
+    return () => clearTimeout(timer);
+  }, [answers, exam, isSubmitting]);
+
   const handleSubmit = useCallback(async () => {
     if (isSubmitting || !exam) return;
     setIsSubmitting(true);
@@ -43,10 +69,16 @@ const ExamRoom: React.FC = () => {
       alert('Exam submitted successfully!');
       navigate('/');
     } catch (err) {
+      // After the deadline the server has already submitted the autosaved answers
+      if (timeLeft <= 0) {
+        alert('Time is up. Your saved answers were submitted automatically.');
+        navigate('/');
+        return;
+      }
       alert('Submission failed. Please try again.');
       setIsSubmitting(false);
     }
-  }, [answers, exam, isSubmitting, navigate]);
+  }, [answers, exam, isSubmitting, navigate, timeLeft]);
 
   // Timer logic
   useEffect(() => {
@@ -193,7 +225,10 @@ const ExamRoom: React.FC = () => {
                     name={`q-${currentQuestion.id}`}
                     className="w-5 h-5 text-navy focus:ring-navy cursor-pointer"
                     checked={answers[currentQuestion.id] === option.id}
-                    onChange={() => setAnswers({ ...answers, [currentQuestion.id]: option.id })}
+                    onChange={() => {
+                      answersChanged.current = true;
+                      setAnswers({ ...answers, [currentQuestion.id]: option.id });
+                    }}
                   />
                   <span className={`ml-4 text-lg font-medium transition-colors ${answers[currentQuestion.id] === option.id ? 'text-navy' : 'text-slate-700'}`}>
                     {option.text}
@@ -1,5 +1,5 @@
 
-import { Exam, ExamResult, User, Question } from '../types';
+import { Attempt, Exam, ExamResult, ResultPage, RosterImportReport, User, UserPage, Question } from '../types';
 
 const BASE_URL = `${import.meta.env.VITE_API_URL}/api`;
 /**
@@ -55,7 +55,7 @@ export const api = {
 
   checkSession: async (): Promise<User | null> => {
     try {
-      const response = await fetch(`${BASE_URL}/login`);
+      const response = await fetch(`${BASE_URL}/login`, { credentials: "include" });
       const data = await handleResponse<{ success: boolean; user?: User }>(response);
       return data.success ? data.user || null : null;
     } catch {
@@ -64,7 +64,7 @@ export const api = {
   },
 
   logout: async (): Promise<void> => {
-    const response = await fetch(`${BASE_URL}/logout`, { method: 'POST' });
+    const response = await fetch(`${BASE_URL}/logout`, { method: 'POST', credentials: "include" });
     await handleResponse<{ success: boolean }>(response);
   },
 
@@ -78,7 +78,8 @@ export const api = {
   },
 
   getExamById: async (id: string): Promise<Exam> => {
-    const response = await fetch(`${BASE_URL}/exams/${id}`,{credentials: "include"});
+    // 'no-cache' revalidates with If-None-Match, so an unchanged exam comes back as a bodyless 304
+    const response = await fetch(`${BASE_URL}/exams/${id}`,{credentials: "include", cache: "no-cache"});
     const data = await handleResponse<any>(response);
     return {
       ...data,
@@ -86,6 +87,15 @@ export const api = {
     };
   },
 
+  // Starts the attempt, or resumes it with its original deadline; fails once the exam was submitted
+  startAttempt: async (examId: string): Promise<Attempt> => {
+    const response = await fetch(`${BASE_URL}/exams/${examId}/attempt`, {
+      method: 'POST',
+      credentials: "include",
+    });
+    return handleResponse<Attempt>(response);
+  },
+
   submitExam: async (examId: string, answers: Record<string, string>): Promise<ExamResult> => {
     const response = await fetch(`${BASE_URL}/exams/submit/${examId}`, {
       method: 'POST',
@@ -97,10 +107,28 @@ export const api = {
     return mapResult(data);
   },
 
-  getResults: async (): Promise<ExamResult[]> => {
-    const response = await fetch(`${BASE_URL}/exams/results`,{credentials: "include"});
+  // Autosave: the server keeps only the latest map per attempt and writes it behind in batches
+  saveDraft: async (examId: string, answers: Record<string, string>): Promise<void> => {
+    const response = await fetch(`${BASE_URL}/exams/${examId}/draft`, {
+      method: 'PUT',
+      credentials: "include",
+      headers: { 'Content-Type': 'application/json' },
+      body: JSON.stringify(answers),
+    });
+    await handleResponse<{ success: boolean }>(response);
+  },
+
+  getDraft: async (examId: string): Promise<Record<string, string>> => {
+    const response = await fetch(`${BASE_URL}/exams/${examId}/draft`, { credentials: "include" });
+    return handleResponse<Record<string, string>>(response);
+  },
+
+  // Newest first, one page at a time; pass the previous page's nextCursor to continue
+  getResults: async (cursor?: string | null): Promise<ResultPage> => {
+    const query = cursor ? `?cursor=${encodeURIComponent(cursor)}` : '';
+    const response = await fetch(`${BASE_URL}/exams/results${query}`,{credentials: "include"});
     const data = await handleResponse<any[]>(response);
-    return data.map(mapResult);
+    return { items: data.map(mapResult), nextCursor: response.headers.get('X-Next-Cursor') };
   },
 
   getResultsByStudent: async (studentId: string): Promise<ExamResult[]> => {
@@ -122,9 +150,27 @@ export const api = {
     }
   },
 
-  getStudents: async (): Promise<User[]> => {
-    const response = await fetch(`${BASE_URL}/users`,{credentials: "include"});
-    return handleResponse<User[]>(response);
+  // Ordered by username, one page at a time; search matches the start of the username
+  getStudents: async (search?: string, cursor?: string | null): Promise<UserPage> => {
+    const params = new URLSearchParams();
+    if (search) params.set('q', search);
+    if (cursor) params.set('cursor', cursor);
+    const query = params.toString() ? `?${params}` : '';
+    const response = await fetch(`${BASE_URL}/users${query}`,{credentials: "include"});
+    const data = await handleResponse<User[]>(response);
+    return { items: data, nextCursor: response.headers.get('X-Next-Cursor') };
+  },
+
+  // CSV (username,password per line) or a JSON array; the report lists every row that was not created
+  importStudents: async (roster: File): Promise<RosterImportReport> => {
+    const isCsv = roster.name.toLowerCase().endsWith('.csv');
+    const response = await fetch(`${BASE_URL}/users/bulk`, {
+      method: 'POST',
+      credentials: "include",
+      headers: { 'Content-Type': isCsv ? 'text/csv' : 'application/json' },
+      body: roster,
+    });
+    return handleResponse<RosterImportReport>(response);
   },
 
   createStudent: async (username: string, password?: string): Promise<void> => {
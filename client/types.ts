@@ -30,6 +30,14 @@ export interface Exam {
   questions: Question[];
 }
 
+// Server-side timing of one sitting; the countdown follows the server's deadline, not the exam's duration
+export interface Attempt {
+  examId: string;
+  startedAt: string;
+  deadline: string;
+  remainingSeconds: number;
+}
+
 export interface ExamResult {
   id: string;
   studentId: string;
@@ -40,3 +48,21 @@ export interface ExamResult {
   totalQuestions: number;
   submittedAt: string;
 }
+
+export interface ResultPage {
+  items: ExamResult[];
+  nextCursor: string | null;
+}
+
+export interface UserPage {
+  items: User[];
+  nextCursor: string | null;
+}
+
+export interface RosterImportReport {
+  success: boolean;
+  created: number;
+  failed: number;
+  errors: { index: number; username: string | null; error: string }[];
+  errorsTruncated?: number;
+}
@@ -0,0 +1,101 @@
+package com.edutech.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Thin async client for the JSON API. Each caller carries its own session
+ * cookie, like one browser per student; the connection pool is shared.
+ */
+final class ApiClient {
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final String COOKIE_NAME = "EDU_SESSION";
+
+    private final HttpClient http;
+    private final String baseUrl;
+    private final Duration timeout;
+
+    /** Cookie jar of one simulated browser. */
+    static final class Session {
+        volatile String cookie;
+    }
+
+    static final class Reply {
+        final int status;
+        final byte[] body;
+
+        Reply(int status, byte[] body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        boolean ok() { return status >= 200 && status < 300; }
+
+        JsonNode json() throws IOException { return mapper.readTree(body); }
+    }
+
+    ApiClient(String baseUrl, Duration timeout) {
+        this.http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(timeout)
+            .build();
+        this.baseUrl = baseUrl;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Sends one request and records it in {@code phase} (when not null).
+     * Transport failures complete the future exceptionally after being recorded.
+     */
+    CompletableFuture<Reply> send(PhaseStats phase, Session session, String method, String path, Object body) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(timeout);
+        if (session.cookie != null) builder.header("Cookie", COOKIE_NAME + "=" + session.cookie);
+        if (body == null) {
+            builder.method(method, HttpRequest.BodyPublishers.noBody());
+        } else {
+            try {
+                builder.header("Content-Type", "application/json")
+                    .method(method, HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(body)));
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        long start = System.nanoTime();
+        return http.sendAsync(builder.build(), HttpResponse.BodyHandlers.ofByteArray())
+            .whenComplete((resp, error) -> {
+                if (phase != null) phase.record(start, System.nanoTime(), error == null ? resp.statusCode() : 0);
+            })
+            .thenApply(resp -> {
+                updateCookie(session, resp.headers().allValues("Set-Cookie"));
+                return new Reply(resp.statusCode(), resp.body());
+            });
+    }
+
+    Reply sendAndWait(Session session, String method, String path, Object body) throws IOException {
+        try {
+            return send(null, session, method, path, body).join();
+        } catch (RuntimeException e) {
+            throw new IOException(method + " " + path + " failed: " + e.getCause(), e);
+        }
+    }
+
+    // The server re-issues the cookie when it is close to expiry and clears it on logout
+    private static void updateCookie(Session session, List<String> setCookies) {
+        for (String header : setCookies) {
+            if (!header.startsWith(COOKIE_NAME + "=")) continue;
+            int end = header.indexOf(';');
+            String value = header.substring(COOKIE_NAME.length() + 1, end < 0 ? header.length() : end);
+            session.cookie = value.isEmpty() ? null : value;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.edutech.loadtest;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.util.scan.StandardJarScanner;
+
+import java.io.File;
+import java.nio.file.Files;
+
+/**
+ * Runs a WAR in embedded Tomcat. LoadTest starts it in a child JVM so the
+ * server gets its own heap and its environment (DB_URL, ...) from the scenario.
+ *
+ *   java -cp loadtest.jar com.edutech.loadtest.EmbeddedServer server/target/ROOT.war 8089
+ */
+public class EmbeddedServer {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("usage: EmbeddedServer <war> <port>");
+            System.exit(2);
+        }
+        File war = new File(args[0]).getAbsoluteFile();
+        if (!war.isFile()) {
+            System.err.println(">> WAR not found: " + war);
+            System.exit(2);
+        }
+
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(Files.createTempDirectory("edutech-tomcat").toString());
+        tomcat.setPort(Integer.parseInt(args[1]));
+        tomcat.getConnector();
+        // API only: no default or JSP servlet needed
+        tomcat.setAddDefaultWebXmlToWebapp(false);
+
+        Context context = tomcat.addWebapp("", war.getPath());
+        // The WAR's own WEB-INF/lib is all that needs scanning for annotations
+        ((StandardJarScanner) context.getJarScanner()).setScanClassPath(false);
+
+        tomcat.start();
+        if (!context.getState().isAvailable()) {
+            // Usually DatabaseManager.init could not reach DB_URL; the cause is logged above
+            System.err.println(">> " + war.getName() + " failed to start");
+            tomcat.stop();
+            System.exit(1);
+        }
+        System.out.println(">> Serving " + war.getName() + " on port " + args[1]);
+
+        // LoadTest stops the process with SIGTERM; stopping Tomcat lets AppListener drain the result writer
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                tomcat.stop();
+                tomcat.destroy();
+            } catch (LifecycleException e) {
+                e.printStackTrace();
+            }
+        }));
+        tomcat.getServer().await();
+    }
+}
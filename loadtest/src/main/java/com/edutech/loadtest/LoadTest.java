@@ -0,0 +1,339 @@
+package com.edutech.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Replays one exam sitting against the real endpoints and reports each phase:
+ *
+ *   1. setup (not measured): admin login, create the exam, provision N students
+ *   2. login   - spread evenly over rampSeconds
+ *   3. attempt - POST /api/exams/{id}/attempt right after login
+ *   4. fetch   - GET /api/exams/{id}
+ *   5. submit  - everyone at the deadline, minus up to deadlineSkewSeconds
+ *   6. results - GET /api/exams/results for the student's own rows
+ *
+ *   java -jar loadtest.jar scenarios/term-exam.json
+ */
+public class LoadTest {
+    private static final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private final Scenario scenario;
+    private final ApiClient client;
+    private final ApiClient.Session admin = new ApiClient.Session();
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+
+    private String examId;
+    private final List<String> studentIds = Collections.synchronizedList(new ArrayList<>());
+
+    private final PhaseStats login = new PhaseStats("login");
+    private final PhaseStats attempt = new PhaseStats("attempt");
+    private final PhaseStats fetch = new PhaseStats("fetch");
+    private final PhaseStats submit = new PhaseStats("submit");
+    private final PhaseStats results = new PhaseStats("results");
+
+    LoadTest(Scenario scenario, String baseUrl) {
+        this.scenario = scenario;
+        this.client = new ApiClient(baseUrl, Duration.ofMillis((long) (scenario.getRequestTimeoutSeconds() * 1000)));
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("usage: java -jar loadtest.jar <scenario.json>");
+            System.exit(2);
+        }
+        Scenario scenario = mapper.readValue(new File(args[0]), Scenario.class);
+
+        Process server = null;
+        String baseUrl = scenario.getBaseUrl();
+        try {
+            if (baseUrl == null) {
+                server = startServer(scenario.getServer());
+                baseUrl = "http://localhost:" + scenario.getServer().getPort();
+            }
+            LoadTest test = new LoadTest(scenario, baseUrl);
+            if (server != null) test.awaitServer(server, scenario.getServer());
+            test.setUp();
+            try {
+                Map<String, Object> report = test.run();
+                print(report);
+                mapper.writeValue(new File(scenario.getReport()), report);
+                System.out.println(">> Report written to " + scenario.getReport());
+            } finally {
+                if (scenario.isCleanup()) test.cleanUp();
+            }
+        } finally {
+            if (server != null) stopServer(server);
+        }
+    }
+
+    // --- Server lifecycle ---
+
+    static Process startServer(Scenario.ServerConfig config) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(config.getJvmArgs());
+        String app;
+        if (config.getLauncher() != null) {
+            // The server's own launcher jar, which reads its port from PORT
+            app = config.getLauncher();
+            command.add("-jar");
+            command.add(app);
+        } else {
+            app = config.getWar();
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(EmbeddedServer.class.getName());
+            command.add(app);
+            command.add(String.valueOf(config.getPort()));
+        }
+
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.environment().putAll(config.getEnv());
+        builder.environment().put("PORT", String.valueOf(config.getPort()));
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(new File(config.getLog()));
+        System.out.println(">> Starting " + app + " on port " + config.getPort() + " (log: " + config.getLog() + ")");
+        return builder.start();
+    }
+
+    private void awaitServer(Process server, Scenario.ServerConfig config) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(config.getStartupTimeoutSeconds());
+        while (System.nanoTime() < deadline) {
+            if (!server.isAlive()) throw new IOException("Server exited with " + server.exitValue() + ", see " + config.getLog());
+            try {
+                client.sendAndWait(new ApiClient.Session(), "GET", "/api/login", null);
+                return;
+            } catch (IOException notYet) {
+                Thread.sleep(500);
+            }
+        }
+        throw new IOException("Server did not answer within " + config.getStartupTimeoutSeconds() + "s, see " + config.getLog());
+    }
+
+    static void stopServer(Process server) throws InterruptedException {
+        // SIGTERM, so the server drains its result queue before exiting
+        server.destroy();
+        if (!server.waitFor(30, TimeUnit.SECONDS)) server.destroyForcibly();
+    }
+
+    // --- Setup and cleanup (not measured) ---
+
+    private void setUp() throws Exception {
+        ApiClient.Reply reply = client.sendAndWait(admin, "POST", "/api/login",
+            Map.of("username", scenario.getAdminUsername(), "password", scenario.getAdminPassword()));
+        expect(reply, "admin login");
+
+        String title = "Load test " + runId;
+        reply = client.sendAndWait(admin, "POST", "/api/exams", examRequest(title));
+        expect(reply, "exam creation");
+        reply = client.sendAndWait(admin, "GET", "/api/exams", null);
+        expect(reply, "exam list");
+        for (JsonNode exam : reply.json()) {
+            if (title.equals(exam.path("title").asText())) examId = exam.path("id").asText();
+        }
+        if (examId == null) throw new IOException("Created exam '" + title + "' is not in the exam list");
+
+        System.out.println(">> Provisioning " + scenario.getStudents() + " students for exam " + examId);
+        forEachStudent(i -> {
+            ApiClient.Reply created = client.sendAndWait(admin, "POST", "/api/users",
+                Map.of("username", username(i), "password", scenario.getStudentPassword()));
+            expect(created, "student creation");
+            studentIds.add(created.json().path("userId").asText());
+        });
+    }
+
+    private void cleanUp() throws Exception {
+        System.out.println(">> Removing " + studentIds.size() + " load-test students");
+        List<String> ids = new ArrayList<>(studentIds);
+        forEachStudent(i -> {
+            if (i < ids.size()) client.sendAndWait(admin, "DELETE", "/api/users/" + ids.get(i), null);
+        });
+    }
+
+    private Map<String, Object> examRequest(String title) {
+        List<Map<String, Object>> questions = new ArrayList<>();
+        Random random = new Random(scenario.getSeed());
+        for (int q = 0; q < scenario.getQuestions(); q++) {
+            List<Map<String, Object>> options = new ArrayList<>();
+            for (int o = 0; o < scenario.getOptions(); o++) options.add(Map.of("text", "Option " + o + " of question " + q));
+            questions.add(Map.of(
+                "text", "Question " + q + ": which of the following statements is correct?",
+                "options", options,
+                "correctOptionIndex", random.nextInt(scenario.getOptions())));
+        }
+        Map<String, Object> exam = new LinkedHashMap<>();
+        exam.put("title", title);
+        exam.put("description", scenario.getStudents() + " students, generated by the load-test harness");
+        exam.put("durationMinutes", (int) Math.ceil((scenario.getRampSeconds() + scenario.getThinkSeconds()) / 60));
+        exam.put("questions", questions);
+        return exam;
+    }
+
+    private interface StudentTask {
+        void run(int index) throws Exception;
+    }
+
+    private void forEachStudent(StudentTask task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(scenario.getSetupConcurrency());
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < scenario.getStudents(); i++) {
+                int index = i;
+                futures.add(pool.submit(() -> { task.run(index); return null; }));
+            }
+            for (Future<?> f : futures) f.get();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // --- The sitting ---
+
+    private Map<String, Object> run() {
+        int students = scenario.getStudents();
+        long rampMillis = (long) (scenario.getRampSeconds() * 1000);
+        long deadlineMillis = rampMillis + (long) (scenario.getThinkSeconds() * 1000);
+        long skewMillis = (long) (scenario.getDeadlineSkewSeconds() * 1000);
+        AtomicInteger completed = new AtomicInteger();
+
+        System.out.println(">> " + students + " students, ramp " + scenario.getRampSeconds() + "s, deadline at "
+            + deadlineMillis / 1000.0 + "s, submits spread over the last " + scenario.getDeadlineSkewSeconds() + "s");
+        Instant startedAt = Instant.now();
+        long start = System.nanoTime();
+
+        List<CompletableFuture<?>> sittings = new ArrayList<>(students);
+        for (int i = 0; i < students; i++) {
+            Random random = new Random(scenario.getSeed() + i);
+            long loginAt = students == 1 ? 0 : rampMillis * i / (students - 1);
+            long submitAt = deadlineMillis - (long) (random.nextDouble() * skewMillis);
+            sittings.add(sitting(i, random, start, loginAt, submitAt)
+                .handle((done, error) -> {
+                    if (error == null) completed.incrementAndGet();
+                    return null;
+                }));
+        }
+        CompletableFuture.allOf(sittings.toArray(new CompletableFuture[0])).join();
+        double wallSeconds = (System.nanoTime() - start) / 1e9;
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("startedAt", startedAt.toString());
+        report.put("scenario", scenario);
+        report.put("students", students);
+        report.put("completedSittings", completed.get());
+        report.put("wallSeconds", wallSeconds);
+        Map<String, Object> phases = new LinkedHashMap<>();
+        for (PhaseStats phase : List.of(login, attempt, fetch, submit, results)) phases.put(phase.name(), phase.summary());
+        report.put("phases", phases);
+        return report;
+    }
+
+    /** One student's login -> attempt -> fetch -> submit -> results; stops at the first failed step. */
+    private CompletableFuture<?> sitting(int index, Random random, long start, long loginAt, long submitAt) {
+        ApiClient.Session session = new ApiClient.Session();
+        String[] studentId = new String[1];
+
+        return delay(start, loginAt)
+            .thenCompose(v -> client.send(login, session, "POST", "/api/login",
+                Map.of("username", username(index), "password", scenario.getStudentPassword())))
+            .thenCompose(reply -> {
+                studentId[0] = json(require(reply)).path("user").path("id").asText();
+                return client.send(attempt, session, "POST", "/api/exams/" + examId + "/attempt", null);
+            })
+            .thenCompose(reply -> {
+                require(reply);
+                return client.send(fetch, session, "GET", "/api/exams/" + examId, null);
+            })
+            .thenCompose(reply -> {
+                Map<String, String> answers = pickAnswers(json(require(reply)), random);
+                return delay(start, submitAt)
+                    .thenCompose(v -> client.send(submit, session, "POST", "/api/exams/submit/" + examId, answers));
+            })
+            .thenCompose(reply -> {
+                require(reply);
+                return client.send(results, session, "GET", "/api/exams/results?studentId=" + studentId[0], null);
+            })
+            .thenApply(ApiClient.Reply::ok);
+    }
+
+    private static Map<String, String> pickAnswers(JsonNode exam, Random random) {
+        Map<String, String> answers = new LinkedHashMap<>();
+        for (JsonNode question : exam.path("questions")) {
+            JsonNode options = question.path("options");
+            if (options.size() == 0) continue;
+            answers.put(question.path("id").asText(), options.get(random.nextInt(options.size())).path("id").asText());
+        }
+        return answers;
+    }
+
+    // Completes at start + offsetMillis, immediately when that moment has already passed
+    private static CompletableFuture<Void> delay(long start, long offsetMillis) {
+        long remaining = offsetMillis - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (remaining <= 0) return CompletableFuture.completedFuture(null);
+        return CompletableFuture.runAsync(() -> { }, CompletableFuture.delayedExecutor(remaining, TimeUnit.MILLISECONDS));
+    }
+
+    private static ApiClient.Reply require(ApiClient.Reply reply) {
+        if (!reply.ok()) throw new CompletionException(new IOException("HTTP " + reply.status));
+        return reply;
+    }
+
+    private static JsonNode json(ApiClient.Reply reply) {
+        try {
+            return reply.json();
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static void expect(ApiClient.Reply reply, String step) throws IOException {
+        if (!reply.ok()) {
+            throw new IOException(step + " failed with HTTP " + reply.status + ": " + new String(reply.body));
+        }
+    }
+
+    private String username(int index) {
+        return "lt-" + runId + "-" + index;
+    }
+
+    // --- Report ---
+
+    @SuppressWarnings("unchecked")
+    private static void print(Map<String, Object> report) {
+        System.out.println();
+        System.out.printf(">> %s of %s sittings completed in %.1fs%n",
+            report.get("completedSittings"), report.get("students"), (Double) report.get("wallSeconds"));
+        System.out.printf("%-8s %8s %7s %7s %9s %9s %9s %9s %9s %9s  %s%n",
+            "phase", "requests", "errors", "err%", "req/s", "p50 ms", "p90 ms", "p99 ms", "p999 ms", "max ms", "statuses");
+        Map<String, Object> phases = (Map<String, Object>) report.get("phases");
+        phases.forEach((name, value) -> {
+            Map<String, Object> s = (Map<String, Object>) value;
+            Map<String, Double> ms = (Map<String, Double>) s.get("latencyMillis");
+            System.out.printf("%-8s %8d %7d %6.2f%% %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f  %s%n",
+                name, s.get("requests"), s.get("errors"), 100 * (Double) s.get("errorRate"),
+                (Double) s.get("throughputPerSecond"), ms.get("p50"), ms.get("p90"), ms.get("p99"),
+                ms.get("p999"), ms.get("max"), s.get("statuses"));
+        });
+        System.out.println();
+    }
+}
@@ -0,0 +1,72 @@
+package com.edutech.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Latencies and outcomes of every request in one phase. All samples are kept
+ * (a sitting is a few thousand requests), so percentiles are exact.
+ */
+final class PhaseStats {
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    private final String name;
+    private long[] latencies = new long[1024];
+    private int count;
+    private int errors;
+    private final Map<Integer, Integer> statuses = new TreeMap<>();
+    private long firstStart = Long.MAX_VALUE;
+    private long lastEnd = Long.MIN_VALUE;
+
+    PhaseStats(String name) {
+        this.name = name;
+    }
+
+    /** @param status HTTP status, or 0 when the request failed without one (timeout, refused) */
+    synchronized void record(long startNanos, long endNanos, int status) {
+        if (count == latencies.length) latencies = Arrays.copyOf(latencies, count * 2);
+        latencies[count++] = endNanos - startNanos;
+        if (status == 0 || status >= 400) errors++;
+        statuses.merge(status, 1, Integer::sum);
+        firstStart = Math.min(firstStart, startNanos);
+        lastEnd = Math.max(lastEnd, endNanos);
+    }
+
+    String name() { return name; }
+
+    synchronized Map<String, Object> summary() {
+        Map<String, Object> s = new LinkedHashMap<>();
+        s.put("requests", count);
+        s.put("errors", errors);
+        s.put("errorRate", count == 0 ? 0.0 : (double) errors / count);
+        double seconds = count == 0 ? 0 : (lastEnd - firstStart) / 1e9;
+        s.put("durationSeconds", seconds);
+        s.put("throughputPerSecond", seconds > 0 ? count / seconds : 0.0);
+
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        Map<String, Double> percentiles = new LinkedHashMap<>();
+        for (double q : QUANTILES) percentiles.put("p" + label(q), millis(sorted, q));
+        percentiles.put("max", count == 0 ? 0.0 : sorted[count - 1] / 1e6);
+        s.put("latencyMillis", percentiles);
+
+        Map<String, Integer> byStatus = new LinkedHashMap<>();
+        statuses.forEach((status, n) -> byStatus.put(status == 0 ? "failed" : String.valueOf(status), n));
+        s.put("statuses", byStatus);
+        return s;
+    }
+
+    private static double millis(long[] sorted, double q) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(q * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    // 0.5 -> 50, 0.999 -> 999
+    private static String label(double q) {
+        String digits = String.valueOf(q).substring(2);
+        return digits.length() == 1 ? digits + "0" : digits;
+    }
+}
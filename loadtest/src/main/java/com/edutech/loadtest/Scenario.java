@@ -0,0 +1,57 @@
+package com.edutech.loadtest;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One exam sitting, read from a JSON scenario file. Every student logs in
+ * during the ramp, fetches the exam, thinks, and submits somewhere in the
+ * last deadlineSkewSeconds before the deadline (ramp + think after start).
+ */
+@Data
+public class Scenario {
+    private int students = 100;
+    private double rampSeconds = 10;
+    private double thinkSeconds = 30;
+    private double deadlineSkewSeconds = 5;
+
+    private int questions = 40;
+    private int options = 4;
+
+    /** Target an already running server instead of starting the WAR. */
+    private String baseUrl;
+    private ServerConfig server = new ServerConfig();
+
+    private String adminUsername = "admin";
+    private String adminPassword = "admin123";
+    private String studentPassword = "loadtest-password";
+
+    // Provisioning and cleanup are not measured; this only bounds how hard they hit the server
+    private int setupConcurrency = 8;
+    private boolean cleanup = true;
+    private double requestTimeoutSeconds = 30;
+    private long seed = 42;
+
+    /** Cold starts measured by StartupBenchmark. */
+    private int startupRuns = 5;
+
+    /** Where the JSON report is written, so runs can be compared. */
+    private String report = "loadtest-report.json";
+
+    @Data
+    public static class ServerConfig {
+        private String war = "server/target/ROOT.war";
+        /** Run the server's launcher jar (e.g. server/target/ROOT-launcher.jar) instead of the WAR. */
+        private String launcher;
+        private int port = 8089;
+        private List<String> jvmArgs = new ArrayList<>();
+        /** Passed to the server as environment variables: DB_URL, DB_USERNAME, Admin_passwd, tuning knobs... */
+        private Map<String, String> env = new LinkedHashMap<>();
+        private String log = "loadtest-server.log";
+        private int startupTimeoutSeconds = 120;
+    }
+}
@@ -0,0 +1,115 @@
+package com.edutech.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold-starts the server startupRuns times and reports time-to-first-200 on
+ * GET /api/exams: from launching the JVM until an admin, logged in as soon as
+ * the port answers, gets the exam list. Also reports when the port first
+ * answered at all, which separates JVM and Tomcat startup from the login.
+ *
+ *   java -cp loadtest.jar com.edutech.loadtest.StartupBenchmark scenarios/startup.json
+ *
+ * Only the server section and the admin credentials of the scenario are used.
+ * Point server.launcher at the launcher jar (and add -XX:SharedArchiveFile to
+ * server.jvmArgs) to compare it with the WAR.
+ */
+public class StartupBenchmark {
+    private static final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private static final long POLL_MILLIS = 10;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("usage: java -cp loadtest.jar com.edutech.loadtest.StartupBenchmark <scenario.json>");
+            System.exit(2);
+        }
+        Scenario scenario = mapper.readValue(new File(args[0]), Scenario.class);
+        Scenario.ServerConfig config = scenario.getServer();
+        ApiClient client = new ApiClient("http://localhost:" + config.getPort(), Duration.ofSeconds(5));
+
+        long[] firstResponse = new long[scenario.getStartupRuns()];
+        long[] firstOk = new long[scenario.getStartupRuns()];
+        List<Map<String, Object>> runs = new ArrayList<>();
+        for (int i = 0; i < scenario.getStartupRuns(); i++) {
+            long start = System.nanoTime();
+            Process server = LoadTest.startServer(config);
+            try {
+                long[] times = awaitFirstOk(client, scenario, server, start);
+                firstResponse[i] = times[0];
+                firstOk[i] = times[1];
+            } finally {
+                LoadTest.stopServer(server);
+            }
+            Map<String, Object> run = new LinkedHashMap<>();
+            run.put("firstResponseMillis", firstResponse[i] / 1e6);
+            run.put("firstOkMillis", firstOk[i] / 1e6);
+            runs.add(run);
+            System.out.printf(">> Run %d: port answered after %.0fms, first 200 on /api/exams after %.0fms%n",
+                i + 1, firstResponse[i] / 1e6, firstOk[i] / 1e6);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("server", config.getLauncher() != null ? config.getLauncher() : config.getWar());
+        report.put("jvmArgs", config.getJvmArgs());
+        report.put("runs", runs);
+        report.put("firstResponseMillis", summary(firstResponse));
+        report.put("firstOkMillis", summary(firstOk));
+        System.out.println(">> Time to first 200 (ms): " + report.get("firstOkMillis"));
+        mapper.writeValue(new File(scenario.getReport()), report);
+        System.out.println(">> Report written to " + scenario.getReport());
+    }
+
+    /** @return nanos from {@code start} to the first HTTP response, and to the first 200 on /api/exams */
+    private static long[] awaitFirstOk(ApiClient client, Scenario scenario, Process server, long start)
+            throws IOException, InterruptedException {
+        Scenario.ServerConfig config = scenario.getServer();
+        long deadline = start + TimeUnit.SECONDS.toNanos(config.getStartupTimeoutSeconds());
+        Map<String, String> credentials = Map.of(
+            "username", scenario.getAdminUsername(), "password", scenario.getAdminPassword());
+        ApiClient.Session admin = new ApiClient.Session();
+        long firstResponse = 0;
+        while (System.nanoTime() < deadline) {
+            if (!server.isAlive()) throw new IOException("Server exited with " + server.exitValue() + ", see " + config.getLog());
+            // 1. Log in as soon as the port answers, 2. then the measured request
+            boolean loggedIn = admin.cookie != null;
+            ApiClient.Reply reply;
+            try {
+                reply = loggedIn
+                    ? client.sendAndWait(admin, "GET", "/api/exams", null)
+                    : client.sendAndWait(admin, "POST", "/api/login", credentials);
+            } catch (IOException notYet) {
+                // Connection refused until Tomcat is listening
+                Thread.sleep(POLL_MILLIS);
+                continue;
+            }
+            if (firstResponse == 0) firstResponse = System.nanoTime() - start;
+            if (loggedIn && reply.status == 200) return new long[] { firstResponse, System.nanoTime() - start };
+            // Anything else may still be startup; a 401 on login never gets better
+            if (!loggedIn && reply.status == 401) throw new IOException("Admin login failed: " + new String(reply.body));
+            Thread.sleep(POLL_MILLIS);
+        }
+        throw new IOException("No 200 on /api/exams within " + config.getStartupTimeoutSeconds() + "s, see " + config.getLog());
+    }
+
+    private static Map<String, Double> summary(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        int n = sorted.length;
+        Map<String, Double> s = new LinkedHashMap<>();
+        s.put("min", n == 0 ? 0.0 : sorted[0] / 1e6);
+        s.put("median", n == 0 ? 0.0 : (n % 2 == 1 ? sorted[n / 2] : (sorted[n / 2 - 1] + sorted[n / 2]) / 2.0) / 1e6);
+        s.put("max", n == 0 ? 0.0 : sorted[n - 1] / 1e6);
+        return s;
+    }
+}
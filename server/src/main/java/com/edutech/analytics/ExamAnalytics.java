@@ -0,0 +1,308 @@
+package com.edutech.analytics;
+
+import com.edutech.config.Env;
+import com.edutech.db.DatabaseManager;
+import com.edutech.db.ExamLoader;
+import com.edutech.db.SeqTail;
+import com.edutech.model.Exam;
+import com.edutech.util.Ids;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-exam analytics kept up to date from the results table.
+ *
+ * Every node follows the table by its database-generated seq with a
+ * {@link SeqTail} (ANALYTICS_BATCH_SIZE, ANALYTICS_GAP_MS): every
+ * ANALYTICS_POLL_MS it reads the rows committed since the last poll, whichever
+ * node wrote them, and folds them into the exams it has loaded.
+ *
+ * An exam's aggregates are built on first use from its last snapshot plus its
+ * rows after it, and every ANALYTICS_SNAPSHOT_INTERVAL_MS the ones that changed
+ * are saved to exam_stats, so a restart only re-reads what came after the last
+ * snapshot. Every node arrives at the same aggregates for the same seqs, so a
+ * snapshot saved by one is good for all; a save never replaces a later one.
+ */
+public class ExamAnalytics {
+    private static final Logger log = LoggerFactory.getLogger(ExamAnalytics.class);
+
+    private static final String SNAPSHOT_SQL = "SELECT snapshot FROM exam_stats WHERE exam_id = ?";
+    private static final String EXAM_ROWS_SQL =
+        "SELECT seq, score, answers FROM results WHERE exam_id = ? AND seq > ? ORDER BY seq";
+    // Only ever moves a snapshot forward; nodes save the same exam independently
+    private static final String UPSERT_SQL_MYSQL =
+        "INSERT INTO exam_stats (exam_id, last_seq, snapshot, updated_at) VALUES (?, ?, ?, ?) " +
+        "ON DUPLICATE KEY UPDATE snapshot = CASE WHEN VALUES(last_seq) >= last_seq THEN VALUES(snapshot) ELSE snapshot END, " +
+        "updated_at = CASE WHEN VALUES(last_seq) >= last_seq THEN VALUES(updated_at) ELSE updated_at END, " +
+        "last_seq = GREATEST(last_seq, VALUES(last_seq))";
+    private static final String UPSERT_SQL_MSSQL =
+        "MERGE exam_stats WITH (HOLDLOCK) AS t " +
+        "USING (SELECT ? AS exam_id, ? AS last_seq, ? AS snapshot, ? AS updated_at) AS s " +
+        "ON t.exam_id = s.exam_id " +
+        "WHEN MATCHED AND s.last_seq >= t.last_seq THEN UPDATE SET last_seq = s.last_seq, snapshot = s.snapshot, updated_at = s.updated_at " +
+        "WHEN NOT MATCHED THEN INSERT (exam_id, last_seq, snapshot, updated_at) " +
+        "VALUES (s.exam_id, s.last_seq, s.snapshot, s.updated_at);";
+
+    private static final long POLL_MS = Env.getLong("ANALYTICS_POLL_MS", 1000);
+    private static final long SNAPSHOT_INTERVAL_MS = Env.getLong("ANALYTICS_SNAPSHOT_INTERVAL_MS", 60_000);
+    private static final int MAX_EXAMS = Env.getInt("ANALYTICS_MAX_EXAMS", 500);
+    private static final int FETCH_SIZE = Env.getInt("ANALYTICS_FETCH_SIZE", 1000);
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final TypeReference<Map<String, String>> ANSWERS = new TypeReference<>() {};
+
+    private static final ConcurrentHashMap<String, ExamStats> loaded = new ConcurrentHashMap<>();
+
+    private static final SeqTail tail = new SeqTail("results", "seq, exam_id, score, answers", "ANALYTICS", 1000,
+        ExamAnalytics::fold);
+
+    // Poller state, only touched by the poller thread
+    private static long lastSnapshot;
+
+    private static final LongAdder folded = new LongAdder();
+    private static final LongAdder loads = new LongAdder();
+    private static final LongAdder rowsRead = new LongAdder();
+    private static final LongAdder pollFailures = new LongAdder();
+    private static final LongAdder snapshotsWritten = new LongAdder();
+
+    private static final Object tick = new Object();
+    private static Thread poller;
+    private static volatile boolean running;
+
+    public static synchronized void start() {
+        if (running) return;
+        long from;
+        try (Connection conn = DatabaseManager.getConnection()) {
+            // Nothing is loaded yet; an exam reads its own earlier rows when it is
+            from = tail.start(conn);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not read the results tail for analytics", e);
+        }
+        lastSnapshot = System.currentTimeMillis();
+        running = true;
+        poller = new Thread(ExamAnalytics::runPoller, "analytics-poller");
+        poller.setDaemon(true);
+        poller.start();
+        log.info("Exam analytics following results from seq {} (poll every {}ms, snapshot every {}ms)",
+            from, POLL_MS, SNAPSHOT_INTERVAL_MS);
+    }
+
+    /** Reads what was written last and saves what changed; call after ResultWriter.shutdown(). */
+    public static synchronized void shutdown() {
+        if (!running) return;
+        synchronized (tick) {
+            running = false;
+            tick.notifyAll();
+        }
+        try {
+            poller.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** @return the exam's aggregates view, or null when the exam does not exist */
+    public static Map<String, Object> view(String examId) throws SQLException {
+        ExamStats stats = get(examId);
+        return stats == null ? null : stats.view();
+    }
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("exams", loaded.size());
+        stats.put("maxExams", MAX_EXAMS);
+        stats.put("cursor", tail.cursor());
+        stats.put("openGaps", tail.openGaps());
+        stats.put("folded", folded.sum());
+        stats.put("tailRows", tail.rows());
+        stats.put("gapsFilled", tail.gapsFilled());
+        stats.put("gapsExpired", tail.gapsExpired());
+        stats.put("pollFailures", pollFailures.sum());
+        stats.put("loads", loads.sum());
+        stats.put("rowsRead", rowsRead.sum());
+        stats.put("snapshotsWritten", snapshotsWritten.sum());
+        return stats;
+    }
+
+    private static ExamStats get(String examId) throws SQLException {
+        ExamStats stats = loaded.get(examId);
+        if (stats != null) return stats;
+
+        // 1. Built off to the side, so the poller keeps folding other exams meanwhile. Every
+        //    seq at or below the poller's cursor now has committed, so the build sees them all.
+        long safe = tail.cursor();
+        ExamStats fresh = build(examId);
+        if (fresh == null) return null;
+        fresh.advance(safe);
+
+        // 2. Publish, then read the rows past that point again: the poller may have passed
+        //    some of them before the exam was loaded. It blocks on this exam's monitor until
+        //    that is done, and rows seen by both are counted once.
+        synchronized (fresh) {
+            ExamStats raced = loaded.putIfAbsent(examId, fresh);
+            if (raced != null) return raced;
+            try (Connection conn = DatabaseManager.getConnection()) {
+                foldRows(conn, fresh, examId, Math.max(safe, fresh.getLastSeq()));
+            } catch (SQLException e) {
+                // Would leave a hole the poller can never fill; the next request starts over
+                loaded.remove(examId, fresh);
+                throw e;
+            }
+        }
+        if (loaded.size() > MAX_EXAMS) evictOne(examId);
+        loads.increment();
+        return fresh;
+    }
+
+    private static ExamStats build(String examId) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            Exam exam = ExamLoader.load(conn, examId, true);
+            if (exam == null) return null;
+            ExamStats stats = new ExamStats(exam);
+
+            String snapshot = null;
+            try (PreparedStatement ps = conn.prepareStatement(SNAPSHOT_SQL)) {
+                Ids.bind(ps, 1, examId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) snapshot = rs.getString("snapshot");
+                }
+            }
+            if (snapshot != null) {
+                try {
+                    stats.restore(mapper.readValue(snapshot, ExamStats.Snapshot.class));
+                } catch (IOException e) {
+                    // Unreadable snapshot: rebuild from every row instead
+                    log.warn("Unreadable analytics snapshot for exam {}, rebuilding", examId, e);
+                    stats = new ExamStats(exam);
+                }
+            }
+            foldRows(conn, stats, examId, stats.getLastSeq());
+            return stats;
+        }
+    }
+
+    private static void foldRows(Connection conn, ExamStats stats, String examId, long afterSeq) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(EXAM_ROWS_SQL,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            Ids.bind(ps, 1, examId);
+            ps.setLong(2, afterSeq);
+            ps.setFetchSize(DatabaseManager.streamingFetchSize(FETCH_SIZE));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    stats.add(rs.getLong("seq"), rs.getInt("score"), answers(rs));
+                    rowsRead.increment();
+                }
+            }
+        }
+    }
+
+    private static Map<String, String> answers(ResultSet rs) throws SQLException {
+        String json = rs.getString("answers");
+        if (json == null) return null;
+        try {
+            return mapper.readValue(json, ANSWERS);
+        } catch (IOException e) {
+            return null; // counted in the score aggregates only
+        }
+    }
+
+    private static void evictOne(String keep) {
+        // Dropping loses nothing: the next load starts from the snapshot and re-reads the rows after it
+        Iterator<String> it = loaded.keySet().iterator();
+        while (it.hasNext()) {
+            if (!it.next().equals(keep)) {
+                it.remove();
+                return;
+            }
+        }
+    }
+
+    private static void runPoller() {
+        while (true) {
+            synchronized (tick) {
+                try {
+                    if (running) tick.wait(POLL_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            try {
+                poll();
+            } catch (SQLException e) {
+                pollFailures.increment();
+                log.warn("Results poll failed", e);
+            }
+            long now = System.currentTimeMillis();
+            if (!running || now - lastSnapshot >= SNAPSHOT_INTERVAL_MS) {
+                try {
+                    writeSnapshots();
+                    lastSnapshot = now;
+                } catch (SQLException | IOException e) {
+                    log.warn("Could not save analytics snapshots", e);
+                }
+            }
+            if (!running) return;
+        }
+    }
+
+    private static void poll() throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            tail.poll(conn, () -> running);
+        }
+        long safe = tail.cursor();
+        for (ExamStats stats : loaded.values()) stats.advance(safe);
+    }
+
+    private static void fold(ResultSet rs) throws SQLException {
+        ExamStats stats = loaded.get(Ids.read(rs, "exam_id"));
+        if (stats == null) return; // read from the table when somebody asks for it
+        stats.add(rs.getLong("seq"), rs.getInt("score"), answers(rs));
+        folded.increment();
+    }
+
+    private static void writeSnapshots() throws SQLException, IOException {
+        List<ExamStats> changed = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+        for (Map.Entry<String, ExamStats> e : loaded.entrySet()) {
+            if (e.getValue().isDirty()) {
+                ids.add(e.getKey());
+                changed.add(e.getValue());
+            }
+        }
+        if (changed.isEmpty()) return;
+
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement ps = conn.prepareStatement(DatabaseManager.isMSSQL() ? UPSERT_SQL_MSSQL : UPSERT_SQL_MYSQL)) {
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            for (int i = 0; i < changed.size(); i++) {
+                ExamStats.Snapshot snapshot = changed.get(i).snapshot();
+                Ids.bind(ps, 1, ids.get(i));
+                ps.setLong(2, snapshot.getLastSeq());
+                ps.setString(3, mapper.writeValueAsString(snapshot));
+                ps.setTimestamp(4, now);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        } catch (SQLException | IOException e) {
+            for (ExamStats stats : changed) stats.markDirty();
+            throw e;
+        }
+        snapshotsWritten.add(changed.size());
+    }
+}
@@ -0,0 +1,277 @@
+package com.edutech.analytics;
+
+import com.edutech.model.Exam;
+import com.edutech.model.Option;
+import com.edutech.model.Question;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Running aggregates of one exam's submissions: counts, score sums and a score
+ * histogram, plus per question how often each option was picked and the score
+ * sums needed for difficulty and discrimination. Adding a submission and
+ * reading the view both cost the same however many submissions there are.
+ *
+ * Every submission carries its row's seq. Seqs commit out of order, so what
+ * has been counted is lastSeq, below which every row is in, plus the few seqs
+ * above it that are in already; a row seen both by an exam's own read and by
+ * the tail poller is counted once.
+ */
+public class ExamStats {
+
+    /** Stored form; questions and options by id, so it survives reordering. */
+    @Data
+    public static class Snapshot {
+        private long lastSeq;
+        private long[] seqsAbove;
+        private long submissions;
+        private long scoreSum;
+        private long scoreSquareSum;
+        private long[] histogram;
+        private long responses;
+        private long responseScoreSum;
+        private long responseScoreSquareSum;
+        private Map<String, QuestionSnapshot> questions;
+    }
+
+    @Data
+    public static class QuestionSnapshot {
+        private long unanswered;
+        private long correct;
+        private long correctScoreSum;
+        private Map<String, Long> picks;
+    }
+
+    private final String examId;
+    private final String title;
+    private final List<Question> questions;
+    private final Map<String, Integer> questionIndex = new HashMap<>();
+    private final List<Map<String, Integer>> optionIndex = new ArrayList<>();
+    private final boolean[][] correctOptions;
+
+    private long lastSeq;
+    private final TreeSet<Long> seqsAbove = new TreeSet<>();
+    private boolean dirty;
+
+    // Every submission
+    private long submissions;
+    private long scoreSum;
+    private long scoreSquareSum;
+    private long[] histogram;
+
+    // Submissions whose answers were kept (rows from before V6 have none)
+    private long responses;
+    private long responseScoreSum;
+    private long responseScoreSquareSum;
+    private final long[][] picks;
+    private final long[] unanswered;
+    private final long[] correct;
+    private final long[] correctScoreSum;
+
+    /** @param exam loaded with answers, so the correct options are known */
+    ExamStats(Exam exam) {
+        this.examId = exam.getId();
+        this.title = exam.getTitle();
+        this.questions = exam.getQuestions();
+        int n = questions.size();
+        this.correctOptions = new boolean[n][];
+        this.picks = new long[n][];
+        this.unanswered = new long[n];
+        this.correct = new long[n];
+        this.correctScoreSum = new long[n];
+        this.histogram = new long[n + 1];
+        for (int q = 0; q < n; q++) {
+            Question question = questions.get(q);
+            questionIndex.put(question.getId(), q);
+            List<Option> options = question.getOptions();
+            Map<String, Integer> index = new HashMap<>();
+            correctOptions[q] = new boolean[options.size()];
+            for (int o = 0; o < options.size(); o++) {
+                index.put(options.get(o).getId(), o);
+                correctOptions[q][o] = Boolean.TRUE.equals(options.get(o).getCorrect());
+            }
+            optionIndex.add(index);
+            picks[q] = new long[options.size()];
+        }
+    }
+
+    /**
+     * Folds in one submission, unless its seq is in already.
+     *
+     * @param answers question id -> option id, or null when the row kept none
+     */
+    synchronized void add(long seq, int score, Map<String, String> answers) {
+        if (seq <= lastSeq || !seqsAbove.add(seq)) return;
+        dirty = true;
+
+        submissions++;
+        scoreSum += score;
+        scoreSquareSum += (long) score * score;
+        if (score >= histogram.length) histogram = Arrays.copyOf(histogram, score + 1);
+        histogram[Math.max(0, score)]++;
+        if (answers == null) return;
+
+        responses++;
+        responseScoreSum += score;
+        responseScoreSquareSum += (long) score * score;
+        for (int q = 0; q < picks.length; q++) {
+            String optionId = answers.get(questions.get(q).getId());
+            Integer o = optionId == null ? null : optionIndex.get(q).get(optionId);
+            if (o == null) {
+                unanswered[q]++; // unknown option ids count as no answer
+                continue;
+            }
+            picks[q][o]++;
+            if (correctOptions[q][o]) {
+                correct[q]++;
+                correctScoreSum[q] += score;
+            }
+        }
+    }
+
+    synchronized long getLastSeq() {
+        return lastSeq;
+    }
+
+    /** Every row at or below safeSeq that will ever commit has been added. */
+    synchronized void advance(long safeSeq) {
+        if (safeSeq <= lastSeq) return;
+        lastSeq = safeSeq;
+        seqsAbove.headSet(safeSeq, true).clear();
+    }
+
+    synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    synchronized void markDirty() {
+        dirty = true;
+    }
+
+    /** Copies the aggregates for storage and clears the dirty flag. */
+    synchronized Snapshot snapshot() {
+        Snapshot s = new Snapshot();
+        s.setLastSeq(lastSeq);
+        s.setSeqsAbove(seqsAbove.stream().mapToLong(Long::longValue).toArray());
+        s.setSubmissions(submissions);
+        s.setScoreSum(scoreSum);
+        s.setScoreSquareSum(scoreSquareSum);
+        s.setHistogram(histogram.clone());
+        s.setResponses(responses);
+        s.setResponseScoreSum(responseScoreSum);
+        s.setResponseScoreSquareSum(responseScoreSquareSum);
+        Map<String, QuestionSnapshot> qs = new HashMap<>();
+        for (int q = 0; q < picks.length; q++) {
+            QuestionSnapshot qsnap = new QuestionSnapshot();
+            qsnap.setUnanswered(unanswered[q]);
+            qsnap.setCorrect(correct[q]);
+            qsnap.setCorrectScoreSum(correctScoreSum[q]);
+            Map<String, Long> p = new HashMap<>();
+            List<Option> options = questions.get(q).getOptions();
+            for (int o = 0; o < options.size(); o++) p.put(options.get(o).getId(), picks[q][o]);
+            qsnap.setPicks(p);
+            qs.put(questions.get(q).getId(), qsnap);
+        }
+        s.setQuestions(qs);
+        dirty = false;
+        return s;
+    }
+
+    /** Starts from a stored snapshot; questions or options no longer in the exam are ignored. */
+    synchronized void restore(Snapshot s) {
+        lastSeq = s.getLastSeq();
+        seqsAbove.clear();
+        if (s.getSeqsAbove() != null) for (long seq : s.getSeqsAbove()) seqsAbove.add(seq);
+        submissions = s.getSubmissions();
+        scoreSum = s.getScoreSum();
+        scoreSquareSum = s.getScoreSquareSum();
+        if (s.getHistogram() != null) histogram = Arrays.copyOf(s.getHistogram(), Math.max(histogram.length, s.getHistogram().length));
+        responses = s.getResponses();
+        responseScoreSum = s.getResponseScoreSum();
+        responseScoreSquareSum = s.getResponseScoreSquareSum();
+        if (s.getQuestions() == null) return;
+        for (Map.Entry<String, QuestionSnapshot> e : s.getQuestions().entrySet()) {
+            Integer q = questionIndex.get(e.getKey());
+            if (q == null) continue;
+            QuestionSnapshot qsnap = e.getValue();
+            unanswered[q] = qsnap.getUnanswered();
+            correct[q] = qsnap.getCorrect();
+            correctScoreSum[q] = qsnap.getCorrectScoreSum();
+            if (qsnap.getPicks() == null) continue;
+            for (Map.Entry<String, Long> p : qsnap.getPicks().entrySet()) {
+                Integer o = optionIndex.get(q).get(p.getKey());
+                if (o != null) picks[q][o] = p.getValue();
+            }
+        }
+    }
+
+    /**
+     * The dashboard view. Difficulty is the share of responses that got the
+     * question right; discrimination is the point-biserial correlation between
+     * getting it right and the total score (null while either group is empty).
+     */
+    synchronized Map<String, Object> view() {
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("examId", examId);
+        res.put("title", title);
+        res.put("submissions", submissions);
+        res.put("meanScore", submissions == 0 ? null : round((double) scoreSum / submissions));
+        res.put("stdDevScore", submissions == 0 ? null : round(stdDev(submissions, scoreSum, scoreSquareSum)));
+        res.put("totalQuestions", questions.size());
+        res.put("distribution", histogram.clone());
+        res.put("responses", responses);
+
+        double responseMean = responses == 0 ? 0 : (double) responseScoreSum / responses;
+        double responseStdDev = responses == 0 ? 0 : stdDev(responses, responseScoreSum, responseScoreSquareSum);
+        List<Map<String, Object>> items = new ArrayList<>(questions.size());
+        for (int q = 0; q < questions.size(); q++) {
+            Question question = questions.get(q);
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("questionId", question.getId());
+            item.put("text", question.getText());
+            item.put("difficulty", responses == 0 ? null : round((double) correct[q] / responses));
+            item.put("discrimination", discrimination(q, responseMean, responseStdDev));
+            item.put("unanswered", unanswered[q]);
+            List<Map<String, Object>> options = new ArrayList<>();
+            List<Option> questionOptions = question.getOptions();
+            for (int o = 0; o < questionOptions.size(); o++) {
+                Map<String, Object> option = new LinkedHashMap<>();
+                option.put("optionId", questionOptions.get(o).getId());
+                option.put("text", questionOptions.get(o).getText());
+                option.put("correct", correctOptions[q][o]);
+                option.put("picks", picks[q][o]);
+                options.add(option);
+            }
+            item.put("options", options);
+            items.add(item);
+        }
+        res.put("questions", items);
+        return res;
+    }
+
+    private Double discrimination(int q, double mean, double stdDev) {
+        long right = correct[q];
+        long wrong = responses - right;
+        if (right == 0 || wrong == 0 || stdDev == 0) return null;
+        double meanRight = (double) correctScoreSum[q] / right;
+        double meanWrong = (double) (responseScoreSum - correctScoreSum[q]) / wrong;
+        double p = (double) right / responses;
+        return round((meanRight - meanWrong) / stdDev * Math.sqrt(p * (1 - p)));
+    }
+
+    private static double stdDev(long n, long sum, long squareSum) {
+        double mean = (double) sum / n;
+        return Math.sqrt(Math.max(0, (double) squareSum / n - mean * mean));
+    }
+
+    private static double round(double v) {
+        return Math.round(v * 10_000) / 10_000.0;
+    }
+}
@@ -0,0 +1,45 @@
+package com.edutech.attempt;
+
+import com.edutech.util.TimingWheel;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One student's sitting of one exam. Times are epoch millis and never change
+ * once started; only the state moves, by compare-and-set, so a submission and
+ * the deadline can never both finalize the same attempt.
+ */
+public class Attempt {
+
+    static final int OPEN = 0;
+    static final int CLOSING = 1; // a submission or the expiry task is writing the result
+    static final int DONE = 2;
+
+    private final String studentId;
+    private final String examId;
+    private final long startedAt;
+    private final long deadline;
+    final AtomicInteger state;
+    volatile TimingWheel.Timeout timer;
+
+    Attempt(String studentId, String examId, long startedAt, long deadline, boolean finished) {
+        this.studentId = studentId;
+        this.examId = examId;
+        this.startedAt = startedAt;
+        this.deadline = deadline;
+        this.state = new AtomicInteger(finished ? DONE : OPEN);
+    }
+
+    public String getStudentId() { return studentId; }
+    public String getExamId() { return examId; }
+    public long getStartedAt() { return startedAt; }
+    public long getDeadline() { return deadline; }
+
+    public boolean isFinished() {
+        return state.get() == DONE;
+    }
+
+    public long remainingMillis() {
+        return Math.max(0, deadline - System.currentTimeMillis());
+    }
+}
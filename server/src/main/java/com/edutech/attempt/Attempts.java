@@ -0,0 +1,415 @@
+package com.edutech.attempt;
+
+import com.edutech.cache.AnswerKeyCache;
+import com.edutech.config.Env;
+import com.edutech.db.DatabaseManager;
+import com.edutech.db.DraftStore;
+import com.edutech.db.ExamLoader;
+import com.edutech.db.ResultWriter;
+import com.edutech.model.Result;
+import com.edutech.scoring.AnswerKey;
+import com.edutech.util.Ids;
+import com.edutech.util.TimingWheel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server-enforced exam attempts.
+ *
+ * Starting an attempt writes one row with the server's start time and
+ * deadline; from then on everything runs against an in-memory index keyed by
+ * (student, exam), so a late or repeated submission is turned away without
+ * touching the database. Deadlines live on one hashed timing wheel rather than
+ * one scheduled task per student; when an attempt runs out it is scored from
+ * its last autosaved draft and written like any other submission.
+ *
+ * The index is per node and only a cache of the attempts table: a node that
+ * has not seen an attempt (it was started elsewhere, or before a restart)
+ * reads the row on first use. It can turn away attempts it knows are finished,
+ * but finishing is decided by the database: before a result is queued, one
+ * primary-key update sets finished_at and the result's id, only if finished_at
+ * is still null. When two nodes finish the same attempt (a submission on each,
+ * or a submission on one and the deadline on another) only one update wins and
+ * the other is answered 409, so an acknowledged score is always the stored one.
+ */
+public class Attempts {
+    private static final Logger log = LoggerFactory.getLogger(Attempts.class);
+
+    public enum Claim {
+        OK(null),
+        NOT_STARTED("No attempt was started for this exam"),
+        ALREADY_SUBMITTED("This exam has already been submitted"),
+        EXPIRED("Time is up; your saved answers were submitted automatically");
+
+        private final String message;
+
+        Claim(String message) { this.message = message; }
+
+        public String getMessage() { return message; }
+    }
+
+    private static final String EXAM_SQL =
+        "SELECT e.duration_minutes, " +
+        "(SELECT COUNT(*) FROM results r WHERE r.student_id = ? AND r.exam_id = e.id) AS submissions " +
+        "FROM exams e WHERE e.id = ?";
+    private static final String SELECT_SQL =
+        "SELECT started_at, deadline_at, finished_at FROM attempts WHERE student_id = ? AND exam_id = ?";
+    private static final String FINISH_SQL =
+        "UPDATE attempts SET finished_at = ?, result_id = ? WHERE student_id = ? AND exam_id = ? AND finished_at IS NULL";
+    // Undoes a finish whose result could not be queued after all
+    private static final String REOPEN_SQL =
+        "UPDATE attempts SET finished_at = NULL, result_id = NULL WHERE student_id = ? AND exam_id = ? AND result_id = ?";
+    private static final String INSERT_SQL =
+        "INSERT INTO attempts (student_id, exam_id, started_at, deadline_at) VALUES (?, ?, ?, ?)";
+    // Every attempt still open plus the recently finished ones (to keep rejecting duplicates)
+    private static final String REBUILD_SQL =
+        "SELECT student_id, exam_id, started_at, deadline_at, finished_at FROM attempts WHERE finished_at IS NULL " +
+        "UNION ALL " +
+        "SELECT student_id, exam_id, started_at, deadline_at, finished_at FROM attempts WHERE finished_at > ?";
+
+    // Covers the network between the student's last click and our clock; expiry fires after it
+    private static final long GRACE_MS = Env.getLong("ATTEMPT_GRACE_MS", 30_000);
+    // How long a finished attempt stays indexed; later submissions for it miss the index and read the row
+    private static final long RETENTION_MS = Env.getLong("ATTEMPT_RETENTION_MS", 24 * 60 * 60 * 1000L);
+    private static final long TICK_MS = Env.getLong("ATTEMPT_WHEEL_TICK_MS", 1_000);
+    private static final int WHEEL_SIZE = Env.getInt("ATTEMPT_WHEEL_SIZE", 1024);
+    private static final int FINALIZER_THREADS = Env.getInt("ATTEMPT_FINALIZER_THREADS", 4);
+    private static final long RETRY_MS = 5_000;
+
+    private static final ConcurrentHashMap<String, Attempt> index = new ConcurrentHashMap<>();
+
+    private static final LongAdder started = new LongAdder();
+    private static final LongAdder submitted = new LongAdder();
+    private static final LongAdder autoSubmitted = new LongAdder();
+    private static final LongAdder rejectedLate = new LongAdder();
+    private static final LongAdder rejectedDuplicate = new LongAdder();
+    private static final LongAdder rejectedNotStarted = new LongAdder();
+
+    private static ExecutorService finalizers;
+    private static TimingWheel wheel;
+    private static volatile boolean running;
+
+    /** Call after ResultWriter.start(), so replayed results already count as finished attempts. */
+    public static synchronized void start() {
+        if (running) return;
+        finalizers = Executors.newFixedThreadPool(FINALIZER_THREADS, r -> {
+            Thread t = new Thread(r, "attempt-finalizer");
+            t.setDaemon(true);
+            return t;
+        });
+        wheel = new TimingWheel("attempt-deadlines", TICK_MS, WHEEL_SIZE, finalizers);
+        wheel.start();
+        running = true;
+        try {
+            rebuild();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not rebuild the attempt index", e);
+        }
+    }
+
+    /** Stops the deadline wheel; expiries it did not reach are picked up again by the next start's rebuild. */
+    public static synchronized void shutdown() {
+        if (!running) return;
+        running = false;
+        wheel.stop();
+        finalizers.shutdown();
+        try {
+            finalizers.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        index.clear();
+    }
+
+    /**
+     * Starts the caller's attempt, or returns it unchanged when one exists, so
+     * a reload resumes with the original deadline.
+     *
+     * @return the attempt, possibly already finished; null when the exam does not exist
+     */
+    public static Attempt begin(String studentId, String examId) throws SQLException {
+        Attempt attempt = index.get(key(studentId, examId));
+        if (attempt != null) return attempt;
+
+        try (Connection conn = DatabaseManager.getConnection()) {
+            // 1. A row this node has not indexed: started on another node, or finished before the rebuild window
+            attempt = load(conn, studentId, examId);
+            if (attempt != null) return register(attempt);
+
+            // 2. Exam duration, and whether the student submitted it before attempts existed
+            long durationMs;
+            boolean submittedBefore;
+            try (PreparedStatement ps = conn.prepareStatement(EXAM_SQL)) {
+                Ids.bind(ps, 1, studentId);
+                Ids.bind(ps, 2, examId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) return null;
+                    durationMs = rs.getInt("duration_minutes") * 60_000L;
+                    submittedBefore = rs.getInt("submissions") > 0;
+                }
+            }
+            long now = System.currentTimeMillis();
+            if (submittedBefore) return register(new Attempt(studentId, examId, now, now, true));
+
+            // 3. The row; losing a race with a concurrent start just means reading the winner's
+            try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+                Ids.bind(ps, 1, studentId);
+                Ids.bind(ps, 2, examId);
+                ps.setTimestamp(3, new Timestamp(now));
+                ps.setTimestamp(4, new Timestamp(now + durationMs));
+                ps.executeUpdate();
+            } catch (SQLException e) {
+                if (e.getSQLState() == null || !e.getSQLState().startsWith("23")) throw e;
+                return register(load(conn, studentId, examId));
+            }
+            started.increment();
+            return register(new Attempt(studentId, examId, now, now + durationMs, false));
+        }
+    }
+
+    /**
+     * Reserves the attempt for a submission on this node. On OK the caller
+     * claims the row with claimRow(result) before queueing the result, then
+     * follows up with complete() once the result is accepted, or release() if it is not.
+     */
+    public static Claim claim(String studentId, String examId) throws SQLException {
+        Attempt attempt = lookup(studentId, examId);
+        if (attempt == null) {
+            rejectedNotStarted.increment();
+            return Claim.NOT_STARTED;
+        }
+        if (attempt.isFinished()) {
+            rejectedDuplicate.increment();
+            return Claim.ALREADY_SUBMITTED;
+        }
+        if (System.currentTimeMillis() > attempt.getDeadline() + GRACE_MS) {
+            rejectedLate.increment();
+            return Claim.EXPIRED;
+        }
+        if (!attempt.state.compareAndSet(Attempt.OPEN, Attempt.CLOSING)) {
+            rejectedDuplicate.increment();
+            return Claim.ALREADY_SUBMITTED;
+        }
+        return Claim.OK;
+    }
+
+    /**
+     * Finishes the claimed attempt in the database with this result, unless a
+     * result from another node already has; then it is marked finished here too.
+     *
+     * @return false when the result must not be queued: the attempt was already submitted
+     */
+    public static boolean claimRow(Result result) throws SQLException {
+        boolean won;
+        try (Connection conn = DatabaseManager.getConnection()) {
+            won = finishRow(conn, result);
+        }
+        if (!won) {
+            Attempt attempt = index.get(key(result.getStudent_id(), result.getExam_id()));
+            if (attempt != null) finish(attempt);
+            rejectedDuplicate.increment();
+        }
+        return won;
+    }
+
+    /** Undoes claimRow(result) when the result could not be queued; call before release(). */
+    public static void releaseRow(Result result) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement ps = conn.prepareStatement(REOPEN_SQL)) {
+            Ids.bind(ps, 1, result.getStudent_id());
+            Ids.bind(ps, 2, result.getExam_id());
+            Ids.bind(ps, 3, result.getId());
+            ps.executeUpdate();
+        }
+    }
+
+    /** The claimed submission was accepted: the attempt is finished and its deadline dropped. */
+    public static void complete(String studentId, String examId) {
+        Attempt attempt = index.get(key(studentId, examId));
+        if (attempt == null) return;
+        finish(attempt);
+        submitted.increment();
+    }
+
+    /** The claimed submission failed; the attempt is open again, or expires now if its time ran out meanwhile. */
+    public static void release(String studentId, String examId) {
+        Attempt attempt = index.get(key(studentId, examId));
+        if (attempt == null || !attempt.state.compareAndSet(Attempt.CLOSING, Attempt.OPEN)) return;
+        if (System.currentTimeMillis() > attempt.getDeadline() + GRACE_MS) schedule(attempt, 0);
+    }
+
+    /** Whether answers for this exam are still accepted from the student (drafts included). */
+    public static boolean isOpen(String studentId, String examId) throws SQLException {
+        Attempt attempt = lookup(studentId, examId);
+        return attempt != null && attempt.state.get() == Attempt.OPEN
+            && System.currentTimeMillis() <= attempt.getDeadline() + GRACE_MS;
+    }
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("indexed", index.size());
+        stats.put("timers", running ? wheel.pending() : 0);
+        stats.put("started", started.sum());
+        stats.put("submitted", submitted.sum());
+        stats.put("autoSubmitted", autoSubmitted.sum());
+        stats.put("rejectedLate", rejectedLate.sum());
+        stats.put("rejectedDuplicate", rejectedDuplicate.sum());
+        stats.put("rejectedNotStarted", rejectedNotStarted.sum());
+        return stats;
+    }
+
+    private static String key(String studentId, String examId) {
+        return studentId + "/" + examId;
+    }
+
+    /** The indexed attempt, or the row when this node has not seen it yet; null when never started. */
+    private static Attempt lookup(String studentId, String examId) throws SQLException {
+        Attempt attempt = index.get(key(studentId, examId));
+        if (attempt != null) return attempt;
+        try (Connection conn = DatabaseManager.getConnection()) {
+            attempt = load(conn, studentId, examId);
+        }
+        return attempt == null ? null : register(attempt);
+    }
+
+    private static Attempt load(Connection conn, String studentId, String examId) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_SQL)) {
+            Ids.bind(ps, 1, studentId);
+            Ids.bind(ps, 2, examId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                return new Attempt(studentId, examId, rs.getTimestamp("started_at").getTime(),
+                    rs.getTimestamp("deadline_at").getTime(), rs.getTimestamp("finished_at") != null);
+            }
+        }
+    }
+
+    private static boolean finishRow(Connection conn, Result result) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(FINISH_SQL)) {
+            ps.setTimestamp(1, Timestamp.valueOf(LocalDateTime.parse(result.getSubmitted_at())));
+            Ids.bind(ps, 2, result.getId());
+            Ids.bind(ps, 3, result.getStudent_id());
+            Ids.bind(ps, 4, result.getExam_id());
+            return ps.executeUpdate() == 1;
+        }
+    }
+
+    /** Indexes the attempt and arms its timer; a concurrent register of the same key wins. */
+    private static Attempt register(Attempt attempt) {
+        Attempt raced = index.putIfAbsent(key(attempt.getStudentId(), attempt.getExamId()), attempt);
+        if (raced != null) return raced;
+        if (attempt.isFinished()) {
+            scheduleEviction(attempt);
+        } else {
+            schedule(attempt, attempt.getDeadline() + GRACE_MS);
+        }
+        return attempt;
+    }
+
+    private static void schedule(Attempt attempt, long at) {
+        attempt.timer = wheel.schedule(() -> expire(attempt), at);
+    }
+
+    private static void scheduleEviction(Attempt attempt) {
+        long from = Math.max(attempt.getDeadline(), System.currentTimeMillis());
+        String key = key(attempt.getStudentId(), attempt.getExamId());
+        attempt.timer = wheel.schedule(() -> index.remove(key, attempt), from + RETENTION_MS);
+    }
+
+    private static void finish(Attempt attempt) {
+        attempt.state.set(Attempt.DONE);
+        TimingWheel.Timeout timer = attempt.timer;
+        if (timer != null) timer.cancel();
+        scheduleEviction(attempt);
+    }
+
+    /** Runs on a finalizer thread when an open attempt passes deadline + grace. */
+    private static void expire(Attempt attempt) {
+        if (!attempt.state.compareAndSet(Attempt.OPEN, Attempt.CLOSING)) return; // a submission got there first
+        String studentId = attempt.getStudentId();
+        String examId = attempt.getExamId();
+        try {
+            // 1. Answer key; an exam deleted mid-attempt leaves nothing to score
+            AnswerKey key = AnswerKeyCache.get(examId, id -> {
+                try (Connection conn = DatabaseManager.getConnection()) {
+                    return ExamLoader.loadAnswerKey(conn, id);
+                }
+            });
+            if (key == null) {
+                finish(attempt);
+                return;
+            }
+
+            // 2. Whatever autosave last stored counts as the submission
+            Map<String, String> answers = DraftStore.get(studentId, examId);
+            if (answers == null) answers = Map.of();
+
+            Result result = new Result();
+            result.setId(Ids.newId());
+            result.setStudent_id(studentId);
+            result.setExam_id(examId);
+            result.setExam_title(key.getExamTitle());
+            result.setScore(key.score(answers));
+            result.setTotal_questions(key.getTotalQuestions());
+            result.setSubmitted_at(LocalDateTime.now().toString());
+            result.setAnswers(key.chosen(answers));
+
+            // 3. Every node that indexed the attempt fires this; only the one whose finish wins queues a result
+            try (Connection conn = DatabaseManager.getConnection()) {
+                if (!finishRow(conn, result)) {
+                    finish(attempt);
+                    return;
+                }
+            }
+            try {
+                ResultWriter.submit(result);
+            } catch (IOException | RuntimeException e) {
+                releaseRow(result);
+                throw e;
+            }
+            DraftStore.remove(studentId, examId);
+            finish(attempt);
+            autoSubmitted.increment();
+        } catch (SQLException | IOException | RuntimeException e) {
+            // Database down or result queue full (RejectedExecutionException): keep the attempt open and try again shortly
+            log.warn("Could not auto-submit attempt (student {}, exam {}), retrying in {}ms", studentId, examId, RETRY_MS, e);
+            attempt.state.set(Attempt.OPEN);
+            if (running) schedule(attempt, System.currentTimeMillis() + RETRY_MS);
+        }
+    }
+
+    private static void rebuild() throws SQLException {
+        int open = 0;
+        int finished = 0;
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement ps = conn.prepareStatement(REBUILD_SQL)) {
+            ps.setTimestamp(1, new Timestamp(System.currentTimeMillis() - RETENTION_MS));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Attempt attempt = new Attempt(Ids.read(rs, "student_id"), Ids.read(rs, "exam_id"),
+                        rs.getTimestamp("started_at").getTime(), rs.getTimestamp("deadline_at").getTime(),
+                        rs.getTimestamp("finished_at") != null);
+                    // Open attempts whose time ran out while we were down expire on the first tick
+                    register(attempt);
+                    if (attempt.isFinished()) finished++; else open++;
+                }
+            }
+        }
+        log.info("Attempt index rebuilt ({} open, {} recently finished)", open, finished);
+    }
+}
@@ -0,0 +1,152 @@
+package com.edutech.auth;
+
+import com.edutech.config.Env;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded CPU pool for BCrypt work, sized to the cores.
+ *
+ * Hashing is deliberately slow, so during a login storm it must not run on
+ * request threads or while a pooled connection is held. When the queue is
+ * full new work is rejected immediately, so callers can answer 429 instead of
+ * letting requests pile up.
+ *
+ * Roster imports hash on a separate set of threads through {@link #hashAll},
+ * so thousands of new passwords never fill the login queue.
+ */
+public class PasswordHashPool {
+
+    private static final int THREADS = Env.getInt("LOGIN_HASH_THREADS", Runtime.getRuntime().availableProcessors());
+    private static final int QUEUE_CAPACITY = Env.getInt("LOGIN_HASH_QUEUE", THREADS * 32);
+
+    private static final int BULK_THREADS = Env.getInt("BULK_HASH_THREADS", THREADS);
+
+    private static final ThreadPoolExecutor executor = createExecutor();
+    private static final ThreadPoolExecutor bulkExecutor = createBulkExecutor();
+    private static final LongAdder bulkHashed = new LongAdder();
+
+    private static final LongAdder completed = new LongAdder();
+    private static final LongAdder rejected = new LongAdder();
+    private static final LongAdder queueWaitNanos = new LongAdder();
+    private static final LongAdder hashNanos = new LongAdder();
+    private static final LongAccumulator maxQueueWaitNanos = new LongAccumulator(Math::max, 0);
+    private static final LongAccumulator maxHashNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Queues the task behind any hashing already waiting.
+     *
+     * @throws RejectedExecutionException when the queue is full or the pool is shut down
+     */
+    public static void submit(Runnable task) {
+        long enqueued = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                long started = System.nanoTime();
+                record(queueWaitNanos, maxQueueWaitNanos, started - enqueued);
+                try {
+                    task.run();
+                } finally {
+                    record(hashNanos, maxHashNanos, System.nanoTime() - started);
+                    completed.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * Hashes every password with a fresh salt, spread over the bulk threads;
+     * the caller waits for all of them.
+     *
+     * @return the hashes, in the order of the passwords
+     */
+    public static List<String> hashAll(List<String> passwords) throws InterruptedException {
+        List<Callable<String>> tasks = new ArrayList<>(passwords.size());
+        for (String password : passwords) tasks.add(() -> BCrypt.hashpw(password, BCrypt.gensalt()));
+        List<String> hashes = new ArrayList<>(passwords.size());
+        for (Future<String> f : bulkExecutor.invokeAll(tasks)) {
+            try {
+                hashes.add(f.get());
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Password hashing failed", e.getCause());
+            }
+        }
+        bulkHashed.add(passwords.size());
+        return hashes;
+    }
+
+    public static void shutdown() {
+        executor.shutdown();
+        bulkExecutor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static Map<String, Object> stats() {
+        long done = completed.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("threads", THREADS);
+        stats.put("queueCapacity", QUEUE_CAPACITY);
+        stats.put("queueDepth", executor.getQueue().size());
+        stats.put("active", executor.getActiveCount());
+        stats.put("completed", done);
+        stats.put("rejected", rejected.sum());
+        stats.put("avgQueueWaitMs", done == 0 ? 0.0 : queueWaitNanos.sum() / 1e6 / done);
+        stats.put("maxQueueWaitMs", maxQueueWaitNanos.get() / 1e6);
+        stats.put("avgHashMs", done == 0 ? 0.0 : hashNanos.sum() / 1e6 / done);
+        stats.put("maxHashMs", maxHashNanos.get() / 1e6);
+        stats.put("bulkThreads", BULK_THREADS);
+        stats.put("bulkHashed", bulkHashed.sum());
+        return stats;
+    }
+
+    private static void record(LongAdder sum, LongAccumulator max, long nanos) {
+        sum.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    private static ThreadPoolExecutor createExecutor() {
+        AtomicInteger n = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(THREADS, THREADS, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY), r -> {
+                Thread t = new Thread(r, "password-hash-" + n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }, new ThreadPoolExecutor.AbortPolicy());
+        pool.prestartAllCoreThreads();
+        return pool;
+    }
+
+    private static ThreadPoolExecutor createBulkExecutor() {
+        // Unbounded queue: callers submit one import batch at a time and wait for it
+        AtomicInteger n = new AtomicInteger();
+        return new ThreadPoolExecutor(BULK_THREADS, BULK_THREADS, 0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "bulk-hash-" + n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+    }
+}
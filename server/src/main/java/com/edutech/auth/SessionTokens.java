@@ -0,0 +1,219 @@
+package com.edutech.auth;
+
+import com.edutech.config.Env;
+import com.edutech.model.User;
+import com.edutech.util.Ids;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stateless, HMAC-signed session tokens.
+ *
+ * A token carries everything a request needs to know about its caller, so any
+ * node can validate it without the database or a shared session store:
+ *
+ * <pre>
+ * version(1) | keyId(1) | userId(16) | role(1) | tokenId(8) | expiresAt(8, epoch s) | username(utf-8)
+ * followed by the first 16 bytes of HMAC-SHA256 over everything before it, all base64url-encoded.
+ * </pre>
+ *
+ * Keys come from SESSION_KEYS as "id:base64secret" pairs; the first signs new
+ * tokens and every listed key is accepted, which is how keys are rotated.
+ *
+ * tokenId names the session, not the token: it is drawn at login and kept when
+ * the token is refreshed, so revoking it logs out every copy issued since.
+ */
+public class SessionTokens {
+    private static final Logger log = LoggerFactory.getLogger(SessionTokens.class);
+
+    private static final byte VERSION = 1;
+    private static final int HEADER = 1 + 1 + 16 + 1 + 8 + 8;
+    private static final int MAC_BYTES = 16;
+    private static final int MAX_TOKEN_CHARS = 512;
+
+    public static final long TTL_SECONDS = Env.getLong("SESSION_TTL_SECONDS", 30 * 60);
+
+    private static final SecretKeySpec[] keys = new SecretKeySpec[256];
+    private static final int activeKeyId;
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final ThreadLocal<Mac>[] macs = new ThreadLocal[256];
+
+    // tokenId -> latest expiry of any token of that session, for sessions logged out before then
+    private static final ConcurrentHashMap<Long, Long> revoked = new ConcurrentHashMap<>();
+    // userId -> time by which every token issued to that (deleted) user has expired
+    private static final ConcurrentHashMap<String, Long> revokedUsers = new ConcurrentHashMap<>();
+
+    private static final SecureRandom random = new SecureRandom();
+
+    static {
+        String configured = Env.get("SESSION_KEYS", null);
+        if (configured == null) {
+            // Fine for a single node; every node behind a balancer must share SESSION_KEYS
+            byte[] secret = new byte[32];
+            random.nextBytes(secret);
+            keys[0] = new SecretKeySpec(secret, "HmacSHA256");
+            activeKeyId = 0;
+            log.warn("SESSION_KEYS not set, using a random per-process key");
+        } else {
+            int first = -1;
+            for (String entry : configured.split(",")) {
+                String[] parts = entry.trim().split(":", 2);
+                int id = Integer.parseInt(parts[0]);
+                if (id < 0 || id > 255) throw new IllegalArgumentException("SESSION_KEYS ids must be 0-255");
+                keys[id] = new SecretKeySpec(Base64.getDecoder().decode(parts[1]), "HmacSHA256");
+                if (first < 0) first = id;
+            }
+            activeKeyId = first;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            SecretKeySpec key = keys[i];
+            if (key == null) continue;
+            macs[i] = ThreadLocal.withInitial(() -> {
+                try {
+                    Mac mac = Mac.getInstance("HmacSHA256");
+                    mac.init(key);
+                    return mac;
+                } catch (GeneralSecurityException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+    }
+
+    /** A new session, at login. */
+    public static String issue(User user) {
+        return issue(user, random.nextLong());
+    }
+
+    /** The same session with a fresh expiry, signed with the active key. */
+    public static String refresh(Session session) {
+        return issue(session.user, session.tokenId);
+    }
+
+    private static String issue(User user, long tokenId) {
+        byte[] name = user.getUsername().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.allocate(HEADER + name.length + MAC_BYTES);
+        buf.put(VERSION);
+        buf.put((byte) activeKeyId);
+        buf.put(Ids.toBytes(user.getId()));
+        buf.put((byte) ("ADMIN".equals(user.getRole()) ? 1 : 0));
+        buf.putLong(tokenId);
+        buf.putLong(System.currentTimeMillis() / 1000 + TTL_SECONDS);
+        buf.put(name);
+
+        Mac mac = macs[activeKeyId].get();
+        mac.update(buf.array(), 0, buf.position());
+        buf.put(mac.doFinal(), 0, MAC_BYTES);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buf.array());
+    }
+
+    /** The verified caller, or null if the token is malformed, forged, expired or revoked. */
+    public static Session verify(String token) {
+        if (token == null || token.isEmpty() || token.length() > MAX_TOKEN_CHARS) return null;
+        byte[] raw;
+        try {
+            raw = Base64.getUrlDecoder().decode(token);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (raw.length < HEADER + MAC_BYTES || raw[0] != VERSION) return null;
+
+        int keyId = raw[1] & 0xFF;
+        if (macs[keyId] == null) return null; // retired or unknown key
+        int signed = raw.length - MAC_BYTES;
+        Mac mac = macs[keyId].get();
+        mac.update(raw, 0, signed);
+        byte[] expected = mac.doFinal();
+        if (!MessageDigest.isEqual(slice(expected, 0, MAC_BYTES), slice(raw, signed, MAC_BYTES))) return null;
+
+        ByteBuffer buf = ByteBuffer.wrap(raw);
+        buf.position(18);
+        String role = buf.get() == 1 ? "ADMIN" : "STUDENT";
+        long tokenId = buf.getLong();
+        long expiresAt = buf.getLong();
+        if (expiresAt <= System.currentTimeMillis() / 1000) return null;
+        if (!revoked.isEmpty() && revoked.containsKey(tokenId)) return null;
+
+        String userId = Ids.fromBytes(slice(raw, 2, 16));
+        if (!revokedUsers.isEmpty() && revokedUsers.containsKey(userId)) return null;
+        String username = new String(raw, HEADER, signed - HEADER, StandardCharsets.UTF_8);
+        return new Session(new User(userId, username, null, role), tokenId, expiresAt, keyId != activeKeyId);
+    }
+
+    /**
+     * Logout: no token of the session validates on this node any more. A refresh
+     * issued just before may run for a full TTL from now, so the entry is kept
+     * that long. ChangeLog carries the revocation to the other nodes.
+     *
+     * @return when the revocation can be forgotten, epoch seconds
+     */
+    public static long revoke(Session session) {
+        long until = System.currentTimeMillis() / 1000 + TTL_SECONDS;
+        revoke(session.tokenId, until);
+        return until;
+    }
+
+    /** A revocation made on another node. */
+    public static void revoke(long tokenId, long until) {
+        revoked.merge(tokenId, until, Math::max);
+        prune(revoked);
+    }
+
+    /** Deleted user: none of their tokens validate any more. */
+    public static void revokeUser(String userId) {
+        revokedUsers.put(userId, System.currentTimeMillis() / 1000 + TTL_SECONDS);
+        prune(revokedUsers);
+    }
+
+    private static void prune(Map<?, Long> expiring) {
+        long now = System.currentTimeMillis() / 1000;
+        Iterator<? extends Map.Entry<?, Long>> it = expiring.entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getValue() <= now) it.remove();
+        }
+    }
+
+    private static byte[] slice(byte[] src, int from, int len) {
+        byte[] out = new byte[len];
+        System.arraycopy(src, from, out, 0, len);
+        return out;
+    }
+
+    /** A validated token: who the caller is and when the token runs out. */
+    public static final class Session {
+        private final User user;
+        private final long tokenId;
+        private final long expiresAt;
+        private final boolean staleKey;
+
+        Session(User user, long tokenId, long expiresAt, boolean staleKey) {
+            this.user = user;
+            this.tokenId = tokenId;
+            this.expiresAt = expiresAt;
+            this.staleKey = staleKey;
+        }
+
+        public User getUser() { return user; }
+
+        public long getTokenId() { return tokenId; }
+
+        public long getExpiresAt() { return expiresAt; }
+
+        /** True when the token should be re-issued: past half its life, or signed with a rotated-out key. */
+        public boolean needsRefresh() {
+            return staleKey || expiresAt - System.currentTimeMillis() / 1000 < TTL_SECONDS / 2;
+        }
+    }
+}
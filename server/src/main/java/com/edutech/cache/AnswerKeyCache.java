@@ -0,0 +1,76 @@
+package com.edutech.cache;
+
+import com.edutech.config.Env;
+import com.edutech.scoring.AnswerKey;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compiled answer keys by exam id. Keys are a few hundred bytes each, so a
+ * plain entry-count bound is enough; a load is done at most once per exam
+ * until the exam is invalidated.
+ */
+public class AnswerKeyCache {
+
+    /** Loads the key from the database; returns null when the exam does not exist. */
+    public interface Loader {
+        AnswerKey load(String examId) throws SQLException;
+    }
+
+    private static final int MAX_ENTRIES = Env.getInt("ANSWER_KEY_CACHE_MAX_ENTRIES", 2_000);
+
+    private static final ConcurrentHashMap<String, AnswerKey> keys = new ConcurrentHashMap<>();
+    private static final AtomicLong epoch = new AtomicLong();
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+
+    public static AnswerKey get(String examId, Loader loader) throws SQLException {
+        AnswerKey key = keys.get(examId);
+        if (key != null) {
+            hits.increment();
+            return key;
+        }
+        misses.increment();
+
+        long startEpoch = epoch.get();
+        key = loader.load(examId);
+        if (key != null && startEpoch == epoch.get()) {
+            if (keys.size() >= MAX_ENTRIES) evictOne();
+            AnswerKey raced = keys.putIfAbsent(examId, key);
+            if (raced != null) key = raced;
+        }
+        return key;
+    }
+
+    public static void invalidate(String examId) {
+        epoch.incrementAndGet();
+        keys.remove(examId);
+    }
+
+    public static void clear() {
+        epoch.incrementAndGet();
+        keys.clear();
+    }
+
+    public static Map<String, Object> stats() {
+        return Map.of(
+            "entries", keys.size(),
+            "maxEntries", MAX_ENTRIES,
+            "hits", hits.sum(),
+            "misses", misses.sum());
+    }
+
+    private static void evictOne() {
+        Iterator<String> it = keys.keySet().iterator();
+        if (it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+}
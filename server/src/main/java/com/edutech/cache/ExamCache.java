@@ -0,0 +1,151 @@
+package com.edutech.cache;
+
+import com.edutech.config.Env;
+import com.edutech.model.Exam;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU cache of exam snapshots keyed by exam id and view.
+ *
+ * The bound is in approximate bytes (see ExamSnapshot#getWeight) rather than
+ * an entry count, so one huge exam cannot pin the heap. Concurrent misses
+ * for the same key share a single database load.
+ */
+public class ExamCache {
+
+    /** Loads an exam from the database; returns null when it does not exist. */
+    public interface Loader {
+        Exam load(String examId, ExamView view) throws SQLException;
+    }
+
+    private static final long MAX_WEIGHT = Env.getLong("EXAM_CACHE_MAX_BYTES", 64L * 1024 * 1024);
+    private static final int GZIP_MIN_BYTES = Env.getInt("EXAM_CACHE_GZIP_MIN_BYTES", 1024);
+
+    private static final Object lock = new Object();
+    private static final LinkedHashMap<String, ExamSnapshot> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private static long currentWeight;
+
+    private static final ConcurrentHashMap<String, CompletableFuture<ExamSnapshot>> inFlight = new ConcurrentHashMap<>();
+    // Bumped on every invalidation so a load that raced with an edit is not stored
+    private static final AtomicLong epoch = new AtomicLong();
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static final LongAdder evictions = new LongAdder();
+    private static final LongAdder invalidations = new LongAdder();
+
+    public static ExamSnapshot get(String examId, ExamView view, Loader loader) throws SQLException, IOException {
+        String key = key(examId, view);
+        ExamSnapshot cached;
+        synchronized (lock) {
+            cached = entries.get(key);
+        }
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+
+        CompletableFuture<ExamSnapshot> mine = new CompletableFuture<>();
+        CompletableFuture<ExamSnapshot> pending = inFlight.putIfAbsent(key, mine);
+        if (pending != null) return await(pending);
+
+        try {
+            long startEpoch = epoch.get();
+            Exam exam = loader.load(examId, view);
+            ExamSnapshot snapshot = (exam == null) ? null : ExamSnapshot.of(exam, view, GZIP_MIN_BYTES);
+            if (snapshot != null && startEpoch == epoch.get()) store(key, snapshot);
+            mine.complete(snapshot);
+            return snapshot;
+        } catch (SQLException | IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /** Drops every view of the exam. Call after any write that touches it. */
+    public static void invalidate(String examId) {
+        epoch.incrementAndGet();
+        invalidations.increment();
+        synchronized (lock) {
+            for (ExamView view : ExamView.values()) {
+                ExamSnapshot removed = entries.remove(key(examId, view));
+                if (removed != null) currentWeight -= removed.getWeight();
+            }
+        }
+    }
+
+    public static void clear() {
+        epoch.incrementAndGet();
+        synchronized (lock) {
+            entries.clear();
+            currentWeight = 0;
+        }
+    }
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long h = hits.sum();
+        long m = misses.sum();
+        synchronized (lock) {
+            stats.put("entries", entries.size());
+            stats.put("bytes", currentWeight);
+        }
+        stats.put("maxBytes", MAX_WEIGHT);
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("evictions", evictions.sum());
+        stats.put("invalidations", invalidations.sum());
+        stats.put("hitRatio", (h + m) == 0 ? 0.0 : (double) h / (h + m));
+        return stats;
+    }
+
+    private static void store(String key, ExamSnapshot snapshot) {
+        if (snapshot.getWeight() > MAX_WEIGHT) return; // would evict everything else
+        synchronized (lock) {
+            ExamSnapshot previous = entries.put(key, snapshot);
+            if (previous != null) currentWeight -= previous.getWeight();
+            currentWeight += snapshot.getWeight();
+
+            Iterator<Map.Entry<String, ExamSnapshot>> it = entries.entrySet().iterator();
+            while (currentWeight > MAX_WEIGHT && it.hasNext()) {
+                Map.Entry<String, ExamSnapshot> eldest = it.next();
+                if (eldest.getKey().equals(key)) continue;
+                currentWeight -= eldest.getValue().getWeight();
+                it.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    private static ExamSnapshot await(CompletableFuture<ExamSnapshot> pending) throws SQLException, IOException {
+        try {
+            return pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for exam load", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) throw (SQLException) cause;
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new SQLException("Exam load failed", cause);
+        }
+    }
+
+    private static String key(String examId, ExamView view) {
+        return view.name() + ':' + examId;
+    }
+}
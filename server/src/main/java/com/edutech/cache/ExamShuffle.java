@@ -0,0 +1,107 @@
+package com.edutech.cache;
+
+import com.edutech.config.Env;
+import com.edutech.util.SipHash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * The order in which one student sees an exam's questions and options.
+ *
+ * Nothing is stored: the order is a keyed permutation of (exam id, student id),
+ * a SipHash seed driving Fisher-Yates, so every node derives the same order for
+ * the same student every time, and students cannot work out each other's order
+ * without the key. Answers are submitted and scored by option id, so scoring
+ * never sees the order.
+ *
+ * The key is EXAM_SHUFFLE_KEY (base64, at least 16 bytes). Without it the key
+ * is derived from SESSION_KEYS, which every node already shares, but rotating
+ * those then reorders exams in progress.
+ */
+public class ExamShuffle {
+    private static final Logger log = LoggerFactory.getLogger(ExamShuffle.class);
+
+    private static final boolean ENABLED = Env.getBoolean("EXAM_SHUFFLE", true);
+    private static final SipHash prf = createPrf();
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /** The student's seed for this exam; both ids are canonical UUID strings (see Ids.isValid). */
+    public static long seed(String examId, String studentId) {
+        return prf.hash(hexBits(examId, 0), hexBits(examId, 16), hexBits(studentId, 0), hexBits(studentId, 16));
+    }
+
+    /**
+     * Fills order[0..n) with a permutation of 0..n-1 drawn from the seed.
+     * Each list gets its own stream (0 for the questions, 1 + question index for
+     * its options), so adding a question does not reorder the others' options.
+     */
+    static void permute(int[] order, int n, long seed, int stream) {
+        for (int i = 0; i < n; i++) order[i] = i;
+        // Mixed start, so neighbouring streams do not walk the same sequence one step apart
+        long state = mix(seed + 0x9E3779B97F4A7C15L * (stream + 1));
+        for (int i = n - 1; i > 0; i--) {
+            state += 0x9E3779B97F4A7C15L;
+            // Multiply-shift maps the top 32 bits onto 0..i without division
+            int j = (int) (((mix(state) >>> 32) * (i + 1)) >>> 32);
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+    }
+
+    /** The 64 bits held by hex digits from..from+16 of a UUID, dashes skipped; no UUID object is built. */
+    private static long hexBits(String uuid, int from) {
+        long bits = 0;
+        int digits = 0;
+        for (int i = 0; digits < from + 16; i++) {
+            char c = uuid.charAt(i);
+            if (c == '-') continue;
+            if (digits++ >= from) bits = (bits << 4) | Character.digit(c, 16);
+        }
+        return bits;
+    }
+
+    /** SplitMix64 finalizer. */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static SipHash createPrf() {
+        byte[] key;
+        String configured = Env.get("EXAM_SHUFFLE_KEY", null);
+        String sessionKeys = Env.get("SESSION_KEYS", null);
+        if (configured != null) {
+            key = Base64.getDecoder().decode(configured);
+            if (key.length < 16) throw new IllegalArgumentException("EXAM_SHUFFLE_KEY must be at least 16 bytes");
+        } else if (sessionKeys != null) {
+            key = sha256("exam-shuffle\n" + sessionKeys);
+        } else {
+            // Same trade-off as SessionTokens: a restart changes every student's order
+            key = new byte[16];
+            new SecureRandom().nextBytes(key);
+            log.warn("EXAM_SHUFFLE_KEY not set, using a random per-process key");
+        }
+        ByteBuffer buf = ByteBuffer.wrap(key);
+        return new SipHash(buf.getLong(), buf.getLong());
+    }
+
+    private static byte[] sha256(String s) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.edutech.cache;
+
+import com.edutech.model.Exam;
+import com.edutech.model.Option;
+import com.edutech.model.Question;
+import com.edutech.util.EncodedJson;
+import com.edutech.util.JsonUtil;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A frozen copy of an exam graph as served for one view. The lists are
+ * unmodifiable and the copy is never handed to code that writes, so the same
+ * instance can be shared by every request that hits the cache. The JSON body
+ * is encoded once when the snapshot is built.
+ *
+ * The body is laid out with each question's options last and the questions
+ * last in the exam, and the offsets of every question and option are kept, so
+ * a student's shuffled order ({@link ExamShuffle}) is written by copying the
+ * same bytes in another order: no serialization, same length.
+ */
+public final class ExamSnapshot {
+    private final Exam exam;
+    private final ExamView view;
+    private final EncodedJson body;
+
+    // Offsets into body.getUtf8(): the exam up to and including "questions":[, each question's
+    // '{' and the byte after its "options":[, and each option's first byte and end
+    private final int head;
+    private final int[] questionStart;
+    private final int[] optionsStart;
+    private final int[][] optionStart;
+    private final int[][] optionEnd;
+    private final int maxOptions;
+
+    private static final byte[] COMMA = { ',' };
+    private static final byte[] CLOSE = { ']', '}' };
+
+    private ExamSnapshot(Exam exam, ExamView view, EncodedJson body, int head, int[] questionStart,
+                         int[] optionsStart, int[][] optionStart, int[][] optionEnd) {
+        this.exam = exam;
+        this.view = view;
+        this.body = body;
+        this.head = head;
+        this.questionStart = questionStart;
+        this.optionsStart = optionsStart;
+        this.optionStart = optionStart;
+        this.optionEnd = optionEnd;
+        int max = 0;
+        for (int[] o : optionStart) max = Math.max(max, o.length);
+        this.maxOptions = max;
+    }
+
+    public static ExamSnapshot of(Exam source, ExamView view, int gzipMinBytes) throws IOException {
+        List<Question> questions = new ArrayList<>();
+        if (source.getQuestions() != null) {
+            for (Question q : source.getQuestions()) {
+                Question copy = new Question();
+                copy.setId(q.getId());
+                copy.setExam_id(q.getExam_id());
+                copy.setText(q.getText());
+                copy.setCorrect_option_id(view.includesAnswers() ? q.getCorrect_option_id() : null);
+
+                List<Option> options = new ArrayList<>();
+                if (q.getOptions() != null) {
+                    for (Option o : q.getOptions()) {
+                        options.add(new Option(o.getId(), o.getText(), o.getQuestion_id(),
+                            view.includesAnswers() ? o.getCorrect() : null));
+                    }
+                }
+                copy.setOptions(List.copyOf(options));
+                questions.add(copy);
+            }
+        }
+
+        Exam frozen = new Exam();
+        frozen.setId(source.getId());
+        frozen.setTitle(source.getTitle());
+        frozen.setDescription(source.getDescription());
+        frozen.setDurationMinutes(source.getDurationMinutes());
+        frozen.setQuestions(List.copyOf(questions));
+        return encode(frozen, view, gzipMinBytes);
+    }
+
+    private static ExamSnapshot encode(Exam exam, ExamView view, int gzipMinBytes) throws IOException {
+        List<Question> questions = exam.getQuestions();
+        int n = questions.size();
+        int[] questionStart = new int[n];
+        int[] optionsStart = new int[n];
+        int[][] optionStart = new int[n][];
+        int[][] optionEnd = new int[n][];
+        int head;
+
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(4096);
+        try (JsonGenerator gen = JsonUtil.generator(buf)) {
+            gen.writeStartObject();
+            writeFieldsExcept(gen, exam, "questions");
+            gen.writeArrayFieldStart("questions");
+            gen.flush();
+            head = buf.size();
+            for (int q = 0; q < n; q++) {
+                Question question = questions.get(q);
+                gen.writeStartObject(); // preceded by ',' after the first question
+                gen.flush();
+                questionStart[q] = buf.size() - 1;
+                writeFieldsExcept(gen, question, "options");
+                gen.writeArrayFieldStart("options");
+                gen.flush();
+                optionsStart[q] = buf.size();
+
+                List<Option> options = question.getOptions();
+                optionStart[q] = new int[options.size()];
+                optionEnd[q] = new int[options.size()];
+                for (int o = 0; o < options.size(); o++) {
+                    int before = buf.size();
+                    gen.writeObject(options.get(o));
+                    gen.flush();
+                    optionStart[q][o] = o == 0 ? before : before + 1; // skip the separating ','
+                    optionEnd[q][o] = buf.size();
+                }
+                gen.writeEndArray();
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+            gen.writeEndObject();
+        }
+        return new ExamSnapshot(exam, view, JsonUtil.encodeUtf8(buf.toByteArray(), gzipMinBytes),
+            head, questionStart, optionsStart, optionStart, optionEnd);
+    }
+
+    private static void writeFieldsExcept(JsonGenerator gen, Object value, String last) throws IOException {
+        ObjectNode node = JsonUtil.toTree(value);
+        node.remove(last);
+        Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            gen.writeFieldName(field.getKey());
+            gen.writeTree(field.getValue());
+        }
+    }
+
+    /**
+     * Writes the body with questions and, within each, options in the order
+     * drawn from the seed. Allocates the two index arrays and nothing else.
+     */
+    public void writeShuffled(OutputStream out, long seed) throws IOException {
+        byte[] utf8 = body.getUtf8();
+        int n = questionStart.length;
+        int[] questionOrder = new int[n];
+        int[] optionOrder = new int[maxOptions];
+        ExamShuffle.permute(questionOrder, n, seed, 0);
+
+        out.write(utf8, 0, head);
+        for (int k = 0; k < n; k++) {
+            int q = questionOrder[k];
+            if (k > 0) out.write(COMMA);
+            out.write(utf8, questionStart[q], optionsStart[q] - questionStart[q]);
+            int[] starts = optionStart[q];
+            int[] ends = optionEnd[q];
+            ExamShuffle.permute(optionOrder, starts.length, seed, 1 + q);
+            for (int j = 0; j < starts.length; j++) {
+                int o = optionOrder[j];
+                if (j > 0) out.write(COMMA);
+                out.write(utf8, starts[o], ends[o] - starts[o]);
+            }
+            out.write(CLOSE);
+        }
+        out.write(CLOSE);
+    }
+
+    public Exam getExam() { return exam; }
+
+    public ExamView getView() { return view; }
+
+    public EncodedJson getBody() { return body; }
+
+    /** Length of the identity body, which every shuffled order shares. */
+    public int getLength() { return body.getUtf8().length; }
+
+    /** Approximate retained bytes: the encoded bodies, the graph (estimated at its JSON size) and the offsets. */
+    public long getWeight() {
+        long offsets = 8L * questionStart.length;
+        for (int[] o : optionStart) offsets += 8L * o.length;
+        return body.size() + body.getUtf8().length + offsets;
+    }
+}
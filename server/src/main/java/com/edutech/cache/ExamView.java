@@ -0,0 +1,18 @@
+package com.edutech.cache;
+
+/**
+ * Which projection of an exam is being served. The two views are cached
+ * under separate keys so answer data never leaks into a student payload.
+ */
+public enum ExamView {
+    STUDENT,
+    ADMIN;
+
+    public static ExamView forRole(String role) {
+        return "ADMIN".equals(role) ? ADMIN : STUDENT;
+    }
+
+    public boolean includesAnswers() {
+        return this == ADMIN;
+    }
+}
@@ -1,20 +1,43 @@
 package com.edutech.config;
 
+import com.edutech.analytics.ExamAnalytics;
+import com.edutech.attempt.Attempts;
+import com.edutech.auth.PasswordHashPool;
+import com.edutech.db.ChangeLog;
 import com.edutech.db.DatabaseManager;
+import com.edutech.db.DraftStore;
+import com.edutech.db.ResultWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import jakarta.servlet.ServletContextEvent;
 import jakarta.servlet.ServletContextListener;
 import jakarta.servlet.annotation.WebListener;
 
 @WebListener
 public class AppListener implements ServletContextListener {
+    private static final Logger log = LoggerFactory.getLogger(AppListener.class);
+
     @Override
     public void contextInitialized(ServletContextEvent sce) {
-        System.out.println(">> Server Starting... Initializing DB.");
+        log.info("Server starting, initializing DB");
         DatabaseManager.init();
+        ResultWriter.start();
+        ExamAnalytics.start();
+        DraftStore.start();
+        Attempts.start();
+        ChangeLog.start();
     }
 
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
+        // Let in-flight requests finish, then flush queued results while the pool is still open
+        ExecutionMode.shutdown();
+        ChangeLog.shutdown();
+        Attempts.shutdown();
+        ResultWriter.shutdown();
+        ExamAnalytics.shutdown();
+        DraftStore.shutdown();
+        PasswordHashPool.shutdown();
         DatabaseManager.close();
     }
 }
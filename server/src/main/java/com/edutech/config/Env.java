@@ -0,0 +1,52 @@
+package com.edutech.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Small helpers for reading tuning knobs from environment variables,
+ * the same way DatabaseManager reads DB_URL and friends. A JVM system
+ * property of the same name (-DRESULT_BATCH_SIZE=500) takes precedence,
+ * which is also how the tests configure a node.
+ */
+public class Env {
+    private static final Logger log = LoggerFactory.getLogger(Env.class);
+
+    public static String get(String name, String fallback) {
+        String value = raw(name);
+        return (value == null || value.isBlank()) ? fallback : value.trim();
+    }
+
+    public static int getInt(String name, int fallback) {
+        String value = raw(name);
+        if (value == null || value.isBlank()) return fallback;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring invalid {}={}, using {}", name, value, fallback);
+            return fallback;
+        }
+    }
+
+    public static long getLong(String name, long fallback) {
+        String value = raw(name);
+        if (value == null || value.isBlank()) return fallback;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring invalid {}={}, using {}", name, value, fallback);
+            return fallback;
+        }
+    }
+
+    public static boolean getBoolean(String name, boolean fallback) {
+        String value = raw(name);
+        if (value == null || value.isBlank()) return fallback;
+        return Boolean.parseBoolean(value.trim());
+    }
+
+    private static String raw(String name) {
+        String value = System.getProperty(name);
+        return value != null ? value : System.getenv(name);
+    }
+}
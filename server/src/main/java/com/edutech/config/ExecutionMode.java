@@ -0,0 +1,51 @@
+package com.edutech.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where request handlers that block on JDBC run, chosen with EXECUTION_MODE:
+ *
+ *   platform (default) - on the Tomcat worker thread that accepted the request
+ *   virtual            - each request moves to its own virtual thread through async
+ *                        dispatch, and the worker goes straight back to the connector
+ *
+ * A virtual thread parked on a socket read or on the connection semaphore in
+ * DatabaseManager costs a few KB of heap, so a burst of thousands of students
+ * queues up cheaply instead of exhausting maxThreads.
+ */
+public class ExecutionMode {
+    private static final Logger log = LoggerFactory.getLogger(ExecutionMode.class);
+
+    private static final boolean VIRTUAL = "virtual".equalsIgnoreCase(Env.get("EXECUTION_MODE", "platform"));
+    private static final long SHUTDOWN_TIMEOUT_MS = Env.getLong("REQUEST_SHUTDOWN_TIMEOUT_MS", 10_000);
+
+    private static final ExecutorService executor = VIRTUAL
+        ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("request-", 0).factory())
+        : null;
+
+    public static boolean isVirtual() {
+        return VIRTUAL;
+    }
+
+    public static void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /** Lets requests already running on virtual threads finish. */
+    public static void shutdown() {
+        if (executor == null) return;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                log.warn("Requests still running after {} ms, stopping anyway", SHUTDOWN_TIMEOUT_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.edutech.config;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.WebResourceRoot;
+import org.apache.catalina.loader.WebappLoader;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.webresources.DirResourceSet;
+import org.apache.catalina.webresources.JarResourceSet;
+import org.apache.catalina.webresources.StandardRoot;
+import org.apache.tomcat.util.scan.StandardJarScanner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Runs the API in embedded Tomcat from the launcher jar, for nodes that must be
+ * serving within seconds (e.g. replacing a crashed one mid-exam):
+ *
+ *   java -jar target/ROOT-launcher.jar
+ *
+ * The same classes and web.xml as the WAR: the jar is mounted as the webapp's
+ * WEB-INF/classes, so the @WebServlet/@WebFilter scan and the filter order are
+ * unchanged. The webapp loader delegates to the application class loader, so
+ * each class is loaded once, from the jar, where a CDS archive can cover it
+ * (see the cds profile in pom.xml). PORT defaults to 8080.
+ *
+ * With EXIT_AFTER_START=true it stops as soon as startup is over, which is how
+ * the CDS training run records the classes startup loads.
+ */
+public class Launcher {
+    private static final Logger log = LoggerFactory.getLogger(Launcher.class);
+
+    private static final int PORT = Env.getInt("PORT", 8080);
+    private static final boolean EXIT_AFTER_START = Env.getBoolean("EXIT_AFTER_START", false);
+
+    // Where pom.xml copies src/main/webapp/WEB-INF inside the jar
+    private static final String WEB_INF = "/webapp/WEB-INF";
+
+    public static void main(String[] args) throws Exception {
+        long start = System.nanoTime();
+        File app = new File(Launcher.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        Path base = Files.createTempDirectory("edutech-tomcat");
+
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(base.toString());
+        tomcat.setPort(PORT);
+        tomcat.getConnector();
+        // API only: no default or JSP servlet needed
+        tomcat.setAddDefaultWebXmlToWebapp(false);
+
+        Context context = tomcat.addWebapp("", Files.createDirectories(base.resolve("webapp")).toString());
+        WebResourceRoot resources = new StandardRoot(context);
+        if (app.isDirectory()) {
+            // Run from target/classes, e.g. in an IDE
+            resources.addPreResources(new DirResourceSet(resources, "/WEB-INF/classes", app.getPath(), "/"));
+            resources.addPreResources(new DirResourceSet(resources, "/WEB-INF", app.getPath() + WEB_INF, "/"));
+        } else {
+            resources.addPreResources(new JarResourceSet(resources, "/WEB-INF/classes", app.getPath(), "/"));
+            resources.addPreResources(new JarResourceSet(resources, "/WEB-INF", app.getPath(), WEB_INF));
+        }
+        context.setResources(resources);
+
+        WebappLoader loader = new WebappLoader();
+        loader.setDelegate(true);
+        context.setLoader(loader);
+        context.setParentClassLoader(Launcher.class.getClassLoader());
+        // Dependencies are on the class path, not in WEB-INF/lib, and have nothing to scan
+        StandardJarScanner scanner = (StandardJarScanner) context.getJarScanner();
+        scanner.setScanClassPath(false);
+        scanner.setScanManifest(false);
+
+        tomcat.start();
+        if (!context.getState().isAvailable()) {
+            // Usually DatabaseManager.init could not reach DB_URL; the cause is logged above
+            log.error("API failed to start");
+            tomcat.stop();
+            tomcat.destroy();
+            System.exit(1);
+        }
+        log.info("Serving on port {}, started in {}ms", PORT, (System.nanoTime() - start) / 1_000_000);
+
+        if (EXIT_AFTER_START) {
+            tomcat.stop();
+            tomcat.destroy();
+            return;
+        }
+
+        // SIGTERM stops Tomcat, so AppListener drains the result writer before the JVM exits
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                tomcat.stop();
+                tomcat.destroy();
+            } catch (LifecycleException e) {
+                log.error("Could not stop Tomcat", e);
+            }
+        }));
+        tomcat.getServer().await();
+    }
+}
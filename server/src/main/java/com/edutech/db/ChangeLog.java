@@ -0,0 +1,207 @@
+package com.edutech.db;
+
+import com.edutech.auth.SessionTokens;
+import com.edutech.cache.AnswerKeyCache;
+import com.edutech.cache.ExamCache;
+import com.edutech.config.Env;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cross-node invalidation of the in-process caches, through the database.
+ *
+ * Exam changes, user deletions and logouts add a change_log row in the same
+ * transaction as the change, so a change that commits is always logged. Every
+ * node follows the table with a {@link SeqTail} every CHANGE_LOG_POLL_MS (range
+ * reads on the primary key, with CHANGE_LOG_BATCH_SIZE and CHANGE_LOG_GAP_MS)
+ * and applies the rows to its own caches, so a change reaches every node
+ * within about one poll interval. Rows a node wrote itself are skipped; it
+ * applied them when it made the change.
+ *
+ * Rows older than CHANGE_LOG_RETENTION_MS are pruned; a node that could not
+ * poll for that long clears its caches instead.
+ */
+public class ChangeLog {
+    private static final Logger log = LoggerFactory.getLogger(ChangeLog.class);
+
+    public static final String EXAM = "EXAM";
+    public static final String USER = "USER";
+    public static final String SESSION = "SESSION";
+
+    private static final boolean ENABLED = Env.getBoolean("CHANGE_LOG_ENABLED", true);
+    private static final long POLL_MS = Env.getLong("CHANGE_LOG_POLL_MS", 1000);
+    private static final long RETENTION_MS = Env.getLong("CHANGE_LOG_RETENTION_MS", 3_600_000);
+
+    private static final String INSERT_SQL =
+        "INSERT INTO change_log (kind, entity, origin, created_at) VALUES (?, ?, ?, ?)";
+    private static final String PRUNE_SQL = "DELETE FROM change_log WHERE created_at < ?";
+
+    // Identifies this process's rows
+    private static final String NODE_ID = UUID.randomUUID().toString();
+
+    private static final SeqTail tail = new SeqTail("change_log", "seq, kind, entity, origin", "CHANGE_LOG", 500,
+        ChangeLog::apply);
+
+    // Poller state, only touched by the poller thread
+    private static long lastPollOk;
+    private static long lastPrune;
+
+    private static final LongAdder written = new LongAdder();
+    private static final LongAdder applied = new LongAdder();
+    private static final LongAdder pollFailures = new LongAdder();
+    private static final LongAdder cacheResets = new LongAdder();
+
+    private static final Object tick = new Object();
+    private static Thread poller;
+    private static volatile boolean running;
+
+    public static synchronized void start() {
+        if (!ENABLED) {
+            log.info("Change log disabled, caches are not invalidated across nodes");
+            return;
+        }
+        if (running) return;
+        long from;
+        try (Connection conn = DatabaseManager.getConnection()) {
+            // Caches start empty, so nothing before now needs applying
+            from = tail.start(conn);
+        } catch (SQLException e) {
+            log.error("Change log unavailable, caches are not invalidated across nodes", e);
+            return;
+        }
+        lastPollOk = System.currentTimeMillis();
+        running = true;
+        poller = new Thread(ChangeLog::runPoller, "change-log-poller");
+        poller.setDaemon(true);
+        poller.start();
+        log.info("Change log polling every {}ms from seq {} (node {})", POLL_MS, from, NODE_ID);
+    }
+
+    public static synchronized void shutdown() {
+        if (!running) return;
+        synchronized (tick) {
+            running = false;
+            tick.notifyAll();
+        }
+        try {
+            poller.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Logs a change on the caller's connection, inside its transaction when
+     * one is open, so the row commits or rolls back with the change.
+     */
+    public static void record(Connection conn, String kind, String entity) throws SQLException {
+        if (!ENABLED) return;
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+            ps.setString(1, kind);
+            ps.setString(2, entity);
+            ps.setString(3, NODE_ID);
+            ps.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
+            ps.executeUpdate();
+        }
+        written.increment();
+    }
+
+    /**
+     * The entity of a SESSION row: the token id and when it would have expired.
+     * @param until as returned by SessionTokens.revoke
+     */
+    public static String sessionEntity(long tokenId, long until) {
+        return tokenId + ":" + until;
+    }
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", ENABLED && running);
+        stats.put("cursor", tail.cursor());
+        stats.put("openGaps", tail.openGaps());
+        stats.put("written", written.sum());
+        stats.put("applied", applied.sum());
+        stats.put("gapsFilled", tail.gapsFilled());
+        stats.put("gapsExpired", tail.gapsExpired());
+        stats.put("pollFailures", pollFailures.sum());
+        stats.put("cacheResets", cacheResets.sum());
+        return stats;
+    }
+
+    private static void runPoller() {
+        while (true) {
+            synchronized (tick) {
+                try {
+                    if (running) tick.wait(POLL_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            if (!running) return;
+            try {
+                poll();
+            } catch (SQLException e) {
+                pollFailures.increment();
+                log.warn("Change log poll failed", e);
+            }
+        }
+    }
+
+    private static void poll() throws SQLException {
+        long now = System.currentTimeMillis();
+        try (Connection conn = DatabaseManager.getConnection()) {
+            // 1. Out for longer than the log keeps rows: some may be gone, so start the caches over
+            if (now - lastPollOk > RETENTION_MS) resetCaches();
+
+            // 2. Late commits into earlier gaps, then the new rows
+            tail.poll(conn, () -> running);
+
+            if (now - lastPrune > Math.min(RETENTION_MS, 60_000)) {
+                try (PreparedStatement ps = conn.prepareStatement(PRUNE_SQL)) {
+                    ps.setTimestamp(1, new Timestamp(now - RETENTION_MS));
+                    ps.executeUpdate();
+                }
+                lastPrune = now;
+            }
+        }
+        lastPollOk = now;
+    }
+
+    private static void apply(ResultSet rs) throws SQLException {
+        if (NODE_ID.equals(rs.getString("origin"))) return;
+        String entity = rs.getString("entity");
+        switch (rs.getString("kind")) {
+            case EXAM:
+                ExamCache.invalidate(entity);
+                AnswerKeyCache.invalidate(entity);
+                break;
+            case USER:
+                SessionTokens.revokeUser(entity);
+                break;
+            case SESSION:
+                String[] parts = entity.split(":");
+                SessionTokens.revoke(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+                break;
+            default:
+                return; // written by a newer version
+        }
+        applied.increment();
+    }
+
+    private static void resetCaches() {
+        ExamCache.clear();
+        AnswerKeyCache.clear();
+        cacheResets.increment();
+        log.warn("Change log unreachable for longer than its retention, caches cleared");
+    }
+}
@@ -1,24 +1,70 @@
 package com.edutech.db;
 
+import com.edutech.config.Env;
+import com.edutech.config.ExecutionMode;
+import com.edutech.db.migration.MigrationRunner;
+import com.edutech.metrics.InstrumentedJdbc;
+import com.edutech.metrics.Metrics;
+import com.edutech.util.Ids;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import org.mindrot.jbcrypt.BCrypt;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.sql.SQLTransientConnectionException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Connection pools. Writes and anything that must see them go to the primary
+ * through {@link #getConnection()}. Read-only endpoints use
+ * {@link #getReadConnection(boolean)}, which goes to a read replica when
+ * DB_READ_URL is set. While the replica cannot hand out a connection, reads go
+ * to the primary for DB_READ_RETRY_MS before the replica is tried again.
+ *
+ * With DB_POOL_WARMUP (default on) Hikari opens a pool's connections on
+ * several threads at once, so a node that starts under load does not make its
+ * first requests wait for connections opened one after another. The primary is
+ * full when init returns; the replica warms up in the background and reads go
+ * to the primary until it is ready.
+ */
 public class DatabaseManager {
-    private static HikariDataSource dataSource;
+    private static final Logger log = LoggerFactory.getLogger(DatabaseManager.class);
+
+    private static final int POOL_SIZE = Env.getInt("DB_POOL_SIZE", 10);
+    private static final int READ_POOL_SIZE = Env.getInt("DB_READ_POOL_SIZE", 10);
+    // Short, so a dead replica costs a read this long once per retry period, not the 30s Hikari default
+    private static final long READ_CONNECTION_TIMEOUT_MS = Env.getLong("DB_READ_CONNECTION_TIMEOUT_MS", 1000);
+    private static final long READ_RETRY_MS = Env.getLong("DB_READ_RETRY_MS", 5000);
+    private static final boolean POOL_WARMUP = Env.getBoolean("DB_POOL_WARMUP", true);
+    private static final long POOL_WARMUP_TIMEOUT_MS = Env.getLong("DB_POOL_WARMUP_TIMEOUT_MS", 10_000);
+
+    private static Pool primary;
+    private static volatile Pool replica;
+    private static boolean replicaConfigured;
+    private static volatile boolean closed;
     private static String adminPasswd;
 
+    private static volatile long replicaDownUntil;
+    private static final LongAdder replicaReads = new LongAdder();
+    private static final LongAdder pinnedReads = new LongAdder();
+    private static final LongAdder fallbackReads = new LongAdder();
+
     public static void init() {
         // get data from envrimonet variable for production
-        String url = System.getenv("DB_URL");
-        String user = System.getenv("DB_USERNAME");        
-        String pass = System.getenv("DB_PASSWORD");
-        adminPasswd = System.getenv("Admin_passwd");
+        String url = Env.get("DB_URL", null);
+        String user = Env.get("DB_USERNAME", null);
+        String pass = Env.get("DB_PASSWORD", null);
+        adminPasswd = Env.get("Admin_passwd", null);
         
         // Default fallback for local development if env vars are missing
         if (url == null) {
@@ -27,12 +73,75 @@ public class DatabaseManager {
             pass = "exam_system_passwd";
             adminPasswd = "admin123";
         }
-            
+
+        long start = System.nanoTime();
+        if (POOL_WARMUP) {
+            // Read by every HikariPool constructor whose initializationFailTimeout is positive: it then adds
+            // connections on up to min(16, CPUs) threads and returns once minimumIdle are open
+            System.setProperty("com.zaxxer.hikari.blockUntilFilled", "true");
+        }
+
+        // Optional read replica, same credentials unless given its own; opened next to the primary
+        String readUrl = Env.get("DB_READ_URL", null);
+        if (readUrl != null) {
+            replicaConfigured = true;
+            String readUser = Env.get("DB_READ_USERNAME", user);
+            String readPass = Env.get("DB_READ_PASSWORD", pass);
+            Thread warmup = new Thread(() -> openReplica(readUrl, readUser, readPass), "replica-warmup");
+            warmup.setDaemon(true);
+            warmup.start();
+        }
+
+        HikariConfig config = poolConfig("primary", url, user, pass, POOL_SIZE);
+        // Also how long startup keeps retrying a database that is not up yet
+        if (POOL_WARMUP) config.setInitializationFailTimeout(POOL_WARMUP_TIMEOUT_MS);
+        primary = new Pool(new HikariDataSource(config));
+        log.info("Primary pool open ({} connections) in {}ms", primary.dataSource.getHikariPoolMXBean().getTotalConnections(),
+            (System.nanoTime() - start) / 1_000_000);
+
+        migrateSchema();
+        seedAdmin();
+    }
+
+    private static void openReplica(String url, String user, String pass) {
+        long start = System.nanoTime();
+        HikariDataSource dataSource;
+        try {
+            HikariConfig config = replicaConfig(url, user, pass);
+            if (POOL_WARMUP) config.setInitializationFailTimeout(POOL_WARMUP_TIMEOUT_MS);
+            dataSource = new HikariDataSource(config);
+        } catch (RuntimeException e) {
+            // Start even if the replica is down; reads stay on the primary until it answers
+            log.warn("Read replica unavailable at startup, will keep trying: {}", e.getMessage());
+            HikariConfig config = replicaConfig(url, user, pass);
+            config.setInitializationFailTimeout(-1);
+            dataSource = new HikariDataSource(config);
+        }
+        synchronized (DatabaseManager.class) {
+            if (closed) {
+                dataSource.close();
+                return;
+            }
+            replica = new Pool(dataSource);
+        }
+        log.info("Read replica pool open ({} connections) in {}ms", READ_POOL_SIZE, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static HikariConfig replicaConfig(String url, String user, String pass) {
+        HikariConfig config = poolConfig("replica", url, user, pass, READ_POOL_SIZE);
+        config.setReadOnly(true);
+        config.setConnectionTimeout(READ_CONNECTION_TIMEOUT_MS);
+        return config;
+    }
+
+    private static HikariConfig poolConfig(String name, String url, String user, String pass, int size) {
         HikariConfig config = new HikariConfig();
+        config.setPoolName(name);
         // MySQL Configuration
         config.setJdbcUrl(url);
         config.setUsername(user);
         config.setPassword(pass);
+        config.setMaximumPoolSize(size);
 
         if (url.contains("mysql")) {
             config.setDriverClassName("com.mysql.cj.jdbc.Driver");
@@ -40,103 +149,195 @@ public class DatabaseManager {
             config.addDataSourceProperty("cachePrepStmts", "true");
             config.addDataSourceProperty("prepStmtCacheSize", "250");
             config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+            // Turn addBatch/executeBatch into multi-row INSERTs instead of one round trip per row
+            config.addDataSourceProperty("rewriteBatchedStatements", "true");
+            config.addDataSourceProperty("useLocalSessionState", "true");
+            config.addDataSourceProperty("cacheServerConfiguration", "true");
+            config.addDataSourceProperty("elideSetAutoCommits", "true");
         } else if (url.contains("sqlserver")) {
             config.setDriverClassName("com.microsoft.sqlserver.jdbc.SQLServerDriver");
         };
-
-        dataSource = new HikariDataSource(config);
-        
-        createTables();
-        seedAdmin();
+        return config;
     }
 
     public static Connection getConnection() throws SQLException {
-        return dataSource.getConnection();
+        return primary.borrow();
     }
 
-    public static void close() {
-        if (dataSource != null) dataSource.close();
+    /**
+     * A connection for a read-only handler: the replica when there is a healthy
+     * one, otherwise the primary.
+     *
+     * @param recentWrite true when the caller wrote moments ago (see ReadYourWrites),
+     *                    so the replica may not have their change yet
+     */
+    public static Connection getReadConnection(boolean recentWrite) throws SQLException {
+        Pool replica = DatabaseManager.replica;
+        if (replica == null) return getConnection();
+        if (recentWrite) {
+            pinnedReads.increment();
+            return getConnection();
+        }
+        long now = System.currentTimeMillis();
+        if (now < replicaDownUntil) {
+            fallbackReads.increment();
+            return getConnection();
+        }
+        try {
+            Connection conn = replica.borrow();
+            replicaReads.increment();
+            return conn;
+        } catch (SQLException e) {
+            replicaDownUntil = now + READ_RETRY_MS;
+            fallbackReads.increment();
+            log.warn("Read replica unavailable, reading from primary for {}ms: {}", READ_RETRY_MS, e.getMessage());
+            return getConnection();
+        }
     }
 
-    private static void createTables() {
-        String url = System.getenv("DB_URL");
-        boolean isMSSQL = (url != null && url.contains("sqlserver"));
-    
-        try (Connection conn = getConnection(); Statement stmt = conn.createStatement()) {
-            
-            // 1. USERS TABLE
-            if (isMSSQL) {
-                stmt.execute("IF NOT EXISTS (SELECT * FROM sys.objects WHERE name = 'users') " +
-                    "CREATE TABLE users (id VARCHAR(36) PRIMARY KEY, username VARCHAR(50) UNIQUE, " +
-                    "password VARCHAR(255), role VARCHAR(20))");
-            } else {
-                stmt.execute("CREATE TABLE IF NOT EXISTS users (id VARCHAR(36) PRIMARY KEY, " +
-                    "username VARCHAR(50) UNIQUE, password VARCHAR(255), role VARCHAR(20))");
-            }
-    
-            // 2. EXAMS TABLE (Using NVARCHAR(MAX) for MSSQL instead of TEXT)
-            String textField = isMSSQL ? "NVARCHAR(MAX)" : "TEXT";
-            String ifNotExistsExams = isMSSQL ? 
-                "IF NOT EXISTS (SELECT * FROM sys.objects WHERE name = 'exams') " : "CREATE TABLE IF NOT EXISTS ";
-            
-            stmt.execute(ifNotExistsExams + "exams (id VARCHAR(36) PRIMARY KEY, title VARCHAR(255), " +
-                "description " + textField + ", duration_minutes INT)");
-    
-            // 3. QUESTIONS TABLE
-            String ifNotExistsQuestions = isMSSQL ? 
-                "IF NOT EXISTS (SELECT * FROM sys.objects WHERE name = 'questions') " : "CREATE TABLE IF NOT EXISTS ";
-            
-            stmt.execute(ifNotExistsQuestions + "questions (id VARCHAR(36) PRIMARY KEY, exam_id VARCHAR(36), " +
-                "text " + textField + ", FOREIGN KEY (exam_id) REFERENCES exams(id) ON DELETE CASCADE)");
-    
-            // 4. OPTIONS TABLE (BOOLEAN vs BIT)
-            String boolType = isMSSQL ? "BIT DEFAULT 0" : "BOOLEAN DEFAULT FALSE";
-            String ifNotExistsOptions = isMSSQL ? 
-                "IF NOT EXISTS (SELECT * FROM sys.objects WHERE name = 'options') " : "CREATE TABLE IF NOT EXISTS ";
-            
-            stmt.execute(ifNotExistsOptions + "options (id VARCHAR(36) PRIMARY KEY, question_id VARCHAR(36), " +
-                "text VARCHAR(255), is_correct " + boolType + ", " +
-                "FOREIGN KEY (question_id) REFERENCES questions(id) ON DELETE CASCADE)");
-    
-            // 5. RESULTS TABLE (TIMESTAMP vs DATETIME)
-            String timeType = isMSSQL ? "DATETIME DEFAULT GETDATE()" : "TIMESTAMP DEFAULT CURRENT_TIMESTAMP";
-            String ifNotExistsResults = isMSSQL ? 
-                "IF NOT EXISTS (SELECT * FROM sys.objects WHERE name = 'results') " : "CREATE TABLE IF NOT EXISTS ";
-            
-            stmt.execute(ifNotExistsResults + "results (id VARCHAR(36) PRIMARY KEY, student_id VARCHAR(36), " +
-                "exam_id VARCHAR(36), score INT, total_questions INT, submitted_at " + timeType + ")");
-                
-            System.out.println(">> Tables Verified/Created for " + (isMSSQL ? "MSSQL" : "MySQL"));
+    public static boolean hasReplica() {
+        return replica != null;
+    }
+
+    public static Map<String, Object> poolStats() {
+        return primary == null ? new LinkedHashMap<>() : primary.stats();
+    }
+
+    public static Map<String, Object> readPoolStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        Pool replica = DatabaseManager.replica;
+        stats.put("enabled", replicaConfigured);
+        if (replica == null) {
+            if (replicaConfigured) stats.put("healthy", 0); // still opening
+            return stats;
+        }
+        stats.putAll(replica.stats());
+        stats.put("healthy", System.currentTimeMillis() < replicaDownUntil ? 0 : 1);
+        stats.put("replicaReads", replicaReads.sum());
+        stats.put("pinnedReads", pinnedReads.sum());
+        stats.put("fallbackReads", fallbackReads.sum());
+        return stats;
+    }
+
+    public static boolean isMSSQL() {
+        String url = Env.get("DB_URL", null);
+        return url != null && url.contains("sqlserver");
+    }
+
+    /**
+     * Fetch size for reading a large result row by row. MySQL's driver only
+     * streams with Integer.MIN_VALUE, which other drivers reject; they stream
+     * (MSSQL with adaptive buffering) at an ordinary fetch size.
+     */
+    public static int streamingFetchSize(int fetchSize) {
+        String url = Env.get("DB_URL", null);
+        return url != null && url.startsWith("jdbc:mysql:") ? Integer.MIN_VALUE : fetchSize;
+    }
+
+    public static synchronized void close() {
+        closed = true;
+        Pool replica = DatabaseManager.replica;
+        if (replica != null) replica.dataSource.close();
+        if (primary != null) primary.dataSource.close();
+    }
+
+    private static void migrateSchema() {
+        try {
+            MigrationRunner.migrate();
         } catch (SQLException e) {
-            e.printStackTrace();
+            log.error("Schema migration failed", e);
         }
     }
 
     private static void seedAdmin() {
-        String url = System.getenv("DB_URL");
-        boolean isMSSQL = (url != null && url.contains("sqlserver"));
+        boolean isMSSQL = isMSSQL();
     
         try (Connection conn = getConnection()) {
+            // 1. Every boot after the first: one indexed lookup, and no BCrypt hash on the startup path
+            try (PreparedStatement ps = conn.prepareStatement("SELECT 1 FROM users WHERE username = 'admin'");
+                 ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    log.info("Admin account checked");
+                    return;
+                }
+            }
+
+            // 2. Missing: create it; the guarded insert covers another node seeding at the same moment
             String hash = BCrypt.hashpw(adminPasswd, BCrypt.gensalt());
             String sql;
     
             if (isMSSQL) {
                 // SQL Server check before insert
                 sql = "IF NOT EXISTS (SELECT 1 FROM users WHERE username = 'admin') " +
-                      "INSERT INTO users (id, username, password, role) VALUES ('admin-uuid', 'admin', ?, 'ADMIN')";
+                      "INSERT INTO users (id, username, password, role) VALUES (?, 'admin', ?, 'ADMIN')";
             } else {
                 // MySQL syntax
                 sql = "INSERT INTO users (id, username, password, role) " +
-                      "VALUES ('admin-uuid', 'admin', ?, 'ADMIN') ON DUPLICATE KEY UPDATE username=username";
+                      "VALUES (?, 'admin', ?, 'ADMIN') ON DUPLICATE KEY UPDATE username=username";
             }
             
             var ps = conn.prepareStatement(sql);
-            ps.setString(1, hash);
+            Ids.bind(ps, 1, Ids.ADMIN_ID);
+            ps.setString(2, hash);
             ps.executeUpdate();
-            System.out.println("password: "+adminPasswd); 
-            System.out.println(">> Admin account checked.");
-        } catch (Exception e) { 
-            e.printStackTrace(); 
+            log.info("Admin account created");
+        } catch (Exception e) {
+            log.error("Could not seed the admin account", e);
+        }
+    }
+
+    /** One Hikari pool, with its own permits in virtual execution mode. */
+    private static final class Pool {
+        final HikariDataSource dataSource;
+        // Virtual execution mode only: one permit per pooled connection, see borrow
+        final Semaphore permits;
+
+        Pool(HikariDataSource dataSource) {
+            this.dataSource = dataSource;
+            this.permits = ExecutionMode.isVirtual() ? new Semaphore(dataSource.getMaximumPoolSize(), true) : null;
+        }
+
+        Connection borrow() throws SQLException {
+            long start = System.nanoTime();
+            if (permits == null) {
+                Connection conn = dataSource.getConnection();
+                Metrics.recordPoolWait(System.nanoTime() - start);
+                return InstrumentedJdbc.wrap(conn);
+            }
+
+            // Thousands of virtual threads can ask at once: they park here in FIFO order,
+            // and only as many as there are connections ever reach Hikari's own borrow path
+            try {
+                if (!permits.tryAcquire(dataSource.getConnectionTimeout(), TimeUnit.MILLISECONDS)) {
+                    throw new SQLTransientConnectionException("Timed out after " + dataSource.getConnectionTimeout()
+                        + " ms waiting for a database connection");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLTransientConnectionException("Interrupted while waiting for a database connection", e);
+            }
+            Connection conn;
+            try {
+                conn = dataSource.getConnection();
+            } catch (SQLException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+            Metrics.recordPoolWait(System.nanoTime() - start);
+            return InstrumentedJdbc.wrap(conn, permits::release);
+        }
+
+        Map<String, Object> stats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+            if (pool == null) return stats;
+            stats.put("active", pool.getActiveConnections());
+            stats.put("idle", pool.getIdleConnections());
+            stats.put("total", pool.getTotalConnections());
+            stats.put("waiting", pool.getThreadsAwaitingConnection());
+            stats.put("max", dataSource.getMaximumPoolSize());
+            if (permits != null) stats.put("queued", permits.getQueueLength());
+            return stats;
         }
     }
-}
\ No newline at end of file
+}
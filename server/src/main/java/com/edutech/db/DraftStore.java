@@ -0,0 +1,250 @@
+package com.edutech.db;
+
+import com.edutech.config.Env;
+import com.edutech.util.Ids;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind store for in-progress answers (autosave).
+ *
+ * A save only replaces the attempt's entry in memory and marks it dirty, so any
+ * number of saves between two flushes cost one row write. A single background
+ * thread upserts the latest answer map of every dirty attempt to the drafts
+ * table every DRAFT_FLUSH_INTERVAL_MS in JDBC batches, which keeps the write
+ * rate bounded by the number of active attempts rather than by clicks.
+ *
+ * Once flushed, an entry is dropped from memory and later reads fall back to
+ * the table, so memory only ever holds what has not reached the database yet.
+ * The upsert only moves a row forward in time: a student's saves may land on
+ * different nodes, and an older map still pending on one of them must not
+ * overwrite a newer one another node has already flushed.
+ * Drafts are a convenience: a crash loses at most one flush interval of them.
+ */
+public class DraftStore {
+    private static final Logger log = LoggerFactory.getLogger(DraftStore.class);
+
+    private static final String UPSERT_SQL_MYSQL =
+        "INSERT INTO drafts (student_id, exam_id, answers, updated_at) VALUES (?, ?, ?, ?) " +
+        "ON DUPLICATE KEY UPDATE answers = CASE WHEN VALUES(updated_at) >= updated_at THEN VALUES(answers) ELSE answers END, " +
+        "updated_at = CASE WHEN VALUES(updated_at) >= updated_at THEN VALUES(updated_at) ELSE updated_at END";
+    private static final String UPSERT_SQL_MSSQL =
+        "MERGE drafts WITH (HOLDLOCK) AS t " +
+        "USING (SELECT ? AS student_id, ? AS exam_id, ? AS answers, ? AS updated_at) AS s " +
+        "ON t.student_id = s.student_id AND t.exam_id = s.exam_id " +
+        "WHEN MATCHED AND s.updated_at >= t.updated_at THEN UPDATE SET answers = s.answers, updated_at = s.updated_at " +
+        "WHEN NOT MATCHED THEN INSERT (student_id, exam_id, answers, updated_at) " +
+        "VALUES (s.student_id, s.exam_id, s.answers, s.updated_at);";
+    private static final String DELETE_SQL = "DELETE FROM drafts WHERE student_id = ? AND exam_id = ?";
+    private static final String SELECT_SQL = "SELECT answers FROM drafts WHERE student_id = ? AND exam_id = ?";
+
+    private static final long FLUSH_INTERVAL_MS = Env.getLong("DRAFT_FLUSH_INTERVAL_MS", 2_000);
+    private static final int BATCH_SIZE = Env.getInt("DRAFT_BATCH_SIZE", 500);
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final TypeReference<Map<String, String>> ANSWERS = new TypeReference<>() {};
+
+    /** Latest unflushed answers of one attempt; answers == null marks a pending delete. */
+    private static final class Draft {
+        final String studentId;
+        final String examId;
+        final Map<String, String> answers;
+        final String json;
+        final long updatedAt;
+
+        Draft(String studentId, String examId, Map<String, String> answers, String json) {
+            this.studentId = studentId;
+            this.examId = examId;
+            this.answers = answers;
+            this.json = json;
+            this.updatedAt = System.currentTimeMillis();
+        }
+
+        boolean isDelete() { return answers == null; }
+    }
+
+    private static final ConcurrentHashMap<String, Draft> pending = new ConcurrentHashMap<>();
+    private static final Set<String> dirty = ConcurrentHashMap.newKeySet();
+
+    private static final LongAdder saves = new LongAdder();
+    private static final LongAdder rowsWritten = new LongAdder();
+    private static final LongAdder flushes = new LongAdder();
+
+    private static final Object tick = new Object();
+    private static Thread flusher;
+    private static volatile boolean running;
+
+    public static synchronized void start() {
+        if (running) return;
+        running = true;
+        flusher = new Thread(DraftStore::runFlusher, "draft-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Draft store started (flush every {}ms, batch {})", FLUSH_INTERVAL_MS, BATCH_SIZE);
+    }
+
+    /** Stops the flusher after one last flush of everything still dirty. */
+    public static synchronized void shutdown() {
+        if (!running) return;
+        // Wake the flusher rather than interrupting it, so the final flush can still take a connection
+        synchronized (tick) {
+            running = false;
+            tick.notifyAll();
+        }
+        try {
+            flusher.join(FLUSH_INTERVAL_MS * 5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!dirty.isEmpty()) log.warn("Draft store stopped with {} unflushed drafts", dirty.size());
+    }
+
+    /** Replaces the stored answers of this attempt; reaches the database on the next flush. */
+    public static void save(String studentId, String examId, Map<String, String> answers) throws IOException {
+        Map<String, String> copy = Map.copyOf(answers);
+        String json = mapper.writeValueAsString(copy);
+        String key = key(studentId, examId);
+        pending.put(key, new Draft(studentId, examId, copy, json));
+        dirty.add(key);
+        saves.increment();
+    }
+
+    /** @return the latest saved answers, or null when the attempt has none */
+    public static Map<String, String> get(String studentId, String examId) throws SQLException {
+        Draft draft = pending.get(key(studentId, examId));
+        if (draft != null) return draft.answers; // null for a pending delete, which is the right answer too
+
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement ps = conn.prepareStatement(SELECT_SQL)) {
+            Ids.bind(ps, 1, studentId);
+            Ids.bind(ps, 2, examId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                return mapper.readValue(rs.getString("answers"), ANSWERS);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unreadable draft for " + studentId + "/" + examId, e);
+            }
+        }
+    }
+
+    /** Forgets the attempt's draft once it has been submitted; the row goes in the next flush. */
+    public static void remove(String studentId, String examId) {
+        String key = key(studentId, examId);
+        pending.put(key, new Draft(studentId, examId, null, null));
+        dirty.add(key);
+    }
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", dirty.size());
+        stats.put("saves", saves.sum());
+        stats.put("rowsWritten", rowsWritten.sum());
+        stats.put("flushes", flushes.sum());
+        return stats;
+    }
+
+    private static String key(String studentId, String examId) {
+        return studentId + "/" + examId;
+    }
+
+    private static void runFlusher() {
+        while (true) {
+            synchronized (tick) {
+                try {
+                    if (running) tick.wait(FLUSH_INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            try {
+                flushDirty();
+            } catch (SQLException e) {
+                // The entries stay dirty and are retried on the next tick
+                log.warn("Draft flush failed", e);
+            }
+            if (!running) return;
+        }
+    }
+
+    private static void flushDirty() throws SQLException {
+        // Only what was dirty when the tick started; saves arriving meanwhile wait for the next tick
+        List<String> keys = new ArrayList<>(dirty);
+        for (int from = 0; from < keys.size(); from += BATCH_SIZE) {
+            List<Draft> upserts = new ArrayList<>();
+            List<Draft> deletes = new ArrayList<>();
+            for (String key : keys.subList(from, Math.min(keys.size(), from + BATCH_SIZE))) {
+                // Clear the mark before reading, so a save racing with this flush marks it again
+                dirty.remove(key);
+                Draft draft = pending.get(key);
+                if (draft == null) continue;
+                (draft.isDelete() ? deletes : upserts).add(draft);
+            }
+            try {
+                write(upserts, deletes);
+            } catch (SQLException e) {
+                for (Draft d : upserts) dirty.add(key(d.studentId, d.examId));
+                for (Draft d : deletes) dirty.add(key(d.studentId, d.examId));
+                throw e;
+            }
+            // Drop what was written unless a newer save replaced it meanwhile
+            for (Draft d : upserts) pending.remove(key(d.studentId, d.examId), d);
+            for (Draft d : deletes) pending.remove(key(d.studentId, d.examId), d);
+        }
+    }
+
+    private static void write(List<Draft> upserts, List<Draft> deletes) throws SQLException {
+        if (upserts.isEmpty() && deletes.isEmpty()) return;
+        try (Connection conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                if (!upserts.isEmpty()) {
+                    try (PreparedStatement ps = conn.prepareStatement(DatabaseManager.isMSSQL() ? UPSERT_SQL_MSSQL : UPSERT_SQL_MYSQL)) {
+                        for (Draft d : upserts) {
+                            Ids.bind(ps, 1, d.studentId);
+                            Ids.bind(ps, 2, d.examId);
+                            ps.setString(3, d.json);
+                            ps.setTimestamp(4, new Timestamp(d.updatedAt));
+                            ps.addBatch();
+                        }
+                        ps.executeBatch();
+                    }
+                }
+                if (!deletes.isEmpty()) {
+                    try (PreparedStatement ps = conn.prepareStatement(DELETE_SQL)) {
+                        for (Draft d : deletes) {
+                            Ids.bind(ps, 1, d.studentId);
+                            Ids.bind(ps, 2, d.examId);
+                            ps.addBatch();
+                        }
+                        ps.executeBatch();
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        rowsWritten.add(upserts.size() + deletes.size());
+        flushes.increment();
+    }
+}
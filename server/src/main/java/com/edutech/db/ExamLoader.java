@@ -0,0 +1,131 @@
+package com.edutech.db;
+
+import com.edutech.model.Exam;
+import com.edutech.model.Option;
+import com.edutech.model.Question;
+import com.edutech.scoring.AnswerKey;
+import com.edutech.util.Ids;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads a full Exam -> Question -> Option graph in a fixed number of round trips
+ * (one for the exam row, one for every question joined with its options),
+ * no matter how many questions the exam has.
+ */
+public class ExamLoader {
+
+    private static final String EXAM_SQL =
+        "SELECT id, title, description, duration_minutes FROM exams WHERE id = ?";
+
+    // Rows come back grouped by question, so the graph is built in a single pass.
+    private static final String QUESTIONS_WITH_OPTIONS_SQL =
+        "SELECT q.id AS q_id, q.text AS q_text, o.id AS o_id, o.text AS o_text, o.is_correct " +
+        "FROM questions q LEFT JOIN options o ON o.question_id = q.id " +
+        "WHERE q.exam_id = ? ORDER BY q.id, o.id";
+
+    private static final String ANSWER_KEY_SQL =
+        "SELECT q.id AS q_id, o.id AS o_id " +
+        "FROM questions q LEFT JOIN options o ON o.question_id = q.id AND o.is_correct = ? " +
+        "WHERE q.exam_id = ? ORDER BY q.id";
+
+    /**
+     * @param includeAnswers when false (student view) the correct flags and
+     *                       correct_option_id are left null so they are never serialized.
+     * @return the exam, or null if no exam has that id
+     */
+    public static Exam load(Connection conn, String examId, boolean includeAnswers) throws SQLException {
+        Exam exam = null;
+        try (PreparedStatement ps = conn.prepareStatement(EXAM_SQL)) {
+            Ids.bind(ps, 1, examId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    exam = new Exam();
+                    exam.setId(Ids.read(rs, "id"));
+                    exam.setTitle(rs.getString("title"));
+                    exam.setDescription(rs.getString("description"));
+                    exam.setDurationMinutes(rs.getInt("duration_minutes"));
+                }
+            }
+        }
+        if (exam == null) return null;
+
+        List<Question> questions = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(QUESTIONS_WITH_OPTIONS_SQL)) {
+            Ids.bind(ps, 1, examId);
+            try (ResultSet rs = ps.executeQuery()) {
+                Question current = null;
+                while (rs.next()) {
+                    String qId = Ids.read(rs, "q_id");
+                    if (current == null || !current.getId().equals(qId)) {
+                        current = new Question();
+                        current.setId(qId);
+                        current.setExam_id(examId);
+                        current.setText(rs.getString("q_text"));
+                        current.setOptions(new ArrayList<>());
+                        questions.add(current);
+                    }
+
+                    String oId = Ids.read(rs, "o_id");
+                    if (oId == null) continue; // question without options (LEFT JOIN)
+
+                    Option option = new Option();
+                    option.setId(oId);
+                    option.setQuestion_id(qId);
+                    option.setText(rs.getString("o_text"));
+                    if (includeAnswers) {
+                        boolean correct = rs.getBoolean("is_correct");
+                        option.setCorrect(correct);
+                        if (correct) current.setCorrect_option_id(oId);
+                    }
+                    current.getOptions().add(option);
+                }
+            }
+        }
+        exam.setQuestions(questions);
+        return exam;
+    }
+
+    /**
+     * Loads only what scoring needs: the exam title and, per question, the ids
+     * of its correct options. Two round trips.
+     *
+     * @return the compiled key, or null if no exam has that id
+     */
+    public static AnswerKey loadAnswerKey(Connection conn, String examId) throws SQLException {
+        String title = null;
+        try (PreparedStatement ps = conn.prepareStatement("SELECT title FROM exams WHERE id = ?")) {
+            Ids.bind(ps, 1, examId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                title = rs.getString("title");
+            }
+        }
+
+        List<String> questionIds = new ArrayList<>();
+        List<List<String>> correct = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(ANSWER_KEY_SQL)) {
+            ps.setBoolean(1, true);
+            Ids.bind(ps, 2, examId);
+            try (ResultSet rs = ps.executeQuery()) {
+                String lastId = null;
+                while (rs.next()) {
+                    String qId = Ids.read(rs, "q_id");
+                    if (!qId.equals(lastId)) {
+                        questionIds.add(qId);
+                        correct.add(new ArrayList<>(1));
+                        lastId = qId;
+                    }
+                    String oId = Ids.read(rs, "o_id");
+                    if (oId != null) correct.get(correct.size() - 1).add(oId);
+                }
+            }
+        }
+        return AnswerKey.of(examId, title, questionIds, correct);
+    }
+}
@@ -0,0 +1,86 @@
+package com.edutech.db;
+
+import com.edutech.model.Exam;
+import com.edutech.model.Option;
+import com.edutech.model.Question;
+import com.edutech.util.Ids;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Inserts exams with three statements prepared once per connection and sent as
+ * JDBC batches (exams, then questions, then options, so foreign keys hold).
+ * With rewriteBatchedStatements on MySQL each batch becomes a few multi-row
+ * INSERTs instead of one round trip per row.
+ *
+ * The caller owns the transaction; reuse one writer for many exams.
+ */
+public class ExamWriter implements AutoCloseable {
+    private final PreparedStatement psExam;
+    private final PreparedStatement psQuestion;
+    private final PreparedStatement psOption;
+
+    public ExamWriter(Connection conn) throws SQLException {
+        psExam = conn.prepareStatement(
+            "INSERT INTO exams (id, title, description, duration_minutes) VALUES (?, ?, ?, ?)");
+        psQuestion = conn.prepareStatement(
+            "INSERT INTO questions (id, exam_id, text) VALUES (?, ?, ?)");
+        psOption = conn.prepareStatement(
+            "INSERT INTO options (id, question_id, text, is_correct) VALUES (?, ?, ?, ?)");
+    }
+
+    /** Queues the exam and all of its questions and options; returns the new exam id. */
+    public String add(Exam exam) throws SQLException {
+        String examId = Ids.newId();
+        Ids.bind(psExam, 1, examId);
+        psExam.setString(2, exam.getTitle());
+        psExam.setString(3, exam.getDescription());
+        psExam.setInt(4, exam.getDurationMinutes());
+        psExam.addBatch();
+
+        if (exam.getQuestions() == null) return examId;
+        for (Question q : exam.getQuestions()) {
+            String qId = Ids.newId();
+            Ids.bind(psQuestion, 1, qId);
+            Ids.bind(psQuestion, 2, examId);
+            psQuestion.setString(3, q.getText());
+            psQuestion.addBatch();
+
+            if (q.getOptions() == null) continue;
+            // Correct option: correctOptionIndex when given, otherwise the first option
+            int correctIndex = (q.getCorrectOptionIndex() != null) ? q.getCorrectOptionIndex() : 0;
+            for (int i = 0; i < q.getOptions().size(); i++) {
+                Option opt = q.getOptions().get(i);
+                Ids.bind(psOption, 1, Ids.newId());
+                Ids.bind(psOption, 2, qId);
+                psOption.setString(3, opt.getText());
+                psOption.setBoolean(4, i == correctIndex);
+                psOption.addBatch();
+            }
+        }
+        return examId;
+    }
+
+    /** Sends everything queued since the last flush. */
+    public void flush() throws SQLException {
+        psExam.executeBatch();
+        psQuestion.executeBatch();
+        psOption.executeBatch();
+    }
+
+    /** Drops queued rows after a failed flush so the writer can be reused for the next exam. */
+    public void discard() throws SQLException {
+        psExam.clearBatch();
+        psQuestion.clearBatch();
+        psOption.clearBatch();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        psExam.close();
+        psQuestion.close();
+        psOption.close();
+    }
+}
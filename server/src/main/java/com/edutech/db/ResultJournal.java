@@ -0,0 +1,267 @@
+package com.edutech.db;
+
+import com.edutech.model.Result;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Append-only write-ahead log for results that have been acknowledged to the
+ * student but not yet written to the results table. Every append returns only
+ * once a force to disk covers it.
+ *
+ * Appends write their line under the journal lock but force outside it, with
+ * group commit: the first caller to find no force running becomes the leader
+ * and forces once for every line written so far, while the callers that wrote
+ * in the meantime wait for it and, if their line came too late, for the next.
+ * Under load one force serves a whole group of submissions.
+ *
+ * The log is a run of segment files, {@code <path>.1}, {@code <path>.2}, ...
+ * Appends go to the newest one, which is closed and replaced once it holds
+ * segmentBytes. A closed segment is deleted as soon as every result in it has
+ * been flushed, and the newest is truncated whenever it drains, so the log only
+ * holds what the database is still missing even under constant load.
+ *
+ * One tab-separated line per result: id, student_id, exam_id, score,
+ * total_questions, submitted_at (ISO local date-time), answers (JSON object,
+ * absent in lines written before answers were kept). Results the database
+ * refuses for good go to {@code <path>.dead} in the same format.
+ */
+class ResultJournal {
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final TypeReference<Map<String, String>> ANSWERS = new TypeReference<>() {};
+
+    private final Path path;
+    private final long segmentBytes;
+    // Left over from a previous run: the segments and, from before segments, the single file at path
+    private final List<Path> recovered = new ArrayList<>();
+    // Appended but not yet flushed, per open segment number
+    private final Map<Long, Long> unflushed = new HashMap<>();
+    private long current;
+    private FileChannel channel;
+    private FileChannel dead;
+    // Lines appended so far; a line's number is its ticket for awaitSync
+    private long written;
+
+    // Group commit state, guarded by syncLock rather than the journal lock
+    private final Object syncLock = new Object();
+    private long synced;
+    private boolean syncing;
+    private final LongAdder syncs = new LongAdder();
+
+    ResultJournal(Path path, long segmentBytes) throws IOException {
+        this.path = path;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(path.toAbsolutePath().getParent());
+
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        String prefix = path.getFileName() + ".";
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(path.toAbsolutePath().getParent(), prefix + "*")) {
+            for (Path p : dir) {
+                String suffix = p.getFileName().toString().substring(prefix.length());
+                if (suffix.chars().allMatch(Character::isDigit) && !suffix.isEmpty()) segments.put(Long.parseLong(suffix), p);
+            }
+        }
+        if (Files.exists(path)) recovered.add(path);
+        recovered.addAll(segments.values());
+        current = segments.isEmpty() ? 0 : segments.lastKey();
+        roll();
+    }
+
+    /** Results left over from a previous run that may not have reached the database, oldest first. */
+    List<Result> readAll() throws IOException {
+        List<Result> results = new ArrayList<>();
+        for (Path file : recovered) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    Result r = decode(line);
+                    if (r != null) results.add(r);
+                }
+            }
+        }
+        return results;
+    }
+
+    /** @return the segment the result went to, to be passed back to {@link #markFlushed} */
+    long append(Result r) throws IOException {
+        String line = encode(r);
+        long segment;
+        long ticket;
+        synchronized (this) {
+            if (channel.size() >= segmentBytes) roll();
+            write(channel, line);
+            unflushed.merge(current, 1L, Long::sum);
+            segment = current;
+            ticket = ++written;
+        }
+        awaitSync(ticket);
+        return segment;
+    }
+
+    /** Returns once line number {@code ticket} is on disk, forcing it as the leader if no one else is. */
+    private void awaitSync(long ticket) throws IOException {
+        boolean interrupted = false;
+        try {
+            synchronized (syncLock) {
+                while (synced < ticket && syncing) {
+                    try {
+                        syncLock.wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (synced >= ticket) return;
+                syncing = true;
+            }
+
+            long upTo;
+            FileChannel target;
+            synchronized (this) {
+                upTo = written;
+                target = channel;
+            }
+            boolean ok = false;
+            try {
+                target.force(false);
+                ok = true;
+            } catch (ClosedChannelException e) {
+                // Rolled meanwhile; roll forced everything written up to then, our lines included
+                ok = true;
+            } finally {
+                synchronized (syncLock) {
+                    if (ok && upTo > synced) synced = upTo;
+                    syncing = false;
+                    syncLock.notifyAll();
+                }
+            }
+            syncs.increment();
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Records that {@code count} results appended to {@code segment} are now in the database. */
+    synchronized void markFlushed(long segment, int count) throws IOException {
+        long left = unflushed.merge(segment, (long) -count, Long::sum);
+        if (left > 0) return;
+        if (segment == current) {
+            unflushed.put(segment, 0L);
+            channel.truncate(0);
+            channel.position(0);
+            channel.force(false);
+        } else {
+            unflushed.remove(segment);
+            Files.deleteIfExists(segmentPath(segment));
+        }
+    }
+
+    /** Keeps a result the database will never accept, for someone to look at; it leaves the log. */
+    synchronized void deadLetter(Result r) throws IOException {
+        if (dead == null) {
+            dead = FileChannel.open(Path.of(path + ".dead"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        write(dead, encode(r));
+        dead.force(false);
+    }
+
+    /** Discards what was recovered at startup once it has been replayed. */
+    synchronized void reset() throws IOException {
+        for (Path file : recovered) Files.deleteIfExists(file);
+        recovered.clear();
+    }
+
+    synchronized void close() throws IOException {
+        channel.close();
+        if (dead != null) dead.close();
+    }
+
+    /** Number of segment files this journal currently has open, the newest included. */
+    synchronized int segments() {
+        return unflushed.size();
+    }
+
+    /** Forces done by appends; fewer than appends once submissions overlap. */
+    long syncs() {
+        return syncs.sum();
+    }
+
+    private void roll() throws IOException {
+        if (channel != null) {
+            // Lines still waiting for a group force are covered by this one
+            channel.force(false);
+            synchronized (syncLock) {
+                if (written > synced) synced = written;
+                syncLock.notifyAll();
+            }
+            channel.close();
+            // Closed while empty: nothing will ever mark it flushed
+            if (unflushed.getOrDefault(current, 0L) <= 0) {
+                unflushed.remove(current);
+                Files.deleteIfExists(segmentPath(current));
+            }
+        }
+        current++;
+        channel = FileChannel.open(segmentPath(current), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        unflushed.put(current, 0L);
+    }
+
+    private Path segmentPath(long segment) {
+        return Path.of(path + "." + segment);
+    }
+
+    private static void write(FileChannel channel, String line) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        while (buf.hasRemaining()) channel.write(buf);
+    }
+
+    static String encode(Result r) throws JsonProcessingException {
+        return r.getId() + '\t' + r.getStudent_id() + '\t' + r.getExam_id() + '\t' +
+            r.getScore() + '\t' + r.getTotal_questions() + '\t' + r.getSubmitted_at() +
+            // Jackson escapes control characters, so the JSON never contains a raw tab or newline
+            (r.getAnswers() == null ? "" : '\t' + mapper.writeValueAsString(r.getAnswers())) + '\n';
+    }
+
+    /** @return null for a line torn by a crash mid-append */
+    static Result decode(String line) {
+        String[] f = line.split("\t");
+        if (f.length != 6 && f.length != 7) return null;
+        Result r = new Result();
+        r.setId(f[0]);
+        r.setStudent_id(f[1]);
+        r.setExam_id(f[2]);
+        try {
+            r.setScore(Integer.parseInt(f[3]));
+            r.setTotal_questions(Integer.parseInt(f[4]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        r.setSubmitted_at(f[5]);
+        if (f.length == 7) {
+            try {
+                r.setAnswers(mapper.readValue(f[6], ANSWERS));
+            } catch (JsonProcessingException e) {
+                return null; // torn mid-answers
+            }
+        }
+        return r;
+    }
+}
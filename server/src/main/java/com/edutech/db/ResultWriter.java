@@ -0,0 +1,414 @@
+package com.edutech.db;
+
+import com.edutech.config.Env;
+import com.edutech.model.Result;
+import com.edutech.util.Ids;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind pipeline for exam results.
+ *
+ * A submission is journaled to a local write-ahead file and queued, then
+ * acknowledged; a single background thread flushes the queue to the results
+ * table in JDBC batches. When the queue is full, submit waits briefly and then
+ * rejects so callers can answer 503 instead of piling up.
+ *
+ * A batch that fails RESULT_BATCH_RETRIES times in a row is written one row at
+ * a time, so a single bad row cannot hold up the rest. Rows the database
+ * rejects as invalid go to the journal's dead-letter file; connection trouble
+ * just keeps the remaining rows for the next attempt.
+ *
+ * Submissions claim their attempt before they are queued (Attempts.claimRow).
+ * Each row is still written in the same transaction that marks its attempt
+ * finished by it, and only if no other result has: a journal replayed after a
+ * crash, or a result whose claim was undone, can never give one attempt two rows.
+ */
+public class ResultWriter {
+    private static final Logger log = LoggerFactory.getLogger(ResultWriter.class);
+
+    // seq is generated by the database; ExamAnalytics follows the table in seq order
+    private static final String INSERT_SQL =
+        "INSERT INTO results (id, student_id, exam_id, score, total_questions, submitted_at, answers) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    // Replay after a crash may see rows that were committed but not yet truncated from the journal
+    private static final String REPLAY_SQL_MYSQL =
+        "INSERT IGNORE INTO results (id, student_id, exam_id, score, total_questions, submitted_at, answers) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String REPLAY_SQL_MSSQL =
+        "INSERT INTO results (id, student_id, exam_id, score, total_questions, submitted_at, answers) " +
+        "SELECT ?, ?, ?, ?, ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM results WHERE id = ?)";
+
+    // Only one result may finish an attempt, normally the one that claimed it; see finishAttempts
+    private static final String FINISH_ATTEMPT_SQL =
+        "UPDATE attempts SET finished_at = ?, result_id = ? WHERE student_id = ? AND exam_id = ? " +
+        "AND (finished_at IS NULL OR result_id = ?)";
+    private static final String ATTEMPT_EXISTS_SQL =
+        "SELECT 1 FROM attempts WHERE student_id = ? AND exam_id = ?";
+
+    private static final int BATCH_SIZE = Env.getInt("RESULT_BATCH_SIZE", 200);
+    private static final long FLUSH_INTERVAL_MS = Env.getLong("RESULT_FLUSH_INTERVAL_MS", 200);
+    private static final int QUEUE_CAPACITY = Env.getInt("RESULT_QUEUE_CAPACITY", 10_000);
+    private static final long ENQUEUE_TIMEOUT_MS = Env.getLong("RESULT_ENQUEUE_TIMEOUT_MS", 250);
+    private static final long SHUTDOWN_TIMEOUT_MS = Env.getLong("RESULT_SHUTDOWN_TIMEOUT_MS", 15_000);
+    private static final String WAL_PATH = Env.get("RESULT_WAL_PATH",
+        Paths.get(System.getProperty("user.home"), ".edutech", "results.wal").toString());
+    private static final long WAL_SEGMENT_BYTES = Env.getLong("RESULT_WAL_SEGMENT_BYTES", 16L << 20);
+    private static final int BATCH_RETRIES = Env.getInt("RESULT_BATCH_RETRIES", 3);
+    private static final long RETRY_BACKOFF_MS = Env.getLong("RESULT_RETRY_BACKOFF_MS", 1000);
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private static BlockingQueue<Pending> queue;
+    // Counts free queue slots; taken before journaling so a rejected submission leaves no trace
+    private static Semaphore capacity;
+    private static ResultJournal journal;
+    private static Thread flusher;
+    private static volatile boolean running;
+
+    private static final LongAdder batchFailures = new LongAdder();
+    private static final LongAdder rowByRow = new LongAdder();
+    private static final LongAdder deadLettered = new LongAdder();
+    private static final LongAdder duplicatesDropped = new LongAdder();
+
+    /** A queued result and the journal segment holding it. */
+    private static final class Pending {
+        final Result result;
+        final long segment;
+
+        Pending(Result result, long segment) {
+            this.result = result;
+            this.segment = segment;
+        }
+    }
+
+    public static synchronized void start() {
+        if (running) return;
+        queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        capacity = new Semaphore(QUEUE_CAPACITY);
+        try {
+            journal = new ResultJournal(Path.of(WAL_PATH), WAL_SEGMENT_BYTES);
+            replay(journal.readAll());
+            journal.reset();
+        } catch (IOException | SQLException e) {
+            // Without a journal we cannot promise durability; leave the old file for manual recovery
+            throw new IllegalStateException("Result journal unavailable at " + WAL_PATH, e);
+        }
+
+        running = true;
+        flusher = new Thread(ResultWriter::runFlusher, "result-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Result writer started (batch {}, every {}ms, WAL {})", BATCH_SIZE, FLUSH_INTERVAL_MS, WAL_PATH);
+    }
+
+    /**
+     * Makes the result durable locally and queues it for the database.
+     *
+     * @throws RejectedExecutionException when the queue stayed full for the enqueue timeout
+     */
+    public static void submit(Result result) throws IOException {
+        if (!running) throw new RejectedExecutionException("Result writer is not running");
+        try {
+            if (!capacity.tryAcquire(ENQUEUE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                throw new RejectedExecutionException("Result queue full");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for queue space");
+        }
+        long segment;
+        try {
+            segment = journal.append(result);
+        } catch (IOException e) {
+            capacity.release();
+            throw e;
+        }
+        queue.add(new Pending(result, segment));
+    }
+
+    /** Stops accepting work and flushes everything still queued. */
+    public static synchronized void shutdown() {
+        if (!running) return;
+        running = false; // the flusher drains the queue, then exits
+        try {
+            flusher.join(SHUTDOWN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            log.warn("Result writer stopped with {} unflushed results; they will be replayed from {}", queue.size(), WAL_PATH);
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            log.error("Could not close the result journal", e);
+        }
+    }
+
+    public static int queued() {
+        return queue == null ? 0 : queue.size();
+    }
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("batchFailures", batchFailures.sum());
+        stats.put("rowByRowFlushes", rowByRow.sum());
+        stats.put("deadLettered", deadLettered.sum());
+        stats.put("duplicatesDropped", duplicatesDropped.sum());
+        stats.put("journalSegments", journal == null ? 0 : journal.segments());
+        stats.put("journalSyncs", journal == null ? 0 : journal.syncs());
+        return stats;
+    }
+
+    private static void runFlusher() {
+        List<Pending> batch = new ArrayList<>(BATCH_SIZE);
+        int failures = 0;
+        while (running || !queue.isEmpty() || !batch.isEmpty()) {
+            try {
+                if (batch.isEmpty()) {
+                    Pending first = running ? queue.poll(FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS) : queue.poll();
+                    if (first == null) continue;
+                    batch.add(first);
+                    queue.drainTo(batch, BATCH_SIZE - 1);
+                }
+                if (failures < BATCH_RETRIES) {
+                    flush(batch);
+                    done(batch);
+                } else {
+                    // Whatever is wrong with the batch, write around it
+                    rowByRow.increment();
+                    flushRows(batch);
+                }
+                failures = 0;
+            } catch (InterruptedException e) {
+                // loop condition decides whether there is more to drain
+            } catch (SQLException | IOException | RuntimeException e) {
+                // Keep the rows and retry; they are safe in the journal meanwhile
+                failures++;
+                batchFailures.increment();
+                log.warn("Result flush of {} rows failed (attempt {})", batch.size(), failures, e);
+                if (!running && failures > BATCH_RETRIES) {
+                    log.warn("Result writer gave up on {} rows at shutdown; they will be replayed from {}", batch.size(), WAL_PATH);
+                    return;
+                }
+                sleepQuietly(RETRY_BACKOFF_MS);
+            }
+        }
+    }
+
+    /** Releases the journal entries and queue slots of rows that are settled, written or dead-lettered. */
+    private static void done(List<Pending> rows) throws IOException {
+        for (Pending p : rows) journal.markFlushed(p.segment, 1);
+        capacity.release(rows.size());
+        rows.clear();
+    }
+
+    private static void flush(List<Pending> batch) throws SQLException, IOException {
+        List<Result> all = new ArrayList<>(batch.size());
+        for (Pending p : batch) all.add(p.result);
+        int written = 0;
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+            conn.setAutoCommit(false);
+            try {
+                boolean[] write = finishAttempts(conn, all);
+                for (int i = 0; i < all.size(); i++) {
+                    if (!write[i]) continue;
+                    bind(ps, all.get(i));
+                    ps.addBatch();
+                    written++;
+                }
+                if (written > 0) ps.executeBatch();
+                conn.commit();
+            } catch (SQLException | IOException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        dropped(all.size() - written);
+    }
+
+    /**
+     * Marks the attempt of each row finished by it, in the caller's transaction,
+     * in row order. A row may only be written when its attempt is open or was
+     * claimed by this very result; an attempt another result finished (from any
+     * node) drops the row.
+     * Rows without an attempt, from before attempts existed, are always written.
+     */
+    private static boolean[] finishAttempts(Connection conn, List<Result> rows) throws SQLException {
+        boolean[] write = new boolean[rows.size()];
+        int[] counts;
+        try (PreparedStatement ps = conn.prepareStatement(FINISH_ATTEMPT_SQL)) {
+            for (Result r : rows) {
+                ps.setTimestamp(1, Timestamp.valueOf(LocalDateTime.parse(r.getSubmitted_at())));
+                Ids.bind(ps, 2, r.getId());
+                Ids.bind(ps, 3, r.getStudent_id());
+                Ids.bind(ps, 4, r.getExam_id());
+                Ids.bind(ps, 5, r.getId());
+                ps.addBatch();
+            }
+            counts = ps.executeBatch();
+        }
+        // 0 means finished by another result or no attempt at all; only those few need a second look
+        try (PreparedStatement ps = conn.prepareStatement(ATTEMPT_EXISTS_SQL)) {
+            for (int i = 0; i < rows.size(); i++) {
+                if (counts[i] != 0) {
+                    write[i] = true; // updated, or SUCCESS_NO_INFO from a rewritten batch
+                    continue;
+                }
+                Ids.bind(ps, 1, rows.get(i).getStudent_id());
+                Ids.bind(ps, 2, rows.get(i).getExam_id());
+                try (ResultSet rs = ps.executeQuery()) {
+                    write[i] = !rs.next();
+                }
+            }
+        }
+        return write;
+    }
+
+    private static void dropped(int count) {
+        if (count == 0) return;
+        duplicatesDropped.add(count);
+        log.info("Dropped {} results for attempts another result already finished", count);
+    }
+
+    /**
+     * Writes the rows one by one with the idempotent replay insert, in order.
+     * Stops at the first connection problem, leaving that row and the rest in {@code rows}.
+     */
+    private static void flushRows(List<Pending> rows) throws SQLException, IOException {
+        boolean isMSSQL = DatabaseManager.isMSSQL();
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement ps = conn.prepareStatement(isMSSQL ? REPLAY_SQL_MSSQL : REPLAY_SQL_MYSQL)) {
+            while (!rows.isEmpty()) {
+                List<Pending> head = rows.subList(0, 1);
+                insertRow(conn, ps, head.get(0).result, isMSSQL);
+                done(head);
+            }
+        }
+    }
+
+    /**
+     * Inserts one row in its own transaction with its attempt, or dead-letters
+     * it when the database rejects its data.
+     */
+    private static void insertRow(Connection conn, PreparedStatement ps, Result r, boolean isMSSQL) throws SQLException, IOException {
+        conn.setAutoCommit(false);
+        try {
+            if (finishAttempts(conn, List.of(r))[0]) {
+                bind(ps, r);
+                if (isMSSQL) Ids.bind(ps, 8, r.getId());
+                // Inserts nothing when a previous attempt already committed it
+                ps.executeUpdate();
+            } else {
+                dropped(1);
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            if (!isRejected(e)) throw e;
+            deadLetter(r, e);
+        } catch (IOException | RuntimeException e) {
+            // Could not even be bound: no retry will change that
+            conn.rollback();
+            deadLetter(r, e);
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private static void deadLetter(Result r, Exception cause) throws IOException {
+        journal.deadLetter(r);
+        deadLettered.increment();
+        log.error("Result {} (student {}, exam {}) rejected, moved to {}.dead",
+            r.getId(), r.getStudent_id(), r.getExam_id(), WAL_PATH, cause);
+    }
+
+    /** Data (22) and integrity constraint (23) errors belong to the row; anything else may pass. */
+    private static boolean isRejected(SQLException e) {
+        String state = e.getSQLState();
+        return state != null && (state.startsWith("22") || state.startsWith("23"));
+    }
+
+    /**
+     * Writes what the journal recovered in one transaction, so a crash part way
+     * leaves nothing half-applied. Rows committed before the journal was cleared
+     * find their attempt finished, or are skipped by the idempotent insert. If the batch fails, rows go one at
+     * a time and rejected ones are dead-lettered, as in the flusher.
+     */
+    private static void replay(List<Result> pending) throws SQLException, IOException {
+        if (pending.isEmpty()) return;
+        boolean isMSSQL = DatabaseManager.isMSSQL();
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement ps = conn.prepareStatement(isMSSQL ? REPLAY_SQL_MSSQL : REPLAY_SQL_MYSQL)) {
+            conn.setAutoCommit(false);
+            try {
+                boolean[] write = finishAttempts(conn, pending);
+                int written = 0;
+                for (int i = 0; i < pending.size(); i++) {
+                    if (!write[i]) continue;
+                    Result r = pending.get(i);
+                    bind(ps, r);
+                    if (isMSSQL) Ids.bind(ps, 8, r.getId());
+                    ps.addBatch();
+                    written++;
+                }
+                if (written > 0) ps.executeBatch();
+                conn.commit();
+                log.info("Replayed {} journaled results", pending.size());
+                return;
+            } catch (SQLException | IOException | RuntimeException e) {
+                conn.rollback();
+                log.warn("Batch replay of {} journaled results failed, replaying row by row", pending.size(), e);
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            ps.clearBatch();
+            for (Result r : pending) insertRow(conn, ps, r, isMSSQL);
+        }
+        log.info("Replayed {} journaled results row by row", pending.size());
+    }
+
+    private static void bind(PreparedStatement ps, Result r) throws SQLException, IOException {
+        Ids.bind(ps, 1, r.getId());
+        Ids.bind(ps, 2, r.getStudent_id());
+        Ids.bind(ps, 3, r.getExam_id());
+        ps.setInt(4, r.getScore());
+        ps.setInt(5, r.getTotal_questions());
+        ps.setTimestamp(6, Timestamp.valueOf(LocalDateTime.parse(r.getSubmitted_at())));
+        ps.setString(7, r.getAnswers() == null ? null : mapper.writeValueAsString(r.getAnswers()));
+    }
+
+    private static void sleepQuietly(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
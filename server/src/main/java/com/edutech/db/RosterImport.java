@@ -0,0 +1,183 @@
+package com.edutech.db;
+
+import com.edutech.auth.PasswordHashPool;
+import com.edutech.config.Env;
+import com.edutech.util.Ids;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Creates student accounts from a roster, one batch at a time: usernames that
+ * already exist are filtered out with one query, the passwords of the rest are
+ * hashed in parallel on PasswordHashPool's bulk threads (no connection held),
+ * and the users go out as one JDBC batch in one transaction.
+ *
+ * If a batch still fails, e.g. because someone created one of the usernames
+ * meanwhile, it is rolled back and retried row by row so every failure is
+ * reported against its own row. Rows are numbered by their position in the
+ * roster, starting at 0, like the exam import.
+ *
+ * Only the pending batch is kept in memory. A username repeated within it is
+ * reported as a duplicate; one repeating a row of an earlier batch, already
+ * written by then, is reported as existing.
+ */
+public class RosterImport {
+    private static final int BATCH_SIZE = Math.max(1, Math.min(2000, Env.getInt("USER_IMPORT_BATCH_SIZE", 500)));
+    private static final int MAX_ERRORS = Env.getInt("USER_IMPORT_MAX_ERRORS", 1000);
+    private static final int MAX_USERNAME = 50;
+
+    private static final String INSERT_SQL = "INSERT INTO users (id, username, password, role) VALUES (?, ?, ?, 'STUDENT')";
+
+    private final List<Row> pending = new ArrayList<>();
+    // Usernames of the pending batch; both databases compare them case-insensitively by default
+    private final Set<String> seen = new HashSet<>();
+    private final List<Map<String, Object>> errors = new ArrayList<>();
+    private int created;
+    private int failed;
+
+    /** Validates the row and queues it; a full batch is written before this returns. */
+    public void add(int index, String username, String password) throws SQLException, InterruptedException {
+        username = username == null ? "" : username.trim();
+        if (username.isEmpty()) { fail(index, username, "Missing username"); return; }
+        if (username.length() > MAX_USERNAME) { fail(index, username, "Username longer than " + MAX_USERNAME + " characters"); return; }
+        if (password == null || password.isEmpty()) { fail(index, username, "Missing password"); return; }
+        if (!seen.add(key(username))) { fail(index, username, "Duplicate username in roster"); return; }
+
+        pending.add(new Row(index, username, password));
+        if (pending.size() >= BATCH_SIZE) flush();
+    }
+
+    /** Records a row that could not even be read, e.g. a malformed CSV line. */
+    public void fail(int index, String username, String error) {
+        failed++;
+        if (errors.size() >= MAX_ERRORS) return;
+        Map<String, Object> e = new LinkedHashMap<>();
+        e.put("index", index);
+        e.put("username", username);
+        e.put("error", error);
+        errors.add(e);
+    }
+
+    public void flush() throws SQLException, InterruptedException {
+        if (pending.isEmpty()) return;
+        List<Row> batch = new ArrayList<>(pending);
+        pending.clear();
+        seen.clear();
+
+        // 1. Drop usernames that are already taken
+        Set<String> taken = existing(batch);
+        List<Row> fresh = new ArrayList<>(batch.size());
+        for (Row r : batch) {
+            if (taken.contains(key(r.username))) fail(r.index, r.username, "Username already exists");
+            else fresh.add(r);
+        }
+        if (fresh.isEmpty()) return;
+
+        // 2. Hash on all cores, outside any connection
+        List<String> passwords = new ArrayList<>(fresh.size());
+        for (Row r : fresh) passwords.add(r.password);
+        List<String> hashes = PasswordHashPool.hashAll(passwords);
+
+        // 3. One batch, one transaction; row by row only when the batch is refused
+        try (Connection conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+                for (int i = 0; i < fresh.size(); i++) {
+                    bind(ps, fresh.get(i), hashes.get(i));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                conn.commit();
+                created += fresh.size();
+            } catch (BatchUpdateException e) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+                insertOneByOne(conn, fresh, hashes);
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    public Map<String, Object> report() {
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("success", failed == 0);
+        res.put("created", created);
+        res.put("failed", failed);
+        res.put("errors", errors);
+        if (failed > errors.size()) res.put("errorsTruncated", failed - errors.size());
+        return res;
+    }
+
+    public int getCreated() {
+        return created;
+    }
+
+    private void insertOneByOne(Connection conn, List<Row> rows, List<String> hashes) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+            for (int i = 0; i < rows.size(); i++) {
+                Row r = rows.get(i);
+                try {
+                    bind(ps, r, hashes.get(i));
+                    ps.executeUpdate();
+                    created++;
+                } catch (SQLException e) {
+                    fail(r.index, r.username, "Username likely exists");
+                }
+            }
+        }
+    }
+
+    private static Set<String> existing(List<Row> batch) throws SQLException {
+        // Padded to a power of two with the last username, so a dozen statement texts (and metric
+        // series) cover every batch size instead of one per size; at most 2048 stays under MSSQL's 2100
+        int slots = Integer.highestOneBit(batch.size());
+        if (slots < batch.size()) slots <<= 1;
+        StringBuilder sql = new StringBuilder("SELECT username FROM users WHERE username IN (");
+        for (int i = 0; i < slots; i++) sql.append(i == 0 ? "?" : ", ?");
+        sql.append(")");
+
+        Set<String> taken = new HashSet<>();
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < slots; i++) ps.setString(i + 1, batch.get(Math.min(i, batch.size() - 1)).username);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) taken.add(key(rs.getString("username")));
+            }
+        }
+        return taken;
+    }
+
+    private static void bind(PreparedStatement ps, Row r, String hash) throws SQLException {
+        Ids.bind(ps, 1, Ids.newId());
+        ps.setString(2, r.username);
+        ps.setString(3, hash);
+    }
+
+    private static String key(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Row {
+        final int index;
+        final String username;
+        final String password;
+
+        Row(int index, String username, String password) {
+            this.index = index;
+            this.username = username;
+            this.password = password;
+        }
+    }
+}
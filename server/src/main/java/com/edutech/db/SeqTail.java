@@ -0,0 +1,150 @@
+package com.edutech.db;
+
+import com.edutech.config.Env;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Follows a table in the order of its database-generated seq column, handing
+ * every committed row to a callback exactly once.
+ *
+ * Each poll reads the rows after the highest seq seen so far, in batches of
+ * &lt;prefix&gt;_BATCH_SIZE until a short one comes back. Auto-increment values
+ * are handed out before commit, so a transaction can commit after one with a
+ * higher seq: missing seqs are kept as gaps and read again on every poll for
+ * &lt;prefix&gt;_GAP_MS (rolled-back inserts leave gaps that never fill).
+ *
+ * Not thread-safe: start and poll belong to one poller thread. The cursor and
+ * counters may be read from anywhere.
+ */
+public class SeqTail {
+
+    /** Receives one row of the tail, positioned on the ResultSet. */
+    @FunctionalInterface
+    public interface RowHandler {
+        void accept(ResultSet rs) throws SQLException;
+    }
+
+    private static final int MAX_GAPS = 10_000;
+
+    private final String maxSeqSql;
+    private final String newRowsSqlMysql;
+    private final String newRowsSqlMssql;
+    private final String gapRowsSql;
+    private final int batchSize;
+    private final long gapMs;
+    private final RowHandler handler;
+
+    private long maxSeen;
+    private final TreeMap<Long, Long> gaps = new TreeMap<>(); // missing seq -> when first missed
+    // Every seq at or below it has been handed over, or never will commit
+    private volatile long cursor;
+    private volatile int openGaps;
+
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder gapsFilled = new LongAdder();
+    private final LongAdder gapsExpired = new LongAdder();
+
+    /**
+     * @param columns the select list handed to the handler; must include seq
+     * @param prefix of the BATCH_SIZE and GAP_MS settings, e.g. "CHANGE_LOG"
+     */
+    public SeqTail(String table, String columns, String prefix, int defaultBatchSize, RowHandler handler) {
+        this.maxSeqSql = "SELECT COALESCE(MAX(seq), 0) FROM " + table;
+        this.newRowsSqlMysql = "SELECT " + columns + " FROM " + table + " WHERE seq > ? ORDER BY seq LIMIT ?";
+        this.newRowsSqlMssql = "SELECT " + columns + " FROM " + table +
+            " WHERE seq > ? ORDER BY seq OFFSET 0 ROWS FETCH NEXT ? ROWS ONLY";
+        this.gapRowsSql = "SELECT " + columns + " FROM " + table + " WHERE seq >= ? AND seq <= ? ORDER BY seq";
+        this.batchSize = Env.getInt(prefix + "_BATCH_SIZE", defaultBatchSize);
+        this.gapMs = Env.getLong(prefix + "_GAP_MS", 10_000);
+        this.handler = handler;
+    }
+
+    /** Skips every row written so far; the tail starts after them. @return the current last seq */
+    public long start(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(maxSeqSql);
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            maxSeen = rs.getLong(1);
+        }
+        gaps.clear();
+        openGaps = 0;
+        cursor = maxSeen;
+        return maxSeen;
+    }
+
+    /**
+     * Hands over late commits into earlier gaps, then the new rows.
+     * @param more checked after each full batch; false stops at one
+     */
+    public void poll(Connection conn, BooleanSupplier more) throws SQLException {
+        long now = System.currentTimeMillis();
+
+        // 1. Late commits filling earlier gaps
+        if (!gaps.isEmpty()) {
+            try (PreparedStatement ps = conn.prepareStatement(gapRowsSql)) {
+                ps.setLong(1, gaps.firstKey());
+                ps.setLong(2, gaps.lastKey());
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        if (gaps.remove(rs.getLong("seq")) == null) continue;
+                        gapsFilled.increment();
+                        rows.increment();
+                        handler.accept(rs);
+                    }
+                }
+            }
+        }
+
+        // 2. New rows, in full batches until caught up
+        String sql = DatabaseManager.isMSSQL() ? newRowsSqlMssql : newRowsSqlMysql;
+        int read;
+        do {
+            read = 0;
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setLong(1, maxSeen);
+                ps.setInt(2, batchSize);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        long seq = rs.getLong("seq");
+                        if (seq - maxSeen - 1 <= MAX_GAPS) {
+                            for (long missing = maxSeen + 1; missing < seq; missing++) gaps.put(missing, now);
+                        }
+                        maxSeen = seq;
+                        rows.increment();
+                        handler.accept(rs);
+                        read++;
+                    }
+                }
+            }
+        } while (read == batchSize && more.getAsBoolean());
+
+        // 3. Gaps still empty after GAP_MS were rollbacks (or cache jumps of the identity)
+        Iterator<Long> it = gaps.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next() > gapMs) {
+                it.remove();
+                gapsExpired.increment();
+            }
+        }
+        openGaps = gaps.size();
+        cursor = gaps.isEmpty() ? maxSeen : gaps.firstKey() - 1;
+    }
+
+    public long cursor() { return cursor; }
+
+    public int openGaps() { return openGaps; }
+
+    public long rows() { return rows.sum(); }
+
+    public long gapsFilled() { return gapsFilled.sum(); }
+
+    public long gapsExpired() { return gapsExpired.sum(); }
+}
@@ -0,0 +1,28 @@
+package com.edutech.db.migration;
+
+import java.util.List;
+
+/**
+ * One versioned schema step, with the statements for each supported dialect.
+ */
+public final class Migration {
+    private final int version;
+    private final String description;
+    private final List<String> mysql;
+    private final List<String> mssql;
+
+    Migration(int version, String description, List<String> mysql, List<String> mssql) {
+        this.version = version;
+        this.description = description;
+        this.mysql = mysql;
+        this.mssql = mssql;
+    }
+
+    public int getVersion() { return version; }
+
+    public String getDescription() { return description; }
+
+    public List<String> statements(boolean isMSSQL) {
+        return isMSSQL ? mssql : mysql;
+    }
+}
@@ -0,0 +1,136 @@
+package com.edutech.db.migration;
+
+import com.edutech.db.DatabaseManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Brings the schema up to {@link Migrations#latestVersion()}.
+ *
+ * The applied version lives in schema_version, so an up-to-date database costs
+ * one SELECT at startup. Pending migrations run under a database-level lock so
+ * that several nodes booting together apply each step exactly once.
+ */
+public class MigrationRunner {
+    private static final Logger log = LoggerFactory.getLogger(MigrationRunner.class);
+
+    private static final String LOCK_NAME = "edutech_schema";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    public static void migrate() throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            migrate(conn, DatabaseManager.isMSSQL(), Migrations.latestVersion());
+        }
+    }
+
+    /** Applies every migration up to and including target; tests stop short of what their database cannot run. */
+    static void migrate(Connection conn, boolean isMSSQL, int target) throws SQLException {
+        long start = System.nanoTime();
+        Integer current = currentVersion(conn);
+        if (current != null && current >= target) {
+            log.info("Schema up to date (v{})", current);
+            return;
+        }
+
+        lock(conn, isMSSQL);
+        try {
+            createVersionTable(conn, isMSSQL);
+            // Another node may have migrated while we waited for the lock
+            current = currentVersion(conn);
+            int from = (current == null) ? 0 : current;
+            for (Migration m : Migrations.ALL) {
+                if (m.getVersion() > from && m.getVersion() <= target) apply(conn, m, isMSSQL);
+            }
+        } finally {
+            unlock(conn, isMSSQL);
+        }
+        log.info("Schema migrated to v{} for {} in {}ms", target, isMSSQL ? "MSSQL" : "MySQL",
+            (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /** Null when schema_version does not exist yet (fresh or pre-migration database). */
+    private static Integer currentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM schema_version")) {
+            rs.next();
+            int v = rs.getInt(1);
+            return rs.wasNull() ? 0 : v;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    private static void createVersionTable(Connection conn, boolean isMSSQL) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            if (isMSSQL) {
+                stmt.execute("IF NOT EXISTS (SELECT * FROM sys.objects WHERE name = 'schema_version') " +
+                    "CREATE TABLE schema_version (version INT PRIMARY KEY, description VARCHAR(255), " +
+                    "applied_at DATETIME DEFAULT GETDATE())");
+            } else {
+                stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (version INT PRIMARY KEY, " +
+                    "description VARCHAR(255), applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+            }
+        }
+    }
+
+    // MSSQL runs DDL transactionally, so a failed step leaves nothing behind.
+    // MySQL commits each DDL statement implicitly; a failed step must be fixed by hand before retrying.
+    private static void apply(Connection conn, Migration m, boolean isMSSQL) throws SQLException {
+        long start = System.nanoTime();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement();
+             PreparedStatement ps = conn.prepareStatement("INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+            for (String sql : m.statements(isMSSQL)) stmt.execute(sql);
+            ps.setInt(1, m.getVersion());
+            ps.setString(2, m.getDescription());
+            ps.executeUpdate();
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw new SQLException("Migration v" + m.getVersion() + " (" + m.getDescription() + ") failed: " + e.getMessage(), e);
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        log.info("Applied migration v{} ({}) in {}ms", m.getVersion(), m.getDescription(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void lock(Connection conn, boolean isMSSQL) throws SQLException {
+        if (isMSSQL) {
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "DECLARE @r INT; EXEC @r = sp_getapplock @Resource = ?, @LockMode = 'Exclusive', " +
+                    "@LockOwner = 'Session', @LockTimeout = ?; SELECT @r")) {
+                ps.setString(1, LOCK_NAME);
+                ps.setInt(2, LOCK_TIMEOUT_SECONDS * 1000);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next() || rs.getInt(1) < 0) throw new SQLException("Could not acquire schema migration lock");
+                }
+            }
+        } else {
+            try (PreparedStatement ps = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+                ps.setString(1, LOCK_NAME);
+                ps.setInt(2, LOCK_TIMEOUT_SECONDS);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next() || rs.getInt(1) != 1) throw new SQLException("Could not acquire schema migration lock");
+                }
+            }
+        }
+    }
+
+    private static void unlock(Connection conn, boolean isMSSQL) {
+        String sql = isMSSQL
+            ? "EXEC sp_releaseapplock @Resource = ?, @LockOwner = 'Session'"
+            : "SELECT RELEASE_LOCK(?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, LOCK_NAME);
+            ps.execute();
+        } catch (SQLException e) {
+            log.warn("Could not release the migration lock", e);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.edutech.db.migration;
+
+import java.util.List;
+
+/**
+ * Every schema version, oldest first. Never edit a migration that has shipped;
+ * append a new one instead.
+ */
+public class Migrations {
+
+    static final List<Migration> ALL = List.of(
+        // V1 is the schema DatabaseManager.createTables used to build on every boot.
+        // It keeps the IF NOT EXISTS guards so databases created that way adopt it as a no-op.
+        new Migration(1, "baseline tables",
+            List.of(
+                "CREATE TABLE IF NOT EXISTS users (id VARCHAR(36) PRIMARY KEY, " +
+                    "username VARCHAR(50) UNIQUE, password VARCHAR(255), role VARCHAR(20))",
+                "CREATE TABLE IF NOT EXISTS exams (id VARCHAR(36) PRIMARY KEY, title VARCHAR(255), " +
+                    "description TEXT, duration_minutes INT)",
+                "CREATE TABLE IF NOT EXISTS questions (id VARCHAR(36) PRIMARY KEY, exam_id VARCHAR(36), " +
+                    "text TEXT, FOREIGN KEY (exam_id) REFERENCES exams(id) ON DELETE CASCADE)",
+                "CREATE TABLE IF NOT EXISTS options (id VARCHAR(36) PRIMARY KEY, question_id VARCHAR(36), " +
+                    "text VARCHAR(255), is_correct BOOLEAN DEFAULT FALSE, " +
+                    "FOREIGN KEY (question_id) REFERENCES questions(id) ON DELETE CASCADE)",
+                "CREATE TABLE IF NOT EXISTS results (id VARCHAR(36) PRIMARY KEY, student_id VARCHAR(36), " +
+                    "exam_id VARCHAR(36), score INT, total_questions INT, submitted_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)"),
+            List.of(
+                "IF NOT EXISTS (SELECT * FROM sys.objects WHERE name = 'users') " +
+                    "CREATE TABLE users (id VARCHAR(36) PRIMARY KEY, username VARCHAR(50) UNIQUE, " +
+                    "password VARCHAR(255), role VARCHAR(20))",
+                "IF NOT EXISTS (SELECT * FROM sys.objects WHERE name = 'exams') " +
+                    "CREATE TABLE exams (id VARCHAR(36) PRIMARY KEY, title VARCHAR(255), " +
+                    "description NVARCHAR(MAX), duration_minutes INT)",
+                "IF NOT EXISTS (SELECT * FROM sys.objects WHERE name = 'questions') " +
+                    "CREATE TABLE questions (id VARCHAR(36) PRIMARY KEY, exam_id VARCHAR(36), " +
+                    "text NVARCHAR(MAX), FOREIGN KEY (exam_id) REFERENCES exams(id) ON DELETE CASCADE)",
+                "IF NOT EXISTS (SELECT * FROM sys.objects WHERE name = 'options') " +
+                    "CREATE TABLE options (id VARCHAR(36) PRIMARY KEY, question_id VARCHAR(36), " +
+                    "text VARCHAR(255), is_correct BIT DEFAULT 0, " +
+                    "FOREIGN KEY (question_id) REFERENCES questions(id) ON DELETE CASCADE)",
+                "IF NOT EXISTS (SELECT * FROM sys.objects WHERE name = 'results') " +
+                    "CREATE TABLE results (id VARCHAR(36) PRIMARY KEY, student_id VARCHAR(36), " +
+                    "exam_id VARCHAR(36), score INT, total_questions INT, submitted_at DATETIME DEFAULT GETDATE())")),
+
+        // V2: secondary indexes for the hot queries.
+        //  - options(question_id, is_correct): answer-key load is index-only (InnoDB appends the PK)
+        //  - results(student_id, submitted_at, id) / results(submitted_at, id): keyset result pages
+        //  - results(exam_id): per-exam lookups (results has no FKs, so nothing indexed it)
+        //  - users(role, username): student directory
+        // MySQL already indexes questions.exam_id for its FK; MSSQL indexes no FKs, so it gets one.
+        new Migration(2, "indexes for hot queries",
+            List.of(
+                "CREATE INDEX idx_options_question_correct ON options (question_id, is_correct)",
+                "CREATE INDEX idx_results_student_time ON results (student_id, submitted_at, id)",
+                "CREATE INDEX idx_results_time ON results (submitted_at, id)",
+                "CREATE INDEX idx_results_exam ON results (exam_id)",
+                "CREATE INDEX idx_users_role_username ON users (role, username)"),
+            List.of(
+                "CREATE INDEX idx_questions_exam ON questions (exam_id, id)",
+                "CREATE INDEX idx_options_question_correct ON options (question_id, is_correct)",
+                "CREATE INDEX idx_results_student_time ON results (student_id, submitted_at, id)",
+                "CREATE INDEX idx_results_time ON results (submitted_at, id)",
+                "CREATE INDEX idx_results_exam ON results (exam_id)",
+                "CREATE INDEX idx_users_role_username ON users (role, username)")),
+
+        // V3: every key becomes BINARY(16) holding a UUID (see util.Ids). Each table is copied
+        // into a *_v3 twin with the converted keys and swapped in, which also rebuilds the V2
+        // indexes on the new columns. The old 'admin-uuid' literal becomes Ids.ADMIN_ID.
+        // MSSQL uses BINARY(16) too: UNIQUEIDENTIFIER sorts on its last six bytes first,
+        // which would scatter time-ordered ids across the index again.
+        new Migration(3, "binary(16) uuid keys",
+            List.of(
+                "CREATE TABLE users_v3 (id BINARY(16) PRIMARY KEY, username VARCHAR(50) UNIQUE, " +
+                    "password VARCHAR(255), role VARCHAR(20), INDEX idx_users_role_username (role, username))",
+                "INSERT INTO users_v3 (id, username, password, role) " +
+                    "SELECT " + mysqlKey("id") + ", username, password, role FROM users",
+                "CREATE TABLE exams_v3 (id BINARY(16) PRIMARY KEY, title VARCHAR(255), " +
+                    "description TEXT, duration_minutes INT)",
+                "INSERT INTO exams_v3 (id, title, description, duration_minutes) " +
+                    "SELECT " + mysqlKey("id") + ", title, description, duration_minutes FROM exams",
+                "CREATE TABLE questions_v3 (id BINARY(16) PRIMARY KEY, exam_id BINARY(16), text TEXT, " +
+                    "FOREIGN KEY (exam_id) REFERENCES exams_v3(id) ON DELETE CASCADE)",
+                "INSERT INTO questions_v3 (id, exam_id, text) " +
+                    "SELECT " + mysqlKey("id") + ", " + mysqlKey("exam_id") + ", text FROM questions",
+                "CREATE TABLE options_v3 (id BINARY(16) PRIMARY KEY, question_id BINARY(16), " +
+                    "text VARCHAR(255), is_correct BOOLEAN DEFAULT FALSE, " +
+                    "INDEX idx_options_question_correct (question_id, is_correct), " +
+                    "FOREIGN KEY (question_id) REFERENCES questions_v3(id) ON DELETE CASCADE)",
+                "INSERT INTO options_v3 (id, question_id, text, is_correct) " +
+                    "SELECT " + mysqlKey("id") + ", " + mysqlKey("question_id") + ", text, is_correct FROM options",
+                "CREATE TABLE results_v3 (id BINARY(16) PRIMARY KEY, student_id BINARY(16), exam_id BINARY(16), " +
+                    "score INT, total_questions INT, submitted_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                    "INDEX idx_results_student_time (student_id, submitted_at, id), " +
+                    "INDEX idx_results_time (submitted_at, id), INDEX idx_results_exam (exam_id))",
+                "INSERT INTO results_v3 (id, student_id, exam_id, score, total_questions, submitted_at) " +
+                    "SELECT " + mysqlKey("id") + ", " + mysqlKey("student_id") + ", " + mysqlKey("exam_id") +
+                    ", score, total_questions, submitted_at FROM results",
+                "DROP TABLE options, questions, exams, results, users",
+                "RENAME TABLE users_v3 TO users, exams_v3 TO exams, questions_v3 TO questions, " +
+                    "options_v3 TO options, results_v3 TO results"),
+            List.of(
+                "CREATE TABLE users_v3 (id BINARY(16) PRIMARY KEY, username VARCHAR(50) UNIQUE, " +
+                    "password VARCHAR(255), role VARCHAR(20))",
+                "INSERT INTO users_v3 (id, username, password, role) " +
+                    "SELECT " + mssqlKey("id") + ", username, password, role FROM users",
+                "CREATE TABLE exams_v3 (id BINARY(16) PRIMARY KEY, title VARCHAR(255), " +
+                    "description NVARCHAR(MAX), duration_minutes INT)",
+                "INSERT INTO exams_v3 (id, title, description, duration_minutes) " +
+                    "SELECT " + mssqlKey("id") + ", title, description, duration_minutes FROM exams",
+                "CREATE TABLE questions_v3 (id BINARY(16) PRIMARY KEY, exam_id BINARY(16), text NVARCHAR(MAX), " +
+                    "FOREIGN KEY (exam_id) REFERENCES exams_v3(id) ON DELETE CASCADE)",
+                "INSERT INTO questions_v3 (id, exam_id, text) " +
+                    "SELECT " + mssqlKey("id") + ", " + mssqlKey("exam_id") + ", text FROM questions",
+                "CREATE TABLE options_v3 (id BINARY(16) PRIMARY KEY, question_id BINARY(16), " +
+                    "text VARCHAR(255), is_correct BIT DEFAULT 0, " +
+                    "FOREIGN KEY (question_id) REFERENCES questions_v3(id) ON DELETE CASCADE)",
+                "INSERT INTO options_v3 (id, question_id, text, is_correct) " +
+                    "SELECT " + mssqlKey("id") + ", " + mssqlKey("question_id") + ", text, is_correct FROM options",
+                "CREATE TABLE results_v3 (id BINARY(16) PRIMARY KEY, student_id BINARY(16), exam_id BINARY(16), " +
+                    "score INT, total_questions INT, submitted_at DATETIME DEFAULT GETDATE())",
+                "INSERT INTO results_v3 (id, student_id, exam_id, score, total_questions, submitted_at) " +
+                    "SELECT " + mssqlKey("id") + ", " + mssqlKey("student_id") + ", " + mssqlKey("exam_id") +
+                    ", score, total_questions, submitted_at FROM results",
+                "DROP TABLE options",
+                "DROP TABLE questions",
+                "DROP TABLE exams",
+                "DROP TABLE results",
+                "DROP TABLE users",
+                "EXEC sp_rename 'users_v3', 'users'",
+                "EXEC sp_rename 'exams_v3', 'exams'",
+                "EXEC sp_rename 'questions_v3', 'questions'",
+                "EXEC sp_rename 'options_v3', 'options'",
+                "EXEC sp_rename 'results_v3', 'results'",
+                "CREATE INDEX idx_users_role_username ON users (role, username)",
+                "CREATE INDEX idx_questions_exam ON questions (exam_id, id)",
+                "CREATE INDEX idx_options_question_correct ON options (question_id, is_correct)",
+                "CREATE INDEX idx_results_student_time ON results (student_id, submitted_at, id)",
+                "CREATE INDEX idx_results_time ON results (submitted_at, id)",
+                "CREATE INDEX idx_results_exam ON results (exam_id)")),
+
+        // V4: autosaved answers, one row per (student, exam) attempt, written behind by DraftStore.
+        // answers is the JSON object question id -> option id. updated_at is the time of the save,
+        // to the millisecond, so that a flush never replaces a row with an older one.
+        new Migration(4, "answer drafts",
+            List.of(
+                "CREATE TABLE drafts (student_id BINARY(16) NOT NULL, exam_id BINARY(16) NOT NULL, " +
+                    "answers MEDIUMTEXT NOT NULL, updated_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3), " +
+                    "PRIMARY KEY (student_id, exam_id))"),
+            List.of(
+                "CREATE TABLE drafts (student_id BINARY(16) NOT NULL, exam_id BINARY(16) NOT NULL, " +
+                    "answers NVARCHAR(MAX) NOT NULL, updated_at DATETIME2(3) NOT NULL DEFAULT SYSDATETIME(), " +
+                    "PRIMARY KEY (student_id, exam_id))")),
+
+        // V5: server-side exam attempts, one per (student, exam). A submission sets finished_at and its
+        // result_id before the result is queued, and only while finished_at is still null, so when several
+        // nodes finish the same attempt exactly one result is accepted. deadline_at and finished_at are
+        // indexed for the restart scan of open and recently finished attempts.
+        new Migration(5, "exam attempts",
+            List.of(
+                "CREATE TABLE attempts (student_id BINARY(16) NOT NULL, exam_id BINARY(16) NOT NULL, " +
+                    "started_at DATETIME(3) NOT NULL, deadline_at DATETIME(3) NOT NULL, finished_at DATETIME(3) NULL, " +
+                    "result_id BINARY(16) NULL, PRIMARY KEY (student_id, exam_id), INDEX idx_attempts_deadline (deadline_at), " +
+                    "INDEX idx_attempts_finished (finished_at))"),
+            List.of(
+                "CREATE TABLE attempts (student_id BINARY(16) NOT NULL, exam_id BINARY(16) NOT NULL, " +
+                    "started_at DATETIME2(3) NOT NULL, deadline_at DATETIME2(3) NOT NULL, finished_at DATETIME2(3) NULL, " +
+                    "result_id BINARY(16) NULL, PRIMARY KEY (student_id, exam_id))",
+                "CREATE INDEX idx_attempts_deadline ON attempts (deadline_at)",
+                "CREATE INDEX idx_attempts_finished ON attempts (finished_at)")),
+
+        // V6: exam analytics.
+        //  - results.answers: the chosen option per question (JSON object), null for older rows
+        //  - results.seq: generated by the database on insert, so rows from every node get distinct,
+        //    increasing numbers; exam_stats snapshots record the last seq they include, so only later
+        //    rows are folded in after a restart. Its unique index serves the tail read of all exams.
+        //  - (exam_id, seq) replaces the plain exam_id index for the tail read of one exam
+        new Migration(6, "exam analytics",
+            List.of(
+                "ALTER TABLE results ADD COLUMN answers MEDIUMTEXT NULL, ADD COLUMN seq BIGINT NOT NULL AUTO_INCREMENT UNIQUE",
+                "CREATE INDEX idx_results_exam_seq ON results (exam_id, seq)",
+                "DROP INDEX idx_results_exam ON results",
+                "CREATE TABLE exam_stats (exam_id BINARY(16) NOT NULL PRIMARY KEY, last_seq BIGINT NOT NULL, " +
+                    "snapshot MEDIUMTEXT NOT NULL, updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)"),
+            List.of(
+                "ALTER TABLE results ADD answers NVARCHAR(MAX) NULL, seq BIGINT IDENTITY(1,1) NOT NULL CONSTRAINT uq_results_seq UNIQUE",
+                "CREATE INDEX idx_results_exam_seq ON results (exam_id, seq)",
+                "DROP INDEX idx_results_exam ON results",
+                "CREATE TABLE exam_stats (exam_id BINARY(16) NOT NULL PRIMARY KEY, last_seq BIGINT NOT NULL, " +
+                    "snapshot NVARCHAR(MAX) NOT NULL, updated_at DATETIME NOT NULL DEFAULT GETDATE())")),
+
+        // V7: change log for cross-node cache invalidation. Written in the same transaction as the
+        // change itself and read by every node in seq order; origin lets a node skip its own rows.
+        // created_at is indexed for pruning.
+        new Migration(7, "change log",
+            List.of(
+                "CREATE TABLE change_log (seq BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY, kind VARCHAR(16) NOT NULL, " +
+                    "entity VARCHAR(64) NOT NULL, origin VARCHAR(36) NOT NULL, created_at DATETIME(3) NOT NULL, " +
+                    "INDEX idx_change_log_created (created_at))"),
+            List.of(
+                "CREATE TABLE change_log (seq BIGINT IDENTITY(1,1) NOT NULL PRIMARY KEY, kind VARCHAR(16) NOT NULL, " +
+                    "entity VARCHAR(64) NOT NULL, origin VARCHAR(36) NOT NULL, created_at DATETIME2(3) NOT NULL)",
+                "CREATE INDEX idx_change_log_created ON change_log (created_at)"))
+    );
+
+    // Literal rather than Ids.ADMIN_ID: a shipped migration must not change if that constant ever does
+    private static final String LEGACY_ADMIN_ID = "admin-uuid";
+    private static final String ADMIN_ID = "00000000-0000-7000-8000-000000000001";
+
+    private static String mysqlKey(String column) {
+        return "UNHEX(REPLACE(CASE WHEN " + column + " = '" + LEGACY_ADMIN_ID + "' THEN '" + ADMIN_ID + "' " +
+            "ELSE " + column + " END, '-', ''))";
+    }
+
+    private static String mssqlKey(String column) {
+        return "CONVERT(BINARY(16), REPLACE(CASE WHEN " + column + " = '" + LEGACY_ADMIN_ID + "' THEN '" + ADMIN_ID + "' " +
+            "ELSE " + column + " END, '-', ''), 2)";
+    }
+
+    public static int latestVersion() {
+        return ALL.get(ALL.size() - 1).getVersion();
+    }
+}
@@ -0,0 +1,68 @@
+package com.edutech.filter;
+
+import com.edutech.auth.SessionTokens;
+import com.edutech.model.User;
+
+import jakarta.servlet.*;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Resolves the caller from the signed session cookie and puts it on the
+ * request as {@link #USER_ATTRIBUTE}. Nothing is looked up in the database or
+ * in a server-side session, so any node can serve any request.
+ */
+@WebFilter(urlPatterns = "/api/*", asyncSupported = true)
+public class AuthFilter implements Filter {
+    public static final String USER_ATTRIBUTE = "user";
+    public static final String SESSION_ATTRIBUTE = "session";
+    public static final String COOKIE_NAME = "EDU_SESSION";
+
+    public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain) throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) req;
+        HttpServletResponse response = (HttpServletResponse) res;
+
+        SessionTokens.Session session = SessionTokens.verify(readCookie(request));
+        if (session != null) {
+            request.setAttribute(USER_ATTRIBUTE, session.getUser());
+            request.setAttribute(SESSION_ATTRIBUTE, session);
+            // Sliding expiry, like the old 30 minute inactivity timeout
+            if (session.needsRefresh()) setSessionCookie(request, response, SessionTokens.refresh(session));
+        }
+        chain.doFilter(req, res);
+    }
+
+    public static User currentUser(HttpServletRequest req) {
+        return (User) req.getAttribute(USER_ATTRIBUTE);
+    }
+
+    public static void setSessionCookie(HttpServletRequest req, HttpServletResponse resp, String token) {
+        resp.addCookie(buildCookie(req, token, (int) SessionTokens.TTL_SECONDS));
+    }
+
+    public static void clearSessionCookie(HttpServletRequest req, HttpServletResponse resp) {
+        resp.addCookie(buildCookie(req, "", 0));
+    }
+
+    private static Cookie buildCookie(HttpServletRequest req, String value, int maxAge) {
+        Cookie cookie = new Cookie(COOKIE_NAME, value);
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        cookie.setSecure(req.isSecure());
+        cookie.setMaxAge(maxAge);
+        cookie.setAttribute("SameSite", "Lax");
+        return cookie;
+    }
+
+    private static String readCookie(HttpServletRequest req) {
+        Cookie[] cookies = req.getCookies();
+        if (cookies == null) return null;
+        for (Cookie c : cookies) {
+            if (COOKIE_NAME.equals(c.getName())) return c.getValue();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,507 @@
+package com.edutech.filter;
+
+import com.edutech.config.Env;
+
+import jakarta.servlet.*;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Gzips API responses for clients whose Accept-Encoding allows it.
+ *
+ * The first COMPRESSION_MIN_BYTES (default 1024) of a body are held back; a
+ * body that ends before that goes out as is, with a Content-Length. Larger JSON
+ * and text bodies are deflated as they are written, with a Deflater and buffers
+ * taken from a pool of COMPRESSION_POOL_SIZE idle sets, so a response allocates
+ * no native zlib state. Bodies that already carry a Content-Encoding (the exam
+ * cache's pre-gzipped copies) pass through untouched.
+ *
+ * In the virtual execution mode the servlet writes after this filter has
+ * returned, so BlockingServlet calls finish() before completing the request.
+ * A response that switches to non-blocking writes before compression has
+ * started is not compressed: its stream and listener go straight through.
+ */
+@WebFilter(urlPatterns = "/api/*", asyncSupported = true)
+public class CompressionFilter implements Filter {
+
+    private static final boolean ENABLED = Env.getBoolean("COMPRESSION_ENABLED", true);
+    private static final int MIN_BYTES = Math.max(1, Env.getInt("COMPRESSION_MIN_BYTES", 1024));
+    private static final int LEVEL = Env.getInt("COMPRESSION_LEVEL", Deflater.DEFAULT_COMPRESSION);
+    private static final int POOL_SIZE = Env.getInt("COMPRESSION_POOL_SIZE", Runtime.getRuntime().availableProcessors() * 4);
+    private static final int BUFFER_SIZE = 8192;
+
+    // 10-byte gzip member header: magic, deflate, no flags, no mtime, no extra flags, unknown OS
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private static final BlockingQueue<Compressor> pool = new ArrayBlockingQueue<>(Math.max(1, POOL_SIZE));
+    private static final LongAdder compressed = new LongAdder();
+    private static final LongAdder passedThrough = new LongAdder();
+    private static final LongAdder bytesIn = new LongAdder();
+    private static final LongAdder bytesOut = new LongAdder();
+    private static final LongAdder created = new LongAdder();
+
+    public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain) throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) req;
+        if (!ENABLED || !acceptsGzip(request.getHeader("Accept-Encoding")) || "HEAD".equals(request.getMethod())) {
+            chain.doFilter(req, res);
+            return;
+        }
+
+        CompressingResponse wrapped = new CompressingResponse((HttpServletResponse) res);
+        boolean done = false;
+        try {
+            chain.doFilter(req, wrapped);
+            done = true;
+        } finally {
+            if (!done) {
+                wrapped.abandon();
+            } else if (!request.isAsyncStarted()) {
+                wrapped.finish();
+            }
+        }
+    }
+
+    /**
+     * Writes out whatever a compressing response still holds; for requests that
+     * complete asynchronously, to be called before AsyncContext.complete().
+     */
+    public static void finish(ServletResponse res) throws IOException {
+        while (res instanceof ServletResponseWrapper) {
+            if (res instanceof CompressingResponse) {
+                ((CompressingResponse) res).finish();
+                return;
+            }
+            res = ((ServletResponseWrapper) res).getResponse();
+        }
+    }
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", ENABLED);
+        stats.put("minBytes", MIN_BYTES);
+        stats.put("compressed", compressed.sum());
+        stats.put("passedThrough", passedThrough.sum());
+        stats.put("bytesIn", bytesIn.sum());
+        stats.put("bytesOut", bytesOut.sum());
+        stats.put("deflatersCreated", created.sum());
+        stats.put("deflatersIdle", pool.size());
+        return stats;
+    }
+
+    /** True when gzip is acceptable: listed (or covered by "*") without q=0. */
+    static boolean acceptsGzip(String header) {
+        if (header == null) return false;
+        Boolean star = null;
+        for (String part : header.split(",")) {
+            String[] params = part.split(";");
+            String coding = params[0].trim().toLowerCase(Locale.ROOT);
+            boolean allowed = true;
+            for (int i = 1; i < params.length; i++) {
+                String p = params[i].trim();
+                if (p.startsWith("q=") || p.startsWith("Q=")) {
+                    try {
+                        allowed = Double.parseDouble(p.substring(2).trim()) > 0;
+                    } catch (NumberFormatException e) {
+                        allowed = false;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) return allowed;
+            if (coding.equals("*")) star = allowed;
+        }
+        return star != null && star;
+    }
+
+    private static boolean isCompressible(String contentType) {
+        if (contentType == null) return false;
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return type.startsWith("application/json") || type.startsWith("text/")
+            || type.startsWith("application/javascript") || type.startsWith("image/svg+xml");
+    }
+
+    /** A raw deflater plus the buffers one response needs; reused across responses. */
+    private static final class Compressor {
+        final Deflater deflater = new Deflater(LEVEL, true); // raw deflate, the gzip framing is written here
+        final CRC32 crc = new CRC32();
+        final byte[] held = new byte[MIN_BYTES];
+        final byte[] out = new byte[BUFFER_SIZE];
+
+        static Compressor take() {
+            Compressor c = pool.poll();
+            if (c != null) return c;
+            created.increment();
+            return new Compressor();
+        }
+
+        void release() {
+            deflater.reset();
+            crc.reset();
+            // A full pool means a burst is over; the extra zlib state is freed now instead of by a finalizer
+            if (!pool.offer(this)) deflater.end();
+        }
+    }
+
+    private enum State { HOLDING, COMPRESSING, PASSING, FINISHED }
+
+    private static final class CompressingResponse extends HttpServletResponseWrapper {
+        private final HttpServletResponse response;
+        private State state = State.HOLDING;
+        private Compressor compressor;
+        private int held;
+        private long declaredLength = -1;
+        private long in;
+        private long out;
+        private ServletOutputStream stream;
+        private PrintWriter writer;
+
+        CompressingResponse(HttpServletResponse response) {
+            super(response);
+            this.response = response;
+        }
+
+        // --- headers that decide or are changed by compression ---
+
+        @Override
+        public void setContentLength(int len) {
+            setContentLengthLong(len);
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+            if (state == State.HOLDING) {
+                declaredLength = len;
+                // Known to be small: nothing to hold back
+                if (len >= 0 && len < MIN_BYTES) passThrough();
+            } else if (state == State.PASSING) {
+                super.setContentLengthLong(len);
+            }
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if (onHeader(name, value)) super.setHeader(name, value);
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if (onHeader(name, value)) super.addHeader(name, value);
+        }
+
+        @Override
+        public void setIntHeader(String name, int value) {
+            if (onHeader(name, String.valueOf(value))) super.setIntHeader(name, value);
+        }
+
+        @Override
+        public void addIntHeader(String name, int value) {
+            if (onHeader(name, String.valueOf(value))) super.addIntHeader(name, value);
+        }
+
+        /** @return whether the header goes through to the real response now */
+        private boolean onHeader(String name, String value) {
+            if ("Content-Length".equalsIgnoreCase(name)) {
+                try {
+                    setContentLengthLong(Long.parseLong(value.trim()));
+                } catch (NumberFormatException e) {
+                    return true;
+                }
+                return false;
+            }
+            // Already encoded by the servlet, e.g. a cached gzip copy
+            if ("Content-Encoding".equalsIgnoreCase(name) && state == State.HOLDING) passThrough();
+            return true;
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            discardHeld();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            discardHeld();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            discardHeld();
+            super.sendRedirect(location);
+        }
+
+        @Override
+        public void reset() {
+            super.reset(); // throws once committed, leaving the state as it was
+            restart();
+        }
+
+        @Override
+        public void resetBuffer() {
+            super.resetBuffer();
+            restart();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) writer.flush();
+            // An explicit commit: what is held so far decides
+            if (state == State.HOLDING) decide(false);
+            if (state == State.COMPRESSING) deflate(Deflater.SYNC_FLUSH);
+            super.flushBuffer();
+        }
+
+        // --- body ---
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            if (writer != null) throw new IllegalStateException("getWriter() has already been called");
+            if (stream == null) stream = new Stream();
+            return stream;
+        }
+
+        @Override
+        public PrintWriter getWriter() {
+            if (writer == null) {
+                if (stream != null) throw new IllegalStateException("getOutputStream() has already been called");
+                String encoding = getCharacterEncoding();
+                Charset charset = encoding == null ? StandardCharsets.ISO_8859_1 : Charset.forName(encoding);
+                stream = new Stream();
+                writer = new PrintWriter(new OutputStreamWriter(stream, charset));
+            }
+            return writer;
+        }
+
+        private void write(byte[] b, int off, int len) throws IOException {
+            switch (state) {
+                case HOLDING:
+                    // Below the threshold so far, and not declared larger: keep holding
+                    if (held + len < MIN_BYTES && declaredLength < MIN_BYTES) {
+                        if (compressor == null) compressor = Compressor.take();
+                        System.arraycopy(b, off, compressor.held, held, len);
+                        held += len;
+                        return;
+                    }
+                    decide(true);
+                    write(b, off, len);
+                    return;
+                case COMPRESSING:
+                    in += len;
+                    compressor.crc.update(b, off, len);
+                    compressor.deflater.setInput(b, off, len);
+                    while (!compressor.deflater.needsInput()) drain(Deflater.NO_FLUSH);
+                    return;
+                case PASSING:
+                    response.getOutputStream().write(b, off, len);
+                    return;
+                default:
+                    throw new IOException("Response already finished");
+            }
+        }
+
+        /** Leaves HOLDING: compresses when the body is large enough and of a compressible type. */
+        private void decide(boolean large) throws IOException {
+            int status = getStatus();
+            boolean compress = large && isCompressible(getContentType()) && !response.isCommitted()
+                && response.getHeader("Content-Encoding") == null
+                && status != SC_NO_CONTENT && status != SC_NOT_MODIFIED;
+            if (!compress) {
+                passThrough();
+                return;
+            }
+
+            state = State.COMPRESSING;
+            compressed.increment();
+            if (compressor == null) compressor = Compressor.take();
+            response.setHeader("Content-Encoding", "gzip");
+            addVary();
+            // The identity validator must not be reused for the gzip bytes (RFC 9110); same suffix as the exam cache
+            String etag = response.getHeader("ETag");
+            if (etag != null && etag.startsWith("\"") && etag.endsWith("\"")) {
+                response.setHeader("ETag", etag.substring(0, etag.length() - 1) + "-gz\"");
+            }
+            response.getOutputStream().write(GZIP_HEADER);
+            out += GZIP_HEADER.length;
+
+            byte[] bytes = compressor.held;
+            int n = held;
+            held = 0;
+            write(bytes, 0, n);
+        }
+
+        private void passThrough() {
+            if (state != State.HOLDING) return;
+            state = State.PASSING;
+            passedThrough.increment();
+            if (isCompressible(getContentType())) addVary();
+            if (declaredLength >= 0) response.setContentLengthLong(declaredLength);
+            if (held > 0) {
+                try {
+                    response.getOutputStream().write(compressor.held, 0, held);
+                } catch (IOException e) {
+                    // surfaces again on the caller's next write or on finish
+                } finally {
+                    held = 0;
+                }
+            }
+            releaseCompressor();
+        }
+
+        private void addVary() {
+            for (String vary : response.getHeaders("Vary")) {
+                if (vary.toLowerCase(Locale.ROOT).contains("accept-encoding")) return;
+            }
+            response.addHeader("Vary", "Accept-Encoding");
+        }
+
+        private void deflate(int flush) throws IOException {
+            int n;
+            do {
+                n = drain(flush);
+            } while (n == compressor.out.length);
+        }
+
+        private int drain(int flush) throws IOException {
+            int n = compressor.deflater.deflate(compressor.out, 0, compressor.out.length, flush);
+            if (n > 0) {
+                response.getOutputStream().write(compressor.out, 0, n);
+                out += n;
+            }
+            return n;
+        }
+
+        /** Ends the body: writes out what is held, or the end of the gzip stream. Safe to call twice. */
+        void finish() throws IOException {
+            if (writer != null) writer.flush();
+            try {
+                switch (state) {
+                    case HOLDING:
+                        // Small enough to send as is, and now its length is known
+                        if (declaredLength < 0 && held > 0 && !response.isCommitted()) declaredLength = held;
+                        passThrough();
+                        break;
+                    case COMPRESSING:
+                        compressor.deflater.finish();
+                        while (!compressor.deflater.finished()) drain(Deflater.NO_FLUSH);
+                        byte[] trailer = new byte[8];
+                        int crc = (int) compressor.crc.getValue();
+                        int size = (int) in;
+                        for (int i = 0; i < 4; i++) {
+                            trailer[i] = (byte) (crc >>> (8 * i));
+                            trailer[4 + i] = (byte) (size >>> (8 * i));
+                        }
+                        response.getOutputStream().write(trailer);
+                        out += trailer.length;
+                        bytesIn.add(in);
+                        bytesOut.add(out);
+                        break;
+                    default:
+                        break;
+                }
+            } finally {
+                state = State.FINISHED;
+                releaseCompressor();
+            }
+        }
+
+        /** The request failed: give the buffers back, whatever the container sends instead. */
+        void abandon() {
+            state = State.FINISHED;
+            releaseCompressor();
+        }
+
+        private void discardHeld() {
+            if (state == State.HOLDING || state == State.COMPRESSING) {
+                held = 0;
+                state = State.PASSING;
+                releaseCompressor();
+            }
+        }
+
+        private void restart() {
+            if (state == State.FINISHED) return;
+            held = 0;
+            in = 0;
+            out = 0;
+            declaredLength = -1;
+            state = State.HOLDING;
+            if (compressor != null) {
+                compressor.deflater.reset();
+                compressor.crc.reset();
+            }
+        }
+
+        private void releaseCompressor() {
+            if (compressor != null) {
+                compressor.release();
+                compressor = null;
+            }
+        }
+
+        private final class Stream extends ServletOutputStream {
+            private final byte[] one = new byte[1];
+
+            @Override
+            public void write(int b) throws IOException {
+                one[0] = (byte) b;
+                CompressingResponse.this.write(one, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (len > 0) CompressingResponse.this.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                // Held bytes stay held: a flush before MIN_BYTES must not force the decision
+                if (state == State.COMPRESSING) deflate(Deflater.SYNC_FLUSH);
+                if (state == State.COMPRESSING || state == State.PASSING) response.getOutputStream().flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                finish();
+            }
+
+            @Override
+            public boolean isReady() {
+                if (state != State.PASSING) return true;
+                try {
+                    return response.getOutputStream().isReady();
+                } catch (IOException e) {
+                    return true; // surfaces again on the caller's next write
+                }
+            }
+
+            @Override
+            public void setWriteListener(WriteListener listener) {
+                // The deflater writes in blocking mode; hand the body to the container uncompressed
+                if (state == State.HOLDING) passThrough();
+                if (state != State.PASSING) {
+                    throw new IllegalStateException("Compression has already started on this response");
+                }
+                try {
+                    response.getOutputStream().setWriteListener(listener);
+                } catch (IOException e) {
+                    throw new IllegalStateException("No output stream to listen on", e);
+                }
+            }
+        }
+    }
+}
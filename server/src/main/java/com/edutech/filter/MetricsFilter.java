@@ -0,0 +1,58 @@
+package com.edutech.filter;
+
+import com.edutech.metrics.Metrics;
+import com.edutech.util.Ids;
+
+import jakarta.servlet.*;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Times every API request and records it under its route, with ids in the
+ * path folded to {id} so each endpoint is one series. Async requests (login)
+ * are recorded when they complete, not when the request thread returns.
+ */
+@WebFilter(urlPatterns = "/api/*", asyncSupported = true)
+public class MetricsFilter implements Filter {
+
+    public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain) throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) req;
+        HttpServletResponse response = (HttpServletResponse) res;
+        Metrics.Series series = Metrics.route(request.getMethod() + " " + routeOf(request.getRequestURI()));
+        long start = System.nanoTime();
+
+        boolean failed = true;
+        try {
+            chain.doFilter(req, res);
+            failed = false;
+        } finally {
+            if (!failed && request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    public void onComplete(AsyncEvent event) {
+                        series.record(System.nanoTime() - start, response.getStatus() >= 500);
+                    }
+                    public void onTimeout(AsyncEvent event) {}
+                    public void onError(AsyncEvent event) {}
+                    public void onStartAsync(AsyncEvent event) {}
+                });
+            } else {
+                series.record(System.nanoTime() - start, failed || response.getStatus() >= 500);
+            }
+        }
+    }
+
+    static String routeOf(String uri) {
+        StringBuilder route = new StringBuilder(uri.length());
+        int from = 1;
+        while (from <= uri.length()) {
+            int to = uri.indexOf('/', from);
+            if (to < 0) to = uri.length();
+            String segment = uri.substring(from, to);
+            if (!segment.isEmpty()) route.append('/').append(Ids.isValid(segment) ? "{id}" : segment);
+            from = to + 1;
+        }
+        return route.length() == 0 ? "/" : route.toString();
+    }
+}
@@ -0,0 +1,293 @@
+package com.edutech.filter;
+
+import com.edutech.config.Env;
+import com.edutech.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.servlet.*;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token-bucket rate limits, answered with 429 and Retry-After.
+ *
+ * Every request spends a token from the bucket of its caller: the user for
+ * signed-in requests, the remote address otherwise (so students behind one
+ * school NAT do not share a bucket once logged in). Routes listed in
+ * RATE_LIMIT_ROUTES additionally spend from a per-caller bucket of their own.
+ *
+ * Logins are limited per account rather than per address, since a whole
+ * school signs in from one NAT address at the start of an exam: AuthServlet
+ * calls allowLogin() with the submitted username once it has read the body.
+ * The bucket is keyed by username and address together, so guessing one
+ * student's password is slow while nobody elsewhere can lock that student
+ * out. The address buckets stay as a generous backstop.
+ *
+ * A bucket is a single long holding its theoretical arrival time (GCRA, which
+ * behaves exactly like a token bucket of the same rate and burst), updated by
+ * compare-and-set; a check allocates nothing once the caller's bucket exists.
+ * A bucket whose time is in the past is full and therefore identical to a new
+ * one, so the sweeper drops those without losing any state.
+ *
+ * Runs after AuthFilter (see web.xml) so the caller is known. Behind a proxy,
+ * configure Tomcat's RemoteIpValve so getRemoteAddr() is the client.
+ */
+@WebFilter(urlPatterns = "/api/*", asyncSupported = true)
+public class RateLimitFilter implements Filter {
+    private static final Logger log = LoggerFactory.getLogger(RateLimitFilter.class);
+
+    private static final boolean ENABLED = Env.getBoolean("RATE_LIMIT_ENABLED", true);
+    private static final int MAX_KEYS = Env.getInt("RATE_LIMIT_MAX_KEYS", 100_000);
+    private static final long SWEEP_INTERVAL_MS = Env.getLong("RATE_LIMIT_SWEEP_INTERVAL_MS", 60_000);
+
+    // "perSecond:burst"
+    private static final Limit USERS = limit("user", "RATE_LIMIT_USER", "10:50");
+    private static final Limit IPS = limit("ip", "RATE_LIMIT_IP", "50:500");
+    private static final Limit LOGINS = limit("login", "RATE_LIMIT_LOGIN", "0.2:10");
+    // "METHOD /path=perSecond:burst", comma separated; a path ending in * matches by prefix
+    private static final Rule[] ROUTES = parseRoutes(Env.get("RATE_LIMIT_ROUTES",
+        "POST /api/login=50:1000,GET /api/exams/results=2:10"));
+
+    private static final LongAdder allowed = new LongAdder();
+    private static Thread sweeper;
+    private static volatile boolean running;
+
+    public void init(FilterConfig config) {
+        if (!ENABLED) {
+            log.info("Rate limiting disabled");
+            return;
+        }
+        startSweeper();
+    }
+
+    public void destroy() {
+        stopSweeper();
+    }
+
+    public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain) throws IOException, ServletException {
+        if (!ENABLED) {
+            chain.doFilter(req, res);
+            return;
+        }
+        HttpServletRequest request = (HttpServletRequest) req;
+        long now = System.nanoTime();
+        User user = AuthFilter.currentUser(request);
+        String caller = user != null ? user.getId() : request.getRemoteAddr();
+
+        // 1. The route's own bucket, when a rule matches
+        long wait = 0;
+        Rule rule = match(request);
+        if (rule != null) wait = rule.limit.acquire(caller, now);
+        // 2. The caller's overall bucket
+        if (wait == 0) wait = (user != null ? USERS : IPS).acquire(caller, now);
+
+        if (wait > 0) {
+            reject((HttpServletResponse) res, wait, "Too many requests, please slow down");
+            return;
+        }
+        allowed.increment();
+        chain.doFilter(req, res);
+    }
+
+    /**
+     * Spends a token from the login bucket of this username at the caller's
+     * address; when it is empty, answers 429 and returns false.
+     */
+    public static boolean allowLogin(HttpServletRequest request, HttpServletResponse response, String username) throws IOException {
+        if (!ENABLED || username == null) return true;
+        // Case folded, as MySQL's default collation matches usernames regardless of case
+        String key = username.toLowerCase(Locale.ROOT) + '@' + request.getRemoteAddr();
+        long wait = LOGINS.acquire(key, System.nanoTime());
+        if (wait == 0) return true;
+        reject(response, wait, "Too many login attempts for this account, please wait");
+        return false;
+    }
+
+    private static void reject(HttpServletResponse response, long waitNanos, String message) throws IOException {
+        response.setHeader("Retry-After", Long.toString(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999))));
+        response.sendError(429, message);
+    }
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", ENABLED);
+        stats.put("allowed", allowed.sum());
+        long throttled = USERS.throttled.sum() + IPS.throttled.sum() + LOGINS.throttled.sum();
+        for (Rule r : ROUTES) throttled += r.limit.throttled.sum();
+        stats.put("throttled", throttled);
+        stats.put("throttledUser", USERS.throttled.sum());
+        stats.put("throttledIp", IPS.throttled.sum());
+        stats.put("throttledLogin", LOGINS.throttled.sum());
+        stats.put("buckets", USERS.buckets.size() + IPS.buckets.size() + LOGINS.buckets.size() + routeBuckets());
+        Map<String, Object> routes = new LinkedHashMap<>();
+        for (Rule r : ROUTES) routes.put(r.limit.name, Map.of("buckets", r.limit.buckets.size(), "throttled", r.limit.throttled.sum()));
+        stats.put("routes", routes);
+        return stats;
+    }
+
+    private static int routeBuckets() {
+        int n = 0;
+        for (Rule r : ROUTES) n += r.limit.buckets.size();
+        return n;
+    }
+
+    private static Rule match(HttpServletRequest request) {
+        if (ROUTES.length == 0) return null;
+        String method = request.getMethod();
+        String uri = request.getRequestURI();
+        for (Rule r : ROUTES) {
+            if (r.method.equals(method) && (r.prefix ? uri.startsWith(r.path) : uri.equals(r.path))) return r;
+        }
+        return null;
+    }
+
+    private static synchronized void startSweeper() {
+        if (running) return;
+        running = true;
+        sweeper = new Thread(() -> {
+            while (running) {
+                try {
+                    Thread.sleep(SWEEP_INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long now = System.nanoTime();
+                USERS.sweep(now);
+                IPS.sweep(now);
+                LOGINS.sweep(now);
+                for (Rule r : ROUTES) r.limit.sweep(now);
+            }
+        }, "rate-limit-sweeper");
+        sweeper.setDaemon(true);
+        sweeper.start();
+    }
+
+    private static synchronized void stopSweeper() {
+        if (!running) return;
+        running = false;
+        sweeper.interrupt();
+    }
+
+    private static Limit limit(String name, String variable, String fallback) {
+        Limit limit = Limit.parse(name, Env.get(variable, fallback));
+        return limit != null ? limit : Limit.parse(name, fallback);
+    }
+
+    private static Rule[] parseRoutes(String spec) {
+        List<Rule> rules = new ArrayList<>();
+        for (String entry : spec.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) continue;
+            int eq = entry.lastIndexOf('=');
+            String[] route = eq < 0 ? new String[0] : entry.substring(0, eq).trim().split("\\s+");
+            if (route.length != 2) {
+                log.warn("Ignoring invalid RATE_LIMIT_ROUTES entry: {}", entry);
+                continue;
+            }
+            Limit limit = Limit.parse(route[0] + " " + route[1], entry.substring(eq + 1));
+            if (limit != null) rules.add(new Rule(route[0].toUpperCase(), route[1], limit));
+        }
+        return rules.toArray(new Rule[0]);
+    }
+
+    private static final class Rule {
+        final String method;
+        final String path;
+        final boolean prefix;
+        final Limit limit;
+
+        Rule(String method, String path, Limit limit) {
+            this.method = method;
+            this.prefix = path.endsWith("*");
+            this.path = prefix ? path.substring(0, path.length() - 1) : path;
+            this.limit = limit;
+        }
+    }
+
+    /** One rate and burst, with a bucket per caller. */
+    private static final class Limit {
+        final String name;
+        final long intervalNanos; // time to earn one token
+        final long burstNanos;    // how far ahead of now the arrival time may run
+        final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+        // Shared by callers arriving while the map is full, so a flood of fresh keys cannot grow memory
+        final Bucket overflow = new Bucket(System.nanoTime());
+        final LongAdder throttled = new LongAdder();
+
+        Limit(String name, double perSecond, int burst) {
+            this.name = name;
+            this.intervalNanos = (long) (1_000_000_000L / perSecond);
+            this.burstNanos = intervalNanos * burst;
+        }
+
+        static Limit parse(String name, String spec) {
+            try {
+                String[] parts = spec.trim().split(":");
+                double perSecond = Double.parseDouble(parts[0]);
+                int burst = parts.length > 1 ? Integer.parseInt(parts[1]) : (int) Math.max(1, Math.ceil(perSecond));
+                if (perSecond <= 0 || burst <= 0) throw new NumberFormatException();
+                return new Limit(name, perSecond, burst);
+            } catch (RuntimeException e) {
+                log.warn("Ignoring invalid rate limit for {}: {}", name, spec);
+                return null;
+            }
+        }
+
+        /** @return 0 when a token was taken, otherwise nanos until one is available */
+        long acquire(String key, long now) {
+            Bucket bucket = buckets.get(key);
+            if (bucket == null) {
+                bucket = buckets.size() >= MAX_KEYS ? overflow : buckets.computeIfAbsent(key, k -> new Bucket(now));
+            }
+            long wait = bucket.acquire(now, intervalNanos, burstNanos);
+            if (wait > 0) throttled.increment();
+            return wait;
+        }
+
+        /** Drops full buckets; a caller coming back simply gets a new, equally full one. */
+        void sweep(long now) {
+            buckets.entrySet().removeIf(e -> e.getValue().tat - now <= 0);
+        }
+    }
+
+    private static final class Bucket {
+        private static final VarHandle TAT;
+        static {
+            try {
+                TAT = MethodHandles.lookup().findVarHandle(Bucket.class, "tat", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        // Theoretical arrival time on the nanoTime clock: each request pushes it one interval further
+        volatile long tat;
+
+        Bucket(long now) {
+            this.tat = now;
+        }
+
+        long acquire(long now, long interval, long burst) {
+            while (true) {
+                long current = tat;
+                long next = (current - now > 0 ? current : now) + interval;
+                long over = next - now - burst;
+                if (over > 0) return over;
+                if (TAT.compareAndSet(this, current, next)) return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.edutech.metrics;
+
+import java.sql.Connection;
+
+/**
+ * Wraps a pooled connection so every statement execution is timed per SQL
+ * text. Prepared statements carry their SQL from prepare time; plain
+ * statements are labelled with the SQL passed to execute.
+ *
+ * The wrappers are plain delegating classes: a call costs one extra virtual
+ * dispatch, and only execute* adds the clock reads and the Metrics update.
+ */
+public class InstrumentedJdbc {
+
+    public static Connection wrap(Connection conn) {
+        return wrap(conn, null);
+    }
+
+    /** @param onClose run once, after the first close() of the returned connection */
+    public static Connection wrap(Connection conn, Runnable onClose) {
+        return new TimedConnection(conn, onClose);
+    }
+}
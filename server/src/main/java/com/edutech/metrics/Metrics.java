@@ -0,0 +1,172 @@
+package com.edutech.metrics;
+
+import com.edutech.analytics.ExamAnalytics;
+import com.edutech.attempt.Attempts;
+import com.edutech.auth.PasswordHashPool;
+import com.edutech.cache.AnswerKeyCache;
+import com.edutech.cache.ExamCache;
+import com.edutech.db.ChangeLog;
+import com.edutech.db.DatabaseManager;
+import com.edutech.db.DraftStore;
+import com.edutech.db.ResultWriter;
+import com.edutech.filter.CompressionFilter;
+import com.edutech.filter.RateLimitFilter;
+
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide registry for request and query telemetry.
+ *
+ * Recording is a map lookup plus a few LongAdder increments, cheap enough to
+ * stay on during exams. Everything is rendered in the Prometheus text format
+ * by {@link #writePrometheus(PrintWriter)}.
+ */
+public class Metrics {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    // Label cardinality guard: unexpected paths or SQL collapse into one series
+    private static final int MAX_SERIES = 500;
+    private static final String OVERFLOW = "other";
+
+    private static final ConcurrentHashMap<String, Series> routes = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Series> queries = new ConcurrentHashMap<>();
+    private static final LatencyHistogram poolWait = new LatencyHistogram();
+
+    /** Request count, error count and latency for one route or one SQL statement. */
+    public static final class Series {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+
+        public void record(long nanos, boolean error) {
+            latency.recordNanos(nanos);
+            if (error) errors.increment();
+        }
+    }
+
+    public static Series route(String route) {
+        return series(routes, route);
+    }
+
+    public static void recordQuery(String sql, long nanos, boolean failed) {
+        series(queries, sql).record(nanos, failed);
+    }
+
+    public static void recordPoolWait(long nanos) {
+        poolWait.recordNanos(nanos);
+    }
+
+    /** Component counters (caches, pools, queues) grouped by component, as served on /api/stats. */
+    public static Map<String, Object> componentStats() {
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("exams", ExamCache.stats());
+        res.put("answerKeys", AnswerKeyCache.stats());
+        res.put("loginHashing", PasswordHashPool.stats());
+        res.put("resultQueueDepth", ResultWriter.queued());
+        res.put("resultWriter", ResultWriter.stats());
+        res.put("drafts", DraftStore.stats());
+        res.put("attempts", Attempts.stats());
+        res.put("analytics", ExamAnalytics.stats());
+        res.put("rateLimit", RateLimitFilter.stats());
+        res.put("compression", CompressionFilter.stats());
+        res.put("changeLog", ChangeLog.stats());
+        res.put("dbPool", DatabaseManager.poolStats());
+        res.put("dbReadPool", DatabaseManager.readPoolStats());
+        return res;
+    }
+
+    public static void writePrometheus(PrintWriter out) {
+        out.println("# TYPE edutech_http_request_duration_seconds summary");
+        for (Map.Entry<String, Series> e : routes.entrySet()) {
+            writeSummary(out, "edutech_http_request_duration_seconds", "route", e.getKey(), e.getValue().latency);
+        }
+        out.println("# TYPE edutech_http_request_errors_total counter");
+        for (Map.Entry<String, Series> e : routes.entrySet()) {
+            out.println("edutech_http_request_errors_total{route=\"" + escape(e.getKey()) + "\"} " + e.getValue().errors.sum());
+        }
+
+        out.println("# TYPE edutech_db_query_duration_seconds summary");
+        for (Map.Entry<String, Series> e : queries.entrySet()) {
+            writeSummary(out, "edutech_db_query_duration_seconds", "sql", e.getKey(), e.getValue().latency);
+        }
+        out.println("# TYPE edutech_db_query_errors_total counter");
+        for (Map.Entry<String, Series> e : queries.entrySet()) {
+            out.println("edutech_db_query_errors_total{sql=\"" + escape(e.getKey()) + "\"} " + e.getValue().errors.sum());
+        }
+
+        out.println("# TYPE edutech_db_pool_wait_seconds summary");
+        writeSummary(out, "edutech_db_pool_wait_seconds", null, null, poolWait);
+
+        // Gauges and counters exposed by the components themselves
+        for (Map.Entry<String, Object> section : componentStats().entrySet()) {
+            writeComponent(out, "edutech_" + snake(section.getKey()), section.getValue());
+        }
+
+        writeJvm(out);
+    }
+
+    private static Series series(ConcurrentHashMap<String, Series> map, String key) {
+        Series s = map.get(key);
+        if (s != null) return s;
+        if (map.size() >= MAX_SERIES) key = OVERFLOW;
+        return map.computeIfAbsent(key, k -> new Series());
+    }
+
+    private static void writeSummary(PrintWriter out, String name, String label, String value, LatencyHistogram h) {
+        String labels = label == null ? "" : label + "=\"" + escape(value) + "\",";
+        for (double q : QUANTILES) {
+            out.println(name + "{" + labels + "quantile=\"" + q + "\"} " + fmt(h.quantileSeconds(q)));
+        }
+        String plain = label == null ? "" : "{" + label + "=\"" + escape(value) + "\"}";
+        out.println(name + "_sum" + plain + " " + fmt(h.sumSeconds()));
+        out.println(name + "_count" + plain + " " + h.count());
+        out.println(name + "_max" + plain + " " + fmt(h.maxSeconds()));
+    }
+
+    private static void writeComponent(PrintWriter out, String prefix, Object value) {
+        if (value instanceof Number) {
+            out.println(prefix + " " + value);
+        } else if (value instanceof Map) {
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+                if (e.getValue() instanceof Number) out.println(prefix + "_" + snake(String.valueOf(e.getKey())) + " " + e.getValue());
+            }
+        }
+    }
+
+    private static void writeJvm(PrintWriter out) {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        out.println("# TYPE edutech_jvm_heap_bytes gauge");
+        out.println("edutech_jvm_heap_bytes{area=\"used\"} " + heap.getUsed());
+        out.println("edutech_jvm_heap_bytes{area=\"committed\"} " + heap.getCommitted());
+        out.println("edutech_jvm_heap_bytes{area=\"max\"} " + heap.getMax());
+
+        out.println("# TYPE edutech_jvm_gc_collections_total counter");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            out.println("edutech_jvm_gc_collections_total{gc=\"" + escape(gc.getName()) + "\"} " + gc.getCollectionCount());
+        }
+        out.println("# TYPE edutech_jvm_gc_pause_seconds_total counter");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            out.println("edutech_jvm_gc_pause_seconds_total{gc=\"" + escape(gc.getName()) + "\"} " + fmt(gc.getCollectionTime() / 1000.0));
+        }
+        out.println("# TYPE edutech_jvm_threads gauge");
+        out.println("edutech_jvm_threads " + ManagementFactory.getThreadMXBean().getThreadCount());
+    }
+
+    private static String snake(String camel) {
+        return camel.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toLowerCase(Locale.ROOT);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String fmt(double v) {
+        return String.format(Locale.ROOT, "%.6f", v);
+    }
+}
@@ -1,7 +1,10 @@
 package com.edutech.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 
+import java.util.Map;
+
 @Data
 public class Result {
     private String id;
@@ -12,4 +15,7 @@ public class Result {
     private int score;
     private int total_questions;
     private String submitted_at;
+    // question id -> chosen option id; stored for analytics, never sent back
+    @JsonIgnore
+    private Map<String, String> answers;
 }
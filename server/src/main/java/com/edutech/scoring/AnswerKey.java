@@ -0,0 +1,122 @@
+package com.edutech.scoring;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, compiled answer key for one exam.
+ *
+ * Question ids are kept in a sorted array and the correct option ids in one flat
+ * array indexed through {@code correctStart}, so scoring a submission is a walk
+ * over a few arrays with no database access and no per-question objects.
+ */
+public final class AnswerKey {
+    private final String examId;
+    private final String examTitle;
+    private final String[] questionIds;
+    // correct option ids of question i are correctIds[correctStart[i] .. correctStart[i + 1])
+    private final int[] correctStart;
+    private final String[] correctIds;
+
+    private AnswerKey(String examId, String examTitle, String[] questionIds, int[] correctStart, String[] correctIds) {
+        this.examId = examId;
+        this.examTitle = examTitle;
+        this.questionIds = questionIds;
+        this.correctStart = correctStart;
+        this.correctIds = correctIds;
+    }
+
+    /**
+     * @param questionIds     every question of the exam, in any order
+     * @param correctOptions  for each question (same order), its correct option ids; may be empty
+     */
+    public static AnswerKey of(String examId, String examTitle, List<String> questionIds, List<List<String>> correctOptions) {
+        int n = questionIds.size();
+        // Sort in Java rather than trusting the database collation, binarySearch needs String order
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> questionIds.get(a).compareTo(questionIds.get(b)));
+
+        int total = 0;
+        for (List<String> ids : correctOptions) total += ids.size();
+
+        String[] qIds = new String[n];
+        int[] start = new int[n + 1];
+        String[] ids = new String[total];
+        int pos = 0;
+        for (int i = 0; i < n; i++) {
+            qIds[i] = questionIds.get(order[i]).intern();
+            start[i] = pos;
+            for (String optionId : correctOptions.get(order[i])) ids[pos++] = optionId.intern();
+        }
+        start[n] = pos;
+        return new AnswerKey(examId, examTitle, qIds, start, ids);
+    }
+
+    /** Number of answers in the submission that pick a correct option of their question. */
+    public int score(Map<String, ?> answers) {
+        int score = 0;
+        for (int i = 0; i < questionIds.length; i++) {
+            Object chosen = answers.get(questionIds[i]);
+            if (chosen != null && isCorrect(i, chosen)) score++;
+        }
+        return score;
+    }
+
+    /** The submission cut down to this exam's questions: question id -> chosen option id. */
+    public Map<String, String> chosen(Map<String, ?> answers) {
+        Map<String, String> chosen = new HashMap<>();
+        for (String questionId : questionIds) {
+            Object optionId = answers.get(questionId);
+            if (optionId instanceof String) chosen.put(questionId, (String) optionId);
+        }
+        return chosen;
+    }
+
+    /**
+     * Position of a question in this key, for answers kept in an array indexed
+     * by it (see SubmissionReader); negative for ids not in the exam.
+     */
+    public int indexOf(String questionId) {
+        return Arrays.binarySearch(questionIds, questionId);
+    }
+
+    /** Same as score(Map), for chosen option ids indexed by indexOf; null entries are unanswered. */
+    public int score(String[] chosen) {
+        int score = 0;
+        for (int i = 0; i < questionIds.length; i++) {
+            if (chosen[i] != null && isCorrect(i, chosen[i])) score++;
+        }
+        return score;
+    }
+
+    /** Same as chosen(Map), for chosen option ids indexed by indexOf. */
+    public Map<String, String> chosen(String[] chosen) {
+        Map<String, String> map = new HashMap<>();
+        for (int i = 0; i < questionIds.length; i++) {
+            if (chosen[i] != null) map.put(questionIds[i], chosen[i]);
+        }
+        return map;
+    }
+
+    /** True when optionId is a correct option of the given question; unknown ids are simply wrong. */
+    public boolean isCorrect(String questionId, String optionId) {
+        int i = indexOf(questionId);
+        return i >= 0 && isCorrect(i, optionId);
+    }
+
+    private boolean isCorrect(int question, Object optionId) {
+        for (int j = correctStart[question]; j < correctStart[question + 1]; j++) {
+            if (correctIds[j].equals(optionId)) return true;
+        }
+        return false;
+    }
+
+    public String getExamId() { return examId; }
+
+    public String getExamTitle() { return examTitle; }
+
+    public int getTotalQuestions() { return questionIds.length; }
+}
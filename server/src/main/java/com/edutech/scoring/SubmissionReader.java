@@ -0,0 +1,107 @@
+package com.edutech.scoring;
+
+import com.edutech.config.Env;
+import com.edutech.util.JsonUtil;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads an answer sheet ({"questionId": "optionId", ...}) token by token from
+ * the request stream, straight into an array indexed like the exam's AnswerKey,
+ * so no Map or boxed values are built for a submission.
+ *
+ * The body is capped at SUBMISSION_MAX_BYTES (default 256 KiB) and at one entry
+ * per question of the exam; anything else than a flat object of strings (or
+ * nulls, meaning unanswered) is refused as soon as it is seen, without reading
+ * the rest. Ids that are not questions of the exam count against the limit and
+ * are otherwise ignored; for a repeated id the last value wins.
+ */
+public final class SubmissionReader {
+
+    private static final long MAX_BYTES = Env.getLong("SUBMISSION_MAX_BYTES", 256 * 1024);
+
+    /** A body refused before it was fully read; status is the HTTP status to answer with. */
+    public static class Rejected extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        Rejected(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+
+        public int getStatus() { return status; }
+    }
+
+    private SubmissionReader() {}
+
+    /** @return chosen option ids indexed by key.indexOf, null where unanswered */
+    public static String[] read(HttpServletRequest req, AnswerKey key) throws IOException {
+        // 1. Declared too large: refuse without reading anything
+        if (req.getContentLengthLong() > MAX_BYTES) throw tooLarge();
+
+        String[] chosen = new String[key.getTotalQuestions()];
+        int entries = 0;
+        try (JsonParser p = JsonUtil.parser(new LimitedInputStream(req.getInputStream(), MAX_BYTES))) {
+            // 2. One flat object of question id -> option id
+            if (p.nextToken() != JsonToken.START_OBJECT) throw malformed();
+            String questionId;
+            while ((questionId = p.nextFieldName()) != null) {
+                if (++entries > chosen.length) throw new Rejected(400, "Too many answers");
+                JsonToken value = p.nextToken();
+                if (value == JsonToken.VALUE_NULL) continue;
+                if (value != JsonToken.VALUE_STRING) throw new Rejected(400, "Answers must map question ids to option ids");
+                int question = key.indexOf(questionId);
+                if (question >= 0) chosen[question] = p.getText();
+            }
+            if (p.currentToken() != JsonToken.END_OBJECT) throw malformed();
+
+            // 3. Nothing may follow the object
+            if (p.nextToken() != null) throw malformed();
+        } catch (JsonProcessingException e) {
+            // Syntax errors, and the parser's own limits on name and value lengths
+            throw malformed();
+        }
+        return chosen;
+    }
+
+    private static Rejected malformed() {
+        return new Rejected(400, "Answers must be a JSON object");
+    }
+
+    private static Rejected tooLarge() {
+        return new Rejected(413, "Submission larger than " + MAX_BYTES + " bytes");
+    }
+
+    /** Fails the read once more than max bytes came in, for chunked bodies without a Content-Length. */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long max) {
+            super(in);
+            this.remaining = max;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0 && --remaining < 0) throw tooLarge();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            // Ask for one byte past the limit, so a body of exactly max bytes still reads to its end
+            int n = super.read(buf, off, (int) Math.min(len, remaining + 1));
+            if (n > 0 && (remaining -= n) < 0) throw tooLarge();
+            return n;
+        }
+    }
+}
@@ -1,25 +1,54 @@
 package com.edutech.servlet;
 
+import com.edutech.auth.PasswordHashPool;
+import com.edutech.auth.SessionTokens;
+import com.edutech.config.Env;
+import com.edutech.db.ChangeLog;
 import com.edutech.db.DatabaseManager;
+import com.edutech.filter.AuthFilter;
+import com.edutech.filter.RateLimitFilter;
 import com.edutech.model.User;
+import com.edutech.util.Ids;
 import com.edutech.util.JsonUtil;
 import org.mindrot.jbcrypt.BCrypt;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import jakarta.servlet.AsyncContext;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.*;
 import java.io.IOException;
 import java.sql.*;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
-@WebServlet(urlPatterns = {"/api/login", "/api/logout"})
-public class AuthServlet extends HttpServlet {
+@WebServlet(urlPatterns = {"/api/login", "/api/logout"}, asyncSupported = true)
+public class AuthServlet extends BlockingServlet {
+    private static final Logger log = LoggerFactory.getLogger(AuthServlet.class);
+
+    private static final long LOGIN_TIMEOUT_MS = Env.getLong("LOGIN_TIMEOUT_MS", 30_000);
+
+    @Override
+    protected long asyncTimeoutMs() {
+        return LOGIN_TIMEOUT_MS;
+    }
 
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         String uri = req.getRequestURI();
         
         if (uri.endsWith("/logout")) {
-            req.getSession().invalidate();
+            SessionTokens.Session session = (SessionTokens.Session) req.getAttribute(AuthFilter.SESSION_ATTRIBUTE);
+            if (session != null) {
+                long until = SessionTokens.revoke(session);
+                // The other nodes learn about it from the change log
+                try (Connection conn = DatabaseManager.getConnection()) {
+                    ChangeLog.record(conn, ChangeLog.SESSION, ChangeLog.sessionEntity(session.getTokenId(), until));
+                } catch (SQLException e) {
+                    log.error("Could not record logout in the change log", e);
+                }
+            }
+            AuthFilter.clearSessionCookie(req, resp);
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("message", "Logged out successfully");
@@ -28,50 +57,113 @@ public class AuthServlet extends HttpServlet {
         }
 
         // Login Logic
+        String username;
+        String password;
+        String storedHash = null;
+        User user = null;
         try {
             Map<String, String> creds = JsonUtil.parseBody(req, Map.class);
-            String username = creds.get("username");
-            String password = creds.get("password");
-
-            try (Connection conn = DatabaseManager.getConnection()) {
-                PreparedStatement ps = conn.prepareStatement("SELECT * FROM users WHERE username = ?");
-                ps.setString(1, username);
-                ResultSet rs = ps.executeQuery();
-
-                if (rs.next() && BCrypt.checkpw(password, rs.getString("password"))) {
-                    User user = new User(rs.getString("id"), rs.getString("username"), null, rs.getString("role"));
-                    
-                    HttpSession session = req.getSession(true);
-                    session.setAttribute("user", user);
-                    
-                    // Set timeout to 30 mins
-                    session.setMaxInactiveInterval(30 * 60);
-
-                    Map<String, Object> res = new HashMap<>();
-                    res.put("success", true);
-                    res.put("user", user);
-                    JsonUtil.sendJson(resp, res);
-                } else {
-                    resp.setStatus(401);
-                    Map<String, Object> res = new HashMap<>();
-                    res.put("success", false);
-                    res.put("message", "Invalid credentials");
-                    JsonUtil.sendJson(resp, res);
-                }
+            username = creds.get("username");
+            password = creds.get("password");
+        } catch (Exception e) {
+            log.debug("Unreadable login request", e);
+            resp.sendError(400, "Invalid Request Format");
+            return;
+        }
+
+        // 1. Per account, now that the account is known; the filter only limited the address
+        if (!RateLimitFilter.allowLogin(req, resp, username)) return;
+
+        // 2. Fetch the row and give the connection back before any hashing
+        try (Connection conn = DatabaseManager.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement("SELECT id, username, password, role FROM users WHERE username = ?");
+            ps.setString(1, username);
+            ResultSet rs = ps.executeQuery();
+            if (rs.next()) {
+                storedHash = rs.getString("password");
+                user = new User(Ids.read(rs, "id"), rs.getString("username"), null, rs.getString("role"));
             }
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Could not look up login", e);
             resp.sendError(400, "Invalid Request Format");
+            return;
         }
+
+        if (user == null || password == null || storedHash == null) {
+            sendInvalidCredentials(resp);
+            return;
+        }
+
+        // 3. Verify on the bounded hashing pool; the request thread is released meanwhile
+        AsyncContext ctx = keepOpen(req);
+        String hash = storedHash;
+        User found = user;
+        try {
+            PasswordHashPool.submit(() -> {
+                boolean ok = checkPassword(password, hash);
+                try {
+                    // 4. Back on a container thread to touch the session and write the response
+                    ctx.start(() -> finishLogin(ctx, ok ? found : null));
+                } catch (IllegalStateException timedOut) {
+                    // the async timeout already answered this request
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            resp.setStatus(429);
+            resp.setHeader("Retry-After", "2");
+            Map<String, Object> res = new HashMap<>();
+            res.put("success", false);
+            res.put("message", "Too many logins in progress, please retry");
+            JsonUtil.sendJson(resp, res);
+            ctx.complete();
+        }
+    }
+
+    private void finishLogin(AsyncContext ctx, User user) {
+        HttpServletRequest req = (HttpServletRequest) ctx.getRequest();
+        HttpServletResponse resp = (HttpServletResponse) ctx.getResponse();
+        try {
+            if (user != null) {
+                // Signed cookie instead of a server-side session; expires after SESSION_TTL_SECONDS (30 mins) idle
+                AuthFilter.setSessionCookie(req, resp, SessionTokens.issue(user));
+
+                Map<String, Object> res = new HashMap<>();
+                res.put("success", true);
+                res.put("user", user);
+                JsonUtil.sendJson(resp, res);
+            } else {
+                sendInvalidCredentials(resp);
+            }
+        } catch (IOException e) {
+            log.debug("Could not answer login", e);
+        } finally {
+            ctx.complete();
+        }
+    }
+
+    private static boolean checkPassword(String password, String hash) {
+        try {
+            return BCrypt.checkpw(password, hash);
+        } catch (IllegalArgumentException e) {
+            return false; // stored value is not a BCrypt hash
+        }
+    }
+
+    private static void sendInvalidCredentials(HttpServletResponse resp) throws IOException {
+        resp.setStatus(401);
+        Map<String, Object> res = new HashMap<>();
+        res.put("success", false);
+        res.put("message", "Invalid credentials");
+        JsonUtil.sendJson(resp, res);
     }
 
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
-        HttpSession session = req.getSession(false);
+        User user = AuthFilter.currentUser(req);
         Map<String, Object> res = new HashMap<>();
         
-        if (session != null && session.getAttribute("user") != null) {
+        if (user != null) {
             res.put("success", true);
-            res.put("user", session.getAttribute("user"));
+            res.put("user", user);
         } else {
             res.put("success", false);
             res.put("message", "Not logged in");
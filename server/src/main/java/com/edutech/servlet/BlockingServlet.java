@@ -0,0 +1,99 @@
+package com.edutech.servlet;
+
+import com.edutech.config.ExecutionMode;
+import com.edutech.filter.CompressionFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Base for servlets whose handlers block on JDBC. In the virtual execution
+ * mode (see ExecutionMode) service() starts async processing and runs the
+ * usual doGet/doPost/... on a virtual thread, completing the request when the
+ * handler returns. In platform mode it is a plain HttpServlet.
+ *
+ * Subclasses must be mapped with asyncSupported = true.
+ */
+public abstract class BlockingServlet extends HttpServlet {
+    private static final Logger log = LoggerFactory.getLogger(BlockingServlet.class);
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String KEPT_OPEN = BlockingServlet.class.getName() + ".keptOpen";
+
+    @Override
+    protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        if (!ExecutionMode.isVirtual() || req.getDispatcherType() != DispatcherType.REQUEST) {
+            super.service(req, resp);
+            return;
+        }
+
+        AsyncContext ctx = startAsync(req);
+        ExecutionMode.execute(() -> {
+            try {
+                BlockingServlet.super.service(req, resp);
+            } catch (Exception e) {
+                log.error("{} {} failed", req.getMethod(), req.getRequestURI(), e);
+                try {
+                    if (!resp.isCommitted()) resp.sendError(500);
+                } catch (IOException | IllegalStateException ignored) {
+                    // client gone or the request timed out meanwhile
+                }
+            } finally {
+                if (req.getAttribute(KEPT_OPEN) == null) {
+                    try {
+                        // The filter chain returned long ago; the compressed body ends here
+                        CompressionFilter.finish(resp);
+                    } catch (IOException ignored) {
+                        // client gone
+                    }
+                    try {
+                        ctx.complete();
+                    } catch (IllegalStateException timedOut) {
+                        // the timeout listener already completed it
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * For handlers that finish the response later on another thread: the
+     * request stays open after the handler returns and the caller must
+     * complete the returned context (or let asyncTimeoutMs() expire).
+     */
+    protected AsyncContext keepOpen(HttpServletRequest req) {
+        req.setAttribute(KEPT_OPEN, Boolean.TRUE);
+        return req.isAsyncStarted() ? req.getAsyncContext() : startAsync(req);
+    }
+
+    /** Async timeout for requests of this servlet; 0 means the handler always completes them itself. */
+    protected long asyncTimeoutMs() {
+        return 0;
+    }
+
+    // The timeout and listener can only be set on the container thread, so every path goes through here
+    private AsyncContext startAsync(HttpServletRequest req) {
+        AsyncContext ctx = req.startAsync();
+        ctx.setTimeout(asyncTimeoutMs());
+        ctx.addListener(new AsyncListener() {
+            public void onTimeout(AsyncEvent event) throws IOException {
+                ((HttpServletResponse) event.getSuppliedResponse()).sendError(503, "Request timed out");
+                event.getAsyncContext().complete();
+            }
+            public void onComplete(AsyncEvent event) {}
+            public void onError(AsyncEvent event) {}
+            public void onStartAsync(AsyncEvent event) {}
+        });
+        return ctx;
+    }
+}
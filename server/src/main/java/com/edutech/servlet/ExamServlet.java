@@ -1,42 +1,117 @@
 package com.edutech.servlet;
 
+import com.edutech.analytics.ExamAnalytics;
+import com.edutech.attempt.Attempt;
+import com.edutech.attempt.Attempts;
+import com.edutech.cache.AnswerKeyCache;
+import com.edutech.cache.ExamCache;
+import com.edutech.cache.ExamShuffle;
+import com.edutech.cache.ExamSnapshot;
+import com.edutech.cache.ExamView;
+import com.edutech.config.Env;
+import com.edutech.db.ChangeLog;
 import com.edutech.db.DatabaseManager;
+import com.edutech.db.DraftStore;
+import com.edutech.db.ExamLoader;
+import com.edutech.db.ExamWriter;
+import com.edutech.db.ResultWriter;
+import com.edutech.filter.AuthFilter;
 import com.edutech.model.*;
+import com.edutech.scoring.AnswerKey;
+import com.edutech.scoring.SubmissionReader;
+import com.edutech.util.CursorCodec;
+import com.edutech.util.Ids;
 import com.edutech.util.JsonUtil;
+import com.edutech.util.ReadYourWrites;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.*;
 import java.io.IOException;
 import java.sql.*;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 
-@WebServlet(urlPatterns = {"/api/exams/*", "/api/exams/submit/*", "/api/exams/results"})
-public class ExamServlet extends HttpServlet {
+@WebServlet(urlPatterns = {"/api/exams/*", "/api/exams/submit/*", "/api/exams/results"}, asyncSupported = true)
+public class ExamServlet extends BlockingServlet {
+    private static final Logger log = LoggerFactory.getLogger(ExamServlet.class);
+
+    private static final String RESULTS_SELECT =
+        "SELECT r.id, r.student_id, r.exam_id, r.score, r.total_questions, r.submitted_at, u.username, e.title " +
+        "FROM results r " +
+        "JOIN users u ON r.student_id = u.id " +
+        "JOIN exams e ON r.exam_id = e.id";
+    private static final int RESULTS_PAGE_SIZE = Env.getInt("RESULTS_PAGE_SIZE", 100);
+    private static final int RESULTS_MAX_PAGE_SIZE = Env.getInt("RESULTS_MAX_PAGE_SIZE", 1000);
+    private static final String DRAFT_SUFFIX = "/draft";
+    private static final String ATTEMPT_SUFFIX = "/attempt";
+    private static final String STATS_SUFFIX = "/stats";
+    private static final int RESULTS_EXPORT_FETCH_SIZE = Env.getInt("RESULTS_EXPORT_FETCH_SIZE", 1000);
 
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         String path = req.getPathInfo();
-        HttpSession session = req.getSession(false);
-        User currentUser = (session != null) ? (User) session.getAttribute("user") : null;
+        User currentUser = AuthFilter.currentUser(req);
         
         if (currentUser == null) { 
             resp.setStatus(401); 
             return; 
         }
     
-        try (Connection conn = DatabaseManager.getConnection()) {
+        // --- DRAFT LOGIC (the caller's autosaved answers, for restoring an attempt) ---
+        if (path != null && path.endsWith(DRAFT_SUFFIX)) {
+            try {
+                handleGetDraft(resp, draftExamId(path), currentUser);
+            } catch (SQLException e) {
+                log.error("Could not read draft", e);
+                resp.sendError(500);
+            }
+            return;
+        }
+
+        // --- ANALYTICS LOGIC (admin only, running aggregates so the cost does not grow with submissions) ---
+        if (path != null && path.endsWith(STATS_SUFFIX)) {
+            if (!"ADMIN".equals(currentUser.getRole())) { resp.setStatus(403); return; }
+            try {
+                handleGetStats(resp, path.substring(1, path.length() - STATS_SUFFIX.length()));
+            } catch (SQLException e) {
+                log.error("Could not build exam stats", e);
+                resp.sendError(500);
+            }
+            return;
+        }
+
+        // --- EXAM DETAILS LOGIC (served from the snapshot cache, no connection on a hit) ---
+        boolean isResults = req.getRequestURI().contains("/results");
+        if (!isResults && path != null && !path.equals("/")) {
+            try {
+                handleGetExamDetails(req, resp, path.substring(1), currentUser);
+            } catch (SQLException e) {
+                log.error("Could not load exam", e);
+                resp.sendError(500);
+            }
+            return;
+        }
+
+        // Read-only from here on: the replica, unless this caller has just written
+        try (Connection conn = DatabaseManager.getReadConnection(ReadYourWrites.recentlyWrote(req))) {
             // --- RESULTS LOGIC ---
-            if (req.getRequestURI().contains("/results")) {
+            if (isResults) {
                 String studentIdParam = req.getParameter("studentId");
     
                 if ("ADMIN".equals(currentUser.getRole())) {
                     // Admin can see everyone (studentIdParam might be null)
-                    handleGetResults(conn, resp, studentIdParam);
+                    handleGetResults(conn, req, resp, studentIdParam);
                 } 
                 else if ("STUDENT".equals(currentUser.getRole())) {
                     // Student MUST provide a studentId AND it must match their own ID
                     if (studentIdParam != null && studentIdParam.equals(currentUser.getId())) {
-                        handleGetResults(conn, resp, currentUser.getId());
+                        handleGetResults(conn, req, resp, currentUser.getId());
                     } else {
                         resp.setStatus(403); // Forbidden: Trying to see someone else's or no ID
                     }
@@ -44,47 +119,76 @@ public class ExamServlet extends HttpServlet {
                 return;
             }
     
-            // --- EXAM LIST/DETAILS LOGIC ---
-            if (path == null || path.equals("/")) {
-                handleListExams(conn, resp);
-            } else {
-                String examId = path.substring(1);
-                handleGetExamDetails(conn, resp, examId, currentUser.getRole());
-            }
+            // --- EXAM LIST LOGIC ---
+            handleListExams(conn, resp);
         } catch (SQLException e) {
-            e.printStackTrace();
+            log.error("Could not list exams or results", e);
             resp.sendError(500);
         }
     }
 
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         String uri = req.getRequestURI();
-        HttpSession session = req.getSession(false);
-        User currentUser = (session != null) ? (User) session.getAttribute("user") : null;
+        User currentUser = AuthFilter.currentUser(req);
 
         if (currentUser == null) { resp.setStatus(401); return; }
 
+        if (uri.endsWith(ATTEMPT_SUFFIX)) {
+            String path = req.getPathInfo();
+            try {
+                handleStartAttempt(resp, path.substring(1, path.length() - ATTEMPT_SUFFIX.length()), currentUser);
+            } catch (SQLException e) {
+                log.error("Could not start attempt", e);
+                resp.sendError(500);
+            }
+            return;
+        }
+
+        if (uri.contains("/submit")) {
+            String[] parts = uri.split("/");
+            String examId = parts[parts.length - 1]; 
+            try {
+                handleSubmitExam(req, resp, examId, currentUser);
+            } catch (SQLException e) {
+                log.error("Could not submit exam {}", examId, e);
+                resp.sendError(500, e.getMessage());
+            }
+            return;
+        }
+
+        if (!"ADMIN".equals(currentUser.getRole())) { resp.setStatus(403); return; }
         try (Connection conn = DatabaseManager.getConnection()) {
-            if (uri.contains("/submit")) {
-                String[] parts = uri.split("/");
-                String examId = parts[parts.length - 1]; 
-                handleSubmitExam(conn, req, resp, examId, currentUser);
+            if (uri.endsWith("/import")) {
+                handleImportExams(conn, req, resp);
             } else {
-                if (!"ADMIN".equals(currentUser.getRole())) { resp.setStatus(403); return; }
                 handleCreateExam(conn, req, resp);
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            log.error("Could not save exam", e);
             resp.sendError(500, e.getMessage());
         }
     }
 
+    protected void doPut(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        String path = req.getPathInfo();
+        User currentUser = AuthFilter.currentUser(req);
+
+        if (currentUser == null) { resp.setStatus(401); return; }
+        if (path == null || !path.endsWith(DRAFT_SUFFIX)) { resp.setStatus(405); return; }
+        try {
+            handleSaveDraft(req, resp, draftExamId(path), currentUser);
+        } catch (SQLException e) {
+            log.error("Could not save draft", e);
+            resp.sendError(500);
+        }
+    }
+
     private void handleListExams(Connection conn, HttpServletResponse resp) throws SQLException, IOException {
         List<Exam> exams = new ArrayList<>();
         ResultSet rs = conn.createStatement().executeQuery("SELECT * FROM exams");
         while (rs.next()) {
             Exam e = new Exam();
-            e.setId(rs.getString("id"));
+            e.setId(Ids.read(rs, "id"));
             e.setTitle(rs.getString("title"));
             e.setDescription(rs.getString("description"));
             e.setDurationMinutes(rs.getInt("duration_minutes"));
@@ -93,212 +197,354 @@ public class ExamServlet extends HttpServlet {
         JsonUtil.sendJson(resp, exams);
     }
 
-    private void handleGetExamDetails(Connection conn, HttpServletResponse resp, String examId, String role) throws SQLException, IOException {
-        PreparedStatement ps = conn.prepareStatement("SELECT * FROM exams WHERE id = ?");
-        ps.setString(1, examId);
-        ResultSet rs = ps.executeQuery();
-        if (!rs.next()) { resp.setStatus(404); return; }
-        
-        Exam exam = new Exam();
-        exam.setId(rs.getString("id"));
-        exam.setTitle(rs.getString("title"));
-        exam.setDescription(rs.getString("description"));
-        exam.setDurationMinutes(rs.getInt("duration_minutes"));
-
-        List<Question> questions = new ArrayList<>();
-        PreparedStatement psQ = conn.prepareStatement("SELECT * FROM questions WHERE exam_id = ?");
-        psQ.setString(1, examId);
-        ResultSet rsQ = psQ.executeQuery();
-        
-        while (rsQ.next()) {
-            Question q = new Question();
-            q.setId(rsQ.getString("id"));
-            q.setText(rsQ.getString("text"));
-            q.setExam_id(examId);
-            
-            if ("ADMIN".equals(role)) {
-                q.setCorrect_option_id(rsQ.getString("correct_option_id"));
+    private void handleGetExamDetails(HttpServletRequest req, HttpServletResponse resp, String examId, User user) throws SQLException, IOException {
+        if (!Ids.isValid(examId)) { resp.setStatus(404); return; }
+        ExamView examView = ExamView.forRole(user.getRole());
+        // Exam, questions and options in two round trips on a miss; answers only in the admin view
+        boolean recentWrite = ReadYourWrites.recentlyWrote(req);
+        ExamSnapshot snapshot = ExamCache.get(examId, examView, (id, view) -> {
+            Exam exam;
+            try (Connection conn = DatabaseManager.getReadConnection(recentWrite)) {
+                exam = ExamLoader.load(conn, id, view.includesAnswers());
             }
-
-            List<Option> options = new ArrayList<>();
-            PreparedStatement psO = conn.prepareStatement("SELECT * FROM options WHERE question_id = ?");
-            psO.setString(1, q.getId());
-            ResultSet rsO = psO.executeQuery();
-                
-            while (rsO.next()) {
-                // Use No-Args constructor and setters to avoid constructor mismatches
-                Option option = new Option();
-                option.setId(rsO.getString("id"));
-                option.setQuestion_id(rsO.getString("question_id"));
-                option.setText(rsO.getString("text"));
-                option.setCorrect(rsO.getBoolean("is_correct")); // Important for the frontend
-                
-                options.add(option);
+            // A replica that lags may not have a brand new exam yet; the primary has the final word
+            if (exam == null && DatabaseManager.hasReplica() && !recentWrite) {
+                try (Connection conn = DatabaseManager.getConnection()) {
+                    exam = ExamLoader.load(conn, id, view.includesAnswers());
+                }
             }
-            q.setOptions(options);
-            questions.add(q);
+            return exam;
+        });
+        if (snapshot == null) { resp.setStatus(404); return; }
+        if (examView == ExamView.STUDENT && ExamShuffle.isEnabled()) {
+            // The shared snapshot's bytes in this student's own order, derived from (exam, student)
+            long seed = ExamShuffle.seed(examId, user.getId());
+            JsonUtil.sendVariant(req, resp, snapshot.getBody(), Long.toHexString(seed), snapshot.getLength(),
+                out -> snapshot.writeShuffled(out, seed));
+            return;
         }
-        exam.setQuestions(questions);
-        JsonUtil.sendJson(resp, exam);
+        // Pre-encoded bytes, 304 when the browser already holds this version
+        JsonUtil.sendEncoded(req, resp, snapshot.getBody());
     }
         
     private void handleCreateExam(Connection conn, HttpServletRequest req, HttpServletResponse resp) throws IOException, SQLException {
         Exam examReq = JsonUtil.parseBody(req, Exam.class);
-        String examId = UUID.randomUUID().toString();
     
         conn.setAutoCommit(false); 
-        try {
-            // 1. Insert Exam
-            PreparedStatement psExam = conn.prepareStatement(
-                "INSERT INTO exams (id, title, description, duration_minutes) VALUES (?, ?, ?, ?)");
-            psExam.setString(1, examId);
-            psExam.setString(2, examReq.getTitle());
-            psExam.setString(3, examReq.getDescription());
-            psExam.setInt(4, examReq.getDurationMinutes());
-            psExam.executeUpdate();
-    
-            for (Question q : examReq.getQuestions()) {
-                String qId = UUID.randomUUID().toString();
-    
-                // 2. Insert Question (Clean & Simple)
-                PreparedStatement psQ = conn.prepareStatement(
-                    "INSERT INTO questions (id, exam_id, text) VALUES (?, ?, ?)");
-                psQ.setString(1, qId);
-                psQ.setString(2, examId);
-                psQ.setString(3, q.getText());
-                psQ.executeUpdate();
-    
-                // 3. Insert Options with correct flag
-                for (int i = 0; i < q.getOptions().size(); i++) {
-                    Option opt = q.getOptions().get(i);
-                    String oId = UUID.randomUUID().toString();
-                    
-                    PreparedStatement psOpt = conn.prepareStatement(
-                        "INSERT INTO options (id, question_id, text, is_correct) VALUES (?, ?, ?, ?)");
-                    psOpt.setString(1, oId);
-                    psOpt.setString(2, qId);
-                    psOpt.setString(3, opt.getText());
-                    
-                    // Logic: Mark as correct if it's the first option (or based on your logic)
-                    psOpt.setBoolean(4, (i == 0)); 
-                    
-                    psOpt.executeUpdate();
-                }
-            }
+        try (ExamWriter writer = new ExamWriter(conn)) {
+            // Exam, questions and options go out as three batches in one transaction
+            String examId = writer.add(examReq);
+            writer.flush();
+            // Other nodes drop their cached copies once this commits
+            ChangeLog.record(conn, ChangeLog.EXAM, examId);
             conn.commit();
+            ExamCache.invalidate(examId);
+            AnswerKeyCache.invalidate(examId);
+            ReadYourWrites.markWrite(req, resp);
             
             JsonUtil.sendJson(resp, Map.of("success", true, "message", "Exam created via clean schema"));
         } catch (Exception e) {
             conn.rollback();
-            e.printStackTrace();
+            log.error("Could not create exam", e);
             resp.sendError(500, "Database error: " + e.getMessage());
         } finally {
             conn.setAutoCommit(true);
         }
     }
 
-    private void handleSubmitExam(Connection conn, HttpServletRequest req, HttpServletResponse resp, String examId, User user) throws IOException, SQLException {
-        Map<String, String> answers = JsonUtil.parseBody(req, Map.class);
-        
-        int score = 0;
-        int total = 0;
-        String examTitle = "Unknown";
-    
-        // 1. Get Exam Title
-        PreparedStatement psEx = conn.prepareStatement("SELECT title FROM exams WHERE id = ?");
-        psEx.setString(1, examId);
-        ResultSet rsEx = psEx.executeQuery();
-        if (rsEx.next()) examTitle = rsEx.getString("title");
+    private void handleImportExams(Connection conn, HttpServletRequest req, HttpServletResponse resp) throws IOException, SQLException {
+        // Body is a JSON array of exams; read one element at a time so large banks never sit in memory
+        List<String> ids = new ArrayList<>();
+        List<Map<String, Object>> errors = new ArrayList<>();
+        int index = 0;
     
-        // 2. Fetch all questions for this exam
-        PreparedStatement psQ = conn.prepareStatement("SELECT id FROM questions WHERE exam_id = ?");
-        psQ.setString(1, examId);
-        ResultSet rsQ = psQ.executeQuery();
-        
-        while (rsQ.next()) {
-            total++;
-            String qId = rsQ.getString("id");
-            String studentAnswerOptionId = answers.get(qId);
-            
-            if (studentAnswerOptionId != null) {
-                // 3. Verify if the submitted option ID is marked as correct for this specific question
-                PreparedStatement psCheck = conn.prepareStatement(
-                    "SELECT is_correct FROM options WHERE id = ? AND question_id = ?");
-                psCheck.setString(1, studentAnswerOptionId);
-                psCheck.setString(2, qId);
-                ResultSet rsCheck = psCheck.executeQuery();
-                
-                if (rsCheck.next()) {
-                    if (rsCheck.getBoolean("is_correct")) {
-                        score++;
-                    }
+        conn.setAutoCommit(false);
+        try (ExamWriter writer = new ExamWriter(conn);
+             MappingIterator<Exam> it = JsonUtil.streamArray(req, Exam.class)) {
+            while (it.hasNextValue()) {
+                Exam exam = it.nextValue();
+                try {
+                    // One transaction per exam, so a bad entry does not undo the ones before it
+                    String examId = writer.add(exam);
+                    writer.flush();
+                    ChangeLog.record(conn, ChangeLog.EXAM, examId);
+                    conn.commit();
+                    ids.add(examId);
+                } catch (SQLException e) {
+                    conn.rollback();
+                    writer.discard();
+                    errors.add(Map.of("index", index, "error", String.valueOf(e.getMessage())));
                 }
+                index++;
             }
+        } catch (JsonProcessingException e) {
+            // Malformed element: report where we stopped, keep what was committed
+            errors.add(Map.of("index", index, "error", "Malformed JSON: " + e.getOriginalMessage()));
+        } finally {
+            conn.setAutoCommit(true);
         }
     
-        // 4. Save to Database
-        String resId = UUID.randomUUID().toString();
-        PreparedStatement psIns = conn.prepareStatement(
-            "INSERT INTO results (id, student_id, exam_id, score, total_questions, submitted_at) VALUES (?, ?, ?, ?, ?, ?)");
-        psIns.setString(1, resId);
-        psIns.setString(2, user.getId());
-        psIns.setString(3, examId);
-        psIns.setInt(4, score);
-        psIns.setInt(5, total);
-        psIns.setTimestamp(6, Timestamp.valueOf(LocalDateTime.now()));
-        psIns.executeUpdate();
+        for (String id : ids) {
+            ExamCache.invalidate(id);
+            AnswerKeyCache.invalidate(id);
+        }
+        if (!ids.isEmpty()) ReadYourWrites.markWrite(req, resp);
     
-        // 5. Send Response back to Student
+        Map<String, Object> res = new HashMap<>();
+        res.put("success", errors.isEmpty());
+        res.put("imported", ids.size());
+        res.put("examIds", ids);
+        res.put("errors", errors);
+        JsonUtil.sendJson(resp, res);
+    }
+
+    private void handleStartAttempt(HttpServletResponse resp, String examId, User user) throws IOException, SQLException {
+        if (!Ids.isValid(examId)) { resp.setStatus(404); return; }
+        // Idempotent: a reload gets the attempt it already has, with the original deadline
+        Attempt attempt = Attempts.begin(user.getId(), examId);
+        if (attempt == null) { resp.setStatus(404); return; }
+        if (attempt.isFinished()) { resp.sendError(409, Attempts.Claim.ALREADY_SUBMITTED.getMessage()); return; }
+
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("examId", examId);
+        res.put("startedAt", Instant.ofEpochMilli(attempt.getStartedAt()).toString());
+        res.put("deadline", Instant.ofEpochMilli(attempt.getDeadline()).toString());
+        res.put("remainingSeconds", attempt.remainingMillis() / 1000);
+        JsonUtil.sendJson(resp, res);
+    }
+
+    private void handleSubmitExam(HttpServletRequest req, HttpServletResponse resp, String examId, User user) throws IOException, SQLException {
+        if (!Ids.isValid(examId)) { resp.setStatus(404); return; }
+        // 0. Open attempt inside its deadline, checked in memory before the body is even read
+        Attempts.Claim claim = Attempts.claim(user.getId(), examId);
+        if (claim != Attempts.Claim.OK) { resp.sendError(409, claim.getMessage()); return; }
+
+        boolean accepted = false;
+        try {
+            accepted = scoreAndQueue(req, resp, examId, user);
+        } finally {
+            if (accepted) {
+                Attempts.complete(user.getId(), examId);
+            } else {
+                Attempts.release(user.getId(), examId);
+            }
+        }
+    }
+
+    /** @return true once the result is queued; any other outcome has already been answered */
+    private boolean scoreAndQueue(HttpServletRequest req, HttpServletResponse resp, String examId, User user) throws IOException, SQLException {
+        // 1. Compiled answer key (loaded once per exam, then served from memory)
+        AnswerKey key = answerKey(examId);
+        if (key == null) { resp.setStatus(404); return false; }
+
+        // 2. The request body streamed straight into the key's order, or with fromDraft=true
+        //    whatever autosave last stored for this attempt; scored fully in memory
+        int score;
+        Map<String, String> chosen;
+        if ("true".equals(req.getParameter("fromDraft"))) {
+            Map<String, String> answers = DraftStore.get(user.getId(), examId);
+            if (answers == null) answers = Map.of();
+            score = key.score(answers);
+            chosen = key.chosen(answers);
+        } else {
+            String[] answers;
+            try {
+                answers = SubmissionReader.read(req, key);
+            } catch (SubmissionReader.Rejected e) {
+                resp.sendError(e.getStatus(), e.getMessage());
+                return false;
+            }
+            score = key.score(answers);
+            chosen = key.chosen(answers);
+        }
+
         Result result = new Result();
-        result.setId(resId);
+        result.setId(Ids.newId());
         result.setStudent_id(user.getId());
         result.setStudent_name(user.getUsername());
         result.setExam_id(examId);
-        result.setExam_title(examTitle);
+        result.setExam_title(key.getExamTitle());
         result.setScore(score);
-        result.setTotal_questions(total);
+        result.setTotal_questions(key.getTotalQuestions());
         result.setSubmitted_at(LocalDateTime.now().toString());
-        
+        result.setAnswers(chosen);
+    
+        // 3. Finish the attempt in the database: the same submission sent again to another node is turned away here
+        if (!Attempts.claimRow(result)) {
+            resp.sendError(409, Attempts.Claim.ALREADY_SUBMITTED.getMessage());
+            return false;
+        }
+
+        // 4. Journal and queue for the batched writer; the row reaches the table within RESULT_FLUSH_INTERVAL_MS
+        try {
+            ResultWriter.submit(result);
+        } catch (RejectedExecutionException e) {
+            Attempts.releaseRow(result);
+            resp.setHeader("Retry-After", "1");
+            resp.sendError(503, "Too many submissions in flight, please retry");
+            return false;
+        } catch (IOException e) {
+            Attempts.releaseRow(result);
+            throw e;
+        }
+        DraftStore.remove(user.getId(), examId);
+        // Their results list must show this row even if it is served before the replica has it
+        ReadYourWrites.markWrite(req, resp);
+    
+        // 5. Send Response back to Student
         JsonUtil.sendJson(resp, result);
+        return true;
     }
-    private void handleGetResults(Connection conn, HttpServletResponse resp, String studentId) throws SQLException, IOException {
-        List<Result> results = new ArrayList<>();
-        
-        // 1. Base SQL query
-        StringBuilder sql = new StringBuilder(
-            "SELECT r.*, u.username, e.title " +
-            "FROM results r " +
-            "JOIN users u ON r.student_id = u.id " +
-            "JOIN exams e ON r.exam_id = e.id"
-        );
+
+    private void handleSaveDraft(HttpServletRequest req, HttpServletResponse resp, String examId, User user) throws IOException, SQLException {
+        if (!Ids.isValid(examId)) { resp.setStatus(404); return; }
+        // Only while the attempt runs; a finished attempt must not grow a new draft row
+        if (!Attempts.isOpen(user.getId(), examId)) { resp.sendError(409, "No open attempt for this exam"); return; }
+        AnswerKey key = answerKey(examId);
+        if (key == null) { resp.setStatus(404); return; }
+        // Same reader as submissions, so a draft can never grow past one answer per question
+        Map<String, String> answers;
+        try {
+            answers = key.chosen(SubmissionReader.read(req, key));
+        } catch (SubmissionReader.Rejected e) {
+            resp.sendError(e.getStatus(), e.getMessage());
+            return;
+        }
+
+        // Memory only; the drafts table sees the latest map within DRAFT_FLUSH_INTERVAL_MS
+        DraftStore.save(user.getId(), examId, answers);
+        JsonUtil.sendJson(resp, Map.of("success", true));
+    }
+
+    private void handleGetDraft(HttpServletResponse resp, String examId, User user) throws IOException, SQLException {
+        if (!Ids.isValid(examId)) { resp.setStatus(404); return; }
+        Map<String, String> answers = DraftStore.get(user.getId(), examId);
+        JsonUtil.sendJson(resp, answers == null ? Map.of() : answers);
+    }
+
+    private void handleGetStats(HttpServletResponse resp, String examId) throws IOException, SQLException {
+        if (!Ids.isValid(examId)) { resp.setStatus(404); return; }
+        Map<String, Object> stats = ExamAnalytics.view(examId);
+        if (stats == null) { resp.setStatus(404); return; }
+        JsonUtil.sendJson(resp, stats);
+    }
+
+    // "/{examId}/draft" -> examId
+    private static String draftExamId(String path) {
+        return path.substring(1, path.length() - DRAFT_SUFFIX.length());
+    }
+
+    private static AnswerKey answerKey(String examId) throws SQLException {
+        return AnswerKeyCache.get(examId, id -> {
+            try (Connection conn = DatabaseManager.getConnection()) {
+                return ExamLoader.loadAnswerKey(conn, id);
+            }
+        });
+    }
+    private void handleGetResults(Connection conn, HttpServletRequest req, HttpServletResponse resp, String studentId) throws SQLException, IOException {
+        boolean filterByStudent = studentId != null && !studentId.isEmpty();
+        if (filterByStudent && !Ids.isValid(studentId)) { resp.sendError(400, "Invalid studentId"); return; }
+        if ("true".equals(req.getParameter("export"))) {
+            handleExportResults(conn, resp, filterByStudent ? studentId : null);
+            return;
+        }
     
-        // 2. Add filter if studentId is provided
-        if (studentId != null && !studentId.isEmpty()) {
-            sql.append(" WHERE r.student_id = ?");
+        // 1. Page size and keyset cursor (submitted_at, id of the last row already seen)
+        int limit = RESULTS_PAGE_SIZE;
+        String[] cursor;
+        Timestamp after = null;
+        try {
+            if (req.getParameter("limit") != null) {
+                limit = Math.max(1, Math.min(RESULTS_MAX_PAGE_SIZE, Integer.parseInt(req.getParameter("limit"))));
+            }
+            cursor = CursorCodec.decode(req.getParameter("cursor"), 2);
+            if (cursor != null) {
+                after = new Timestamp(Long.parseLong(cursor[0]));
+                if (!Ids.isValid(cursor[1])) throw new IllegalArgumentException("Invalid cursor");
+            }
+        } catch (IllegalArgumentException e) {
+            resp.sendError(400, "Invalid limit or cursor");
+            return;
         }
-        
-        sql.append(" ORDER BY r.submitted_at DESC");
     
+        // 2. Newest first; the (submitted_at, id) tiebreak makes the order total so no row is skipped or repeated
+        StringBuilder sql = new StringBuilder(RESULTS_SELECT);
+        List<String> where = new ArrayList<>();
+        if (filterByStudent) where.add("r.student_id = ?");
+        if (cursor != null) where.add("(r.submitted_at < ? OR (r.submitted_at = ? AND r.id < ?))");
+        if (!where.isEmpty()) sql.append(" WHERE ").append(String.join(" AND ", where));
+        sql.append(" ORDER BY r.submitted_at DESC, r.id DESC");
+        sql.append(DatabaseManager.isMSSQL() ? " OFFSET 0 ROWS FETCH NEXT ? ROWS ONLY" : " LIMIT ?");
+    
+        List<Result> results = new ArrayList<>();
+        Timestamp lastSubmittedAt = null;
+        boolean hasMore = false;
         try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
-            if (studentId != null && !studentId.isEmpty()) {
-                ps.setString(1, studentId);
+            int i = 1;
+            if (filterByStudent) Ids.bind(ps, i++, studentId);
+            if (cursor != null) {
+                ps.setTimestamp(i++, after);
+                ps.setTimestamp(i++, after);
+                Ids.bind(ps, i++, cursor[1]);
             }
+            ps.setInt(i, limit + 1); // one extra row tells us whether there is a next page
     
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    Result res = new Result();
-                    res.setId(rs.getString("id"));
-                    res.setStudent_id(rs.getString("student_id"));
-                    res.setStudent_name(rs.getString("username"));
-                    res.setExam_id(rs.getString("exam_id"));
-                    res.setExam_title(rs.getString("title"));
-                    res.setScore(rs.getInt("score"));
-                    res.setTotal_questions(rs.getInt("total_questions"));
-                    res.setSubmitted_at(rs.getString("submitted_at"));
-                    results.add(res);
+                    if (results.size() == limit) { hasMore = true; break; }
+                    results.add(mapResult(rs));
+                    lastSubmittedAt = rs.getTimestamp("submitted_at");
                 }
             }
         }
+    
+        // 3. Body stays a plain array; the cursor for the next page travels in a header
+        if (hasMore) {
+            Result last = results.get(results.size() - 1);
+            resp.setHeader("X-Next-Cursor", CursorCodec.encode(String.valueOf(lastSubmittedAt.getTime()), last.getId()));
+        }
         JsonUtil.sendJson(resp, results);
     }
+
+    private void handleExportResults(Connection conn, HttpServletResponse resp, String studentId) throws SQLException, IOException {
+        String sql = RESULTS_SELECT + (studentId != null ? " WHERE r.student_id = ?" : "") + " ORDER BY r.submitted_at DESC, r.id DESC";
+    
+        try (PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            if (studentId != null) Ids.bind(ps, 1, studentId);
+            ps.setFetchSize(DatabaseManager.streamingFetchSize(RESULTS_EXPORT_FETCH_SIZE));
+    
+            try (ResultSet rs = ps.executeQuery()) {
+                resp.setHeader("Content-Disposition", "attachment; filename=\"results.json\"");
+                try (JsonGenerator gen = JsonUtil.startStream(resp)) {
+                    gen.writeStartArray();
+                    while (rs.next()) {
+                        gen.writeStartObject();
+                        gen.writeStringField("id", Ids.read(rs, "id"));
+                        gen.writeStringField("student_id", Ids.read(rs, "student_id"));
+                        gen.writeStringField("student_name", rs.getString("username"));
+                        gen.writeStringField("exam_id", Ids.read(rs, "exam_id"));
+                        gen.writeStringField("exam_title", rs.getString("title"));
+                        gen.writeNumberField("score", rs.getInt("score"));
+                        gen.writeNumberField("total_questions", rs.getInt("total_questions"));
+                        gen.writeStringField("submitted_at", rs.getString("submitted_at"));
+                        gen.writeEndObject();
+                    }
+                    gen.writeEndArray();
+                }
+            }
+        }
+    }
+
+    private Result mapResult(ResultSet rs) throws SQLException {
+        Result res = new Result();
+        res.setId(Ids.read(rs, "id"));
+        res.setStudent_id(Ids.read(rs, "student_id"));
+        res.setStudent_name(rs.getString("username"));
+        res.setExam_id(Ids.read(rs, "exam_id"));
+        res.setExam_title(rs.getString("title"));
+        res.setScore(rs.getInt("score"));
+        res.setTotal_questions(rs.getInt("total_questions"));
+        res.setSubmitted_at(rs.getString("submitted_at"));
+        return res;
+    }
 }
@@ -0,0 +1,39 @@
+package com.edutech.servlet;
+
+import com.edutech.config.Env;
+import com.edutech.filter.AuthFilter;
+import com.edutech.metrics.Metrics;
+import com.edutech.model.User;
+
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.*;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+@WebServlet("/api/metrics")
+public class MetricsServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    // Lets a Prometheus scraper in without an admin login
+    private static final String SCRAPE_TOKEN = Env.get("METRICS_TOKEN", null);
+
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        User u = AuthFilter.currentUser(req);
+        boolean admin = u != null && "ADMIN".equals(u.getRole());
+        if (!admin && !hasScrapeToken(req)) { resp.setStatus(403); return; }
+
+        resp.setContentType("text/plain; version=0.0.4; charset=utf-8");
+        PrintWriter out = resp.getWriter();
+        Metrics.writePrometheus(out);
+        out.flush();
+    }
+
+    private boolean hasScrapeToken(HttpServletRequest req) {
+        String header = req.getHeader("Authorization");
+        if (SCRAPE_TOKEN == null || header == null || !header.startsWith("Bearer ")) return false;
+        return MessageDigest.isEqual(SCRAPE_TOKEN.getBytes(StandardCharsets.UTF_8),
+            header.substring(7).trim().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,22 @@
+package com.edutech.servlet;
+
+import com.edutech.filter.AuthFilter;
+import com.edutech.metrics.Metrics;
+import com.edutech.model.User;
+import com.edutech.util.JsonUtil;
+
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.*;
+import java.io.IOException;
+
+@WebServlet(urlPatterns = {"/api/stats", "/api/cache/stats"})
+public class StatsServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        User u = AuthFilter.currentUser(req);
+        if (u == null || !"ADMIN".equals(u.getRole())) { resp.setStatus(403); return; }
+
+        JsonUtil.sendJson(resp, Metrics.componentStats());
+    }
+}
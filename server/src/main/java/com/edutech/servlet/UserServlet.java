@@ -1,57 +1,118 @@
 package com.edutech.servlet;
 
+import com.edutech.auth.SessionTokens;
+import com.edutech.config.Env;
+import com.edutech.db.ChangeLog;
 import com.edutech.db.DatabaseManager;
+import com.edutech.db.RosterImport;
+import com.edutech.filter.AuthFilter;
 import com.edutech.model.User;
+import com.edutech.util.CursorCodec;
+import com.edutech.util.Ids;
 import com.edutech.util.JsonUtil;
+import com.edutech.util.ReadYourWrites;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
 import org.mindrot.jbcrypt.BCrypt;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.*;
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.sql.*;
 import java.util.*;
 
-@WebServlet("/api/users/*")
-public class UserServlet extends HttpServlet {
+@WebServlet(urlPatterns = "/api/users/*", asyncSupported = true)
+public class UserServlet extends BlockingServlet {
+    private static final Logger log = LoggerFactory.getLogger(UserServlet.class);
+
+    private static final int USERS_PAGE_SIZE = Env.getInt("USERS_PAGE_SIZE", 100);
+    private static final int USERS_MAX_PAGE_SIZE = Env.getInt("USERS_MAX_PAGE_SIZE", 1000);
+    private static final TypeReference<Map<String, Object>> ROSTER_ROW = new TypeReference<>() {};
 
     private boolean isAdmin(HttpServletRequest req) {
-        HttpSession session = req.getSession(false);
-        if(session == null) return false;
-        User u = (User) session.getAttribute("user");
+        User u = AuthFilter.currentUser(req);
         return u != null && "ADMIN".equals(u.getRole());
     }
 
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         if (!isAdmin(req)) { resp.setStatus(403); return; }
 
+        // 1. Page size, optional username prefix and keyset cursor (the last username already seen)
+        int limit = USERS_PAGE_SIZE;
+        String prefix = req.getParameter("q");
+        String[] cursor;
+        try {
+            if (req.getParameter("limit") != null) {
+                limit = Math.max(1, Math.min(USERS_MAX_PAGE_SIZE, Integer.parseInt(req.getParameter("limit"))));
+            }
+            cursor = CursorCodec.decode(req.getParameter("cursor"), 1);
+        } catch (IllegalArgumentException e) {
+            resp.sendError(400, "Invalid limit or cursor");
+            return;
+        }
+        boolean filtered = prefix != null && !prefix.trim().isEmpty();
+
+        // 2. Ordered by username, so both the prefix and the cursor are ranges on idx_users_role_username
+        StringBuilder sql = new StringBuilder("SELECT id, username, role FROM users WHERE role = 'STUDENT'");
+        if (filtered) sql.append(" AND username LIKE ? ESCAPE '!'");
+        if (cursor != null) sql.append(" AND username > ?");
+        sql.append(" ORDER BY username");
+        sql.append(DatabaseManager.isMSSQL() ? " OFFSET 0 ROWS FETCH NEXT ? ROWS ONLY" : " LIMIT ?");
+
         List<Map<String, String>> users = new ArrayList<>();
-        try (Connection conn = DatabaseManager.getConnection()) {
-            ResultSet rs = conn.createStatement().executeQuery("SELECT id, username, role FROM users WHERE role = 'STUDENT'");
-            while (rs.next()) {
-                Map<String, String> u = new HashMap<>();
-                u.put("id", rs.getString("id"));
-                u.put("username", rs.getString("username"));
-                u.put("role", rs.getString("role"));
-                users.add(u);
+        boolean hasMore = false;
+        try (Connection conn = DatabaseManager.getReadConnection(ReadYourWrites.recentlyWrote(req));
+             PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            int i = 1;
+            if (filtered) ps.setString(i++, likePrefix(prefix.trim()));
+            if (cursor != null) ps.setString(i++, cursor[0]);
+            ps.setInt(i, limit + 1); // one extra row tells us whether there is a next page
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if (users.size() == limit) { hasMore = true; break; }
+                    Map<String, String> u = new HashMap<>();
+                    u.put("id", Ids.read(rs, "id"));
+                    u.put("username", rs.getString("username"));
+                    u.put("role", rs.getString("role"));
+                    users.add(u);
+                }
             }
-        } catch (SQLException e) { e.printStackTrace(); }
+        } catch (SQLException e) {
+            log.error("Could not list users", e);
+            resp.sendError(500);
+            return;
+        }
+
+        // 3. Body stays a plain array; the cursor for the next page travels in a header
+        if (hasMore) resp.setHeader("X-Next-Cursor", CursorCodec.encode(users.get(users.size() - 1).get("username")));
         JsonUtil.sendJson(resp, users);
     }
 
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         if (!isAdmin(req)) { resp.setStatus(403); return; }
 
+        if ("/bulk".equals(req.getPathInfo())) {
+            handleBulkCreate(req, resp);
+            return;
+        }
+
         Map<String, String> body = JsonUtil.parseBody(req, Map.class);
-        String uuid = UUID.randomUUID().toString();
+        String uuid = Ids.newId();
         String hashedPassword = BCrypt.hashpw(body.get("password"), BCrypt.gensalt());
 
         try (Connection conn = DatabaseManager.getConnection()) {
             PreparedStatement ps = conn.prepareStatement("INSERT INTO users (id, username, password, role) VALUES (?, ?, ?, 'STUDENT')");
-            ps.setString(1, uuid);
+            Ids.bind(ps, 1, uuid);
             ps.setString(2, body.get("username"));
             ps.setString(3, hashedPassword);
             ps.executeUpdate();
-            
+            ReadYourWrites.markWrite(req, resp);
+
             Map<String, Object> res = new HashMap<>();
             res.put("success", true);
             res.put("userId", uuid);
@@ -67,20 +128,137 @@ public class UserServlet extends HttpServlet {
 
     protected void doDelete(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         if (!isAdmin(req)) { resp.setStatus(403); return; }
-        
+
         String path = req.getPathInfo();
         if (path == null || path.length() < 2) return;
         String userId = path.substring(1);
+        if (!Ids.isValid(userId)) { resp.setStatus(404); return; }
 
         try (Connection conn = DatabaseManager.getConnection()) {
-            PreparedStatement ps = conn.prepareStatement("DELETE FROM users WHERE id = ?");
-            ps.setString(1, userId);
-            ps.executeUpdate();
-            
+            // Delete and log together, so every node revokes the user's sessions
+            conn.setAutoCommit(false);
+            try {
+                PreparedStatement ps = conn.prepareStatement("DELETE FROM users WHERE id = ?");
+                Ids.bind(ps, 1, userId);
+                ps.executeUpdate();
+                ChangeLog.record(conn, ChangeLog.USER, userId);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            SessionTokens.revokeUser(userId);
+            ReadYourWrites.markWrite(req, resp);
+
             Map<String, Object> res = new HashMap<>();
             res.put("success", true);
             res.put("message", "User deleted successfully");
             JsonUtil.sendJson(resp, res);
-        } catch (SQLException e) { e.printStackTrace(); }
+        } catch (SQLException e) {
+            log.error("Could not delete user", e);
+        }
+    }
+
+    private void handleBulkCreate(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        // Roster is a CSV (username,password per line) or a JSON array of {username, password},
+        // read one row at a time and written in batches; only the pending batch is held in memory
+        RosterImport roster = new RosterImport();
+        String contentType = req.getContentType();
+        try {
+            if (contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith("text/csv")) {
+                readCsv(req.getReader(), roster);
+            } else {
+                readJson(req, roster);
+            }
+            roster.flush();
+        } catch (SQLException e) {
+            // Batches before this one stay committed; report what was done
+            log.error("Roster import stopped", e);
+            roster.fail(-1, null, "Database error, import stopped: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            resp.sendError(503, "Import interrupted");
+            return;
+        }
+
+        if (roster.getCreated() > 0) ReadYourWrites.markWrite(req, resp);
+        JsonUtil.sendJson(resp, roster.report());
+    }
+
+    private static void readJson(HttpServletRequest req, RosterImport roster) throws IOException, SQLException, InterruptedException {
+        int index = 0;
+        try (MappingIterator<Map<String, Object>> it = JsonUtil.streamArray(req, ROSTER_ROW)) {
+            while (it.hasNextValue()) {
+                Map<String, Object> row = it.nextValue();
+                roster.add(index++, text(row.get("username")), text(row.get("password")));
+            }
+        } catch (JsonProcessingException e) {
+            // Malformed element: report where we stopped, keep what was committed
+            roster.fail(index, null, "Malformed JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    private static void readCsv(BufferedReader reader, RosterImport roster) throws IOException, SQLException, InterruptedException {
+        int index = 0;
+        boolean first = true;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (first && line.startsWith("\uFEFF")) line = line.substring(1); // spreadsheet exports start with a BOM
+            if (line.isBlank()) continue;
+            List<String> fields = splitCsv(line);
+            // Optional header row
+            if (first && fields != null && "username".equalsIgnoreCase(fields.get(0).trim())) {
+                first = false;
+                continue;
+            }
+            first = false;
+            if (fields == null || fields.size() < 2) {
+                roster.fail(index++, null, "Expected username,password");
+                continue;
+            }
+            roster.add(index++, fields.get(0), fields.get(1));
+        }
+    }
+
+    /** One CSV line; quoted fields may contain commas and doubled quotes. @return null when a quote is left open */
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') field.append(c);
+                else if (i + 1 < line.length() && line.charAt(i + 1) == '"') { field.append('"'); i++; }
+                else quoted = false;
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) return null;
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static String text(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    /** Escapes LIKE wildcards with '!', which means the same to MySQL and SQL Server ('[' is one only on the latter). */
+    private static String likePrefix(String prefix) {
+        boolean isMSSQL = DatabaseManager.isMSSQL();
+        StringBuilder sb = new StringBuilder(prefix.length() + 1);
+        for (char c : prefix.toCharArray()) {
+            if (c == '!' || c == '%' || c == '_' || (isMSSQL && c == '[')) sb.append('!');
+            sb.append(c);
+        }
+        return sb.append('%').toString();
     }
 }
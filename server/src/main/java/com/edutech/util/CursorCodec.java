@@ -0,0 +1,29 @@
+package com.edutech.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque keyset-pagination cursors: the sort key of the last row on a page,
+ * joined and base64url-encoded so clients treat it as a token.
+ */
+public class CursorCodec {
+    private static final char SEPARATOR = '\n';
+
+    public static String encode(String... parts) {
+        String joined = String.join(String.valueOf(SEPARATOR), parts);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(joined.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the parts, or null when the token is missing
+     * @throws IllegalArgumentException when the token is malformed or has the wrong arity
+     */
+    public static String[] decode(String token, int expectedParts) {
+        if (token == null || token.isEmpty()) return null;
+        String joined = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        String[] parts = joined.split(String.valueOf(SEPARATOR), -1);
+        if (parts.length != expectedParts) throw new IllegalArgumentException("Invalid cursor");
+        return parts;
+    }
+}
@@ -0,0 +1,32 @@
+package com.edutech.util;
+
+/**
+ * A JSON body serialized once and kept as bytes: the UTF-8 encoding, an
+ * optional gzip copy, and a strong ETag derived from the content.
+ */
+public final class EncodedJson {
+    private final byte[] utf8;
+    private final byte[] gzip;
+    private final String etag;
+
+    EncodedJson(byte[] utf8, byte[] gzip, String etag) {
+        this.utf8 = utf8;
+        this.gzip = gzip;
+        this.etag = etag;
+    }
+
+    public byte[] getUtf8() { return utf8; }
+
+    /** Null when the body was too small to be worth compressing. */
+    public byte[] getGzip() { return gzip; }
+
+    /** Quoted strong validator for the identity encoding. */
+    public String getEtag() { return etag; }
+
+    /** Quoted strong validator for the gzip encoding (distinct, as RFC 9110 requires). */
+    public String getGzipEtag() { return etag.substring(0, etag.length() - 1) + "-gz\""; }
+
+    public long size() {
+        return utf8.length + (gzip == null ? 0 : gzip.length);
+    }
+}
@@ -1,9 +1,23 @@
 package com.edutech.util;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
 
 public class JsonUtil {
     private static final ObjectMapper mapper = new ObjectMapper();
@@ -17,4 +31,144 @@ public class JsonUtil {
     public static <T> T parseBody(HttpServletRequest req, Class<T> clazz) throws IOException {
         return mapper.readValue(req.getReader(), clazz);
     }
+
+    /**
+     * Opens a generator on the raw response stream for payloads that are
+     * written row by row instead of being built in memory first.
+     */
+    public static JsonGenerator startStream(HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json;charset=UTF-8");
+        return mapper.getFactory().createGenerator(resp.getOutputStream(), JsonEncoding.UTF8);
+    }
+
+    /**
+     * Reads a top-level JSON array element by element straight from the request
+     * stream, so only one element is materialized at a time.
+     */
+    public static <T> MappingIterator<T> streamArray(HttpServletRequest req, Class<T> clazz) throws IOException {
+        return mapper.readerFor(clazz).readValues(req.getInputStream());
+    }
+
+    /** Same as streamArray, for generic element types such as maps. */
+    public static <T> MappingIterator<T> streamArray(HttpServletRequest req, TypeReference<T> type) throws IOException {
+        return mapper.readerFor(type).readValues(req.getInputStream());
+    }
+
+    /** Serializes once so the bytes can be reused for every response of the same payload. */
+    public static EncodedJson encode(Object data, int gzipMinBytes) throws IOException {
+        return encodeUtf8(mapper.writeValueAsBytes(data), gzipMinBytes);
+    }
+
+    /** Same as encode, for a body that was already serialized. */
+    public static EncodedJson encodeUtf8(byte[] utf8, int gzipMinBytes) throws IOException {
+        byte[] gzip = null;
+        if (utf8.length >= gzipMinBytes) {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream(utf8.length / 4 + 64);
+            try (GZIPOutputStream out = new GZIPOutputStream(buf) {{ def.setLevel(Deflater.BEST_COMPRESSION); }}) {
+                out.write(utf8);
+            }
+            gzip = buf.toByteArray();
+        }
+        return new EncodedJson(utf8, gzip, "\"" + digest(utf8) + "\"");
+    }
+
+    /** A token-level parser over an arbitrary stream, for bodies read without binding them to objects. */
+    public static JsonParser parser(InputStream in) throws IOException {
+        return mapper.getFactory().createParser(in);
+    }
+
+    /** A generator over an arbitrary stream, for bodies whose layout the caller needs to know. */
+    public static JsonGenerator generator(OutputStream out) throws IOException {
+        return mapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+    }
+
+    /** The value as a tree, with the same field names and inclusion as sendJson would write. */
+    public static ObjectNode toTree(Object value) {
+        return mapper.valueToTree(value);
+    }
+
+    /**
+     * Writes a pre-encoded body straight to the output stream, answering
+     * 304 Not Modified when the client's If-None-Match already has it.
+     */
+    public static void sendEncoded(HttpServletRequest req, HttpServletResponse resp, EncodedJson body) throws IOException {
+        String acceptEncoding = req.getHeader("Accept-Encoding");
+        boolean useGzip = body.getGzip() != null && acceptEncoding != null && acceptEncoding.contains("gzip");
+        String etag = useGzip ? body.getGzipEtag() : body.getEtag();
+
+        resp.setHeader("ETag", etag);
+        // Views differ by role, so only the browser may keep it, and it must revalidate
+        resp.setHeader("Cache-Control", "private, no-cache");
+        resp.setHeader("Vary", "Accept-Encoding, Cookie");
+
+        if (matchesIfNoneMatch(req.getHeader("If-None-Match"), body)) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        byte[] bytes = useGzip ? body.getGzip() : body.getUtf8();
+        resp.setContentType("application/json;charset=UTF-8");
+        if (useGzip) resp.setHeader("Content-Encoding", "gzip");
+        resp.setContentLength(bytes.length);
+        OutputStream out = resp.getOutputStream();
+        out.write(bytes);
+    }
+
+    /** Writes one caller's variant of a pre-encoded body, e.g. reordered for them. */
+    public interface VariantWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Like sendEncoded, for a per-caller variant of the same content: the ETag
+     * is the body's plus the variant name, so 304s still work without writing
+     * anything, and the variant is produced only when it is actually sent. The
+     * variant must be exactly {@code length} bytes; CompressionFilter gzips it
+     * on the way out when the client accepts that.
+     */
+    public static void sendVariant(HttpServletRequest req, HttpServletResponse resp, EncodedJson body,
+                                   String variant, int length, VariantWriter writer) throws IOException {
+        String etag = body.getEtag().substring(0, body.getEtag().length() - 1) + "-" + variant + "\"";
+        String gzipEtag = etag.substring(0, etag.length() - 1) + "-gz\"";
+        resp.setHeader("ETag", etag);
+        resp.setHeader("Cache-Control", "private, no-cache");
+        resp.setHeader("Vary", "Accept-Encoding, Cookie");
+
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) tag = tag.substring(2);
+                // CompressionFilter serves a gzipped variant under the same tag plus "-gz"
+                if (tag.equals("*") || tag.equals(etag) || tag.equals(gzipEtag)) {
+                    resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return;
+                }
+            }
+        }
+
+        resp.setContentType("application/json;charset=UTF-8");
+        resp.setContentLength(length);
+        writer.writeTo(resp.getOutputStream());
+    }
+
+    private static boolean matchesIfNoneMatch(String header, EncodedJson body) {
+        if (header == null) return false;
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) return true;
+            if (tag.startsWith("W/")) tag = tag.substring(2); // If-None-Match uses weak comparison
+            if (tag.equals(body.getEtag()) || tag.equals(body.getGzipEtag())) return true;
+        }
+        return false;
+    }
+
+    private static String digest(byte[] bytes) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(bytes);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash).substring(0, 27);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
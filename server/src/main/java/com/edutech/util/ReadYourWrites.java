@@ -0,0 +1,48 @@
+package com.edutech.util;
+
+import com.edutech.config.Env;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Keeps a caller on the primary database for a short while after they wrote,
+ * so their next read does not come from a replica that has not caught up yet.
+ *
+ * The marker is a cookie holding the time until which reads stay on the
+ * primary, so it works whichever node serves the next request. The window has
+ * to cover the result writer's flush interval as well as replica lag. A forged
+ * cookie only sends its owner's reads to the primary.
+ */
+public class ReadYourWrites {
+    public static final String COOKIE_NAME = "EDU_WROTE";
+
+    private static final long WINDOW_MS = Env.getLong("DB_READ_YOUR_WRITES_MS", 10_000);
+
+    /** Call after a successful write by this caller. */
+    public static void markWrite(HttpServletRequest req, HttpServletResponse resp) {
+        Cookie cookie = new Cookie(COOKIE_NAME, Long.toString(System.currentTimeMillis() + WINDOW_MS));
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        cookie.setSecure(req.isSecure());
+        cookie.setMaxAge((int) Math.max(1, (WINDOW_MS + 999) / 1000));
+        cookie.setAttribute("SameSite", "Lax");
+        resp.addCookie(cookie);
+    }
+
+    /** @return true while the caller's last write may not have reached the replica */
+    public static boolean recentlyWrote(HttpServletRequest req) {
+        Cookie[] cookies = req.getCookies();
+        if (cookies == null) return false;
+        for (Cookie c : cookies) {
+            if (!COOKIE_NAME.equals(c.getName())) continue;
+            try {
+                return Long.parseLong(c.getValue()) > System.currentTimeMillis();
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+}
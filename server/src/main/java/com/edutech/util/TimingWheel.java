@@ -0,0 +1,147 @@
+package com.edutech.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashed timing wheel: one thread and a ring of buckets for any number of
+ * timeouts, with O(1) schedule and cancel.
+ *
+ * A timeout due at tick t goes into bucket (t mod size) together with the
+ * number of full turns it still has to wait; every tick the worker walks one
+ * bucket, runs what is due on the executor and decrements the rest. Precision
+ * is one tick, and a timeout never fires early.
+ */
+public final class TimingWheel {
+
+    public static final class Timeout {
+        private final Runnable task;
+        private final long deadline;
+        private volatile boolean cancelled;
+        private long rounds; // worker thread only
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /** O(1): the entry is only flagged and gets dropped when the worker reaches its bucket. */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public long getDeadline() { return deadline; }
+    }
+
+    private final String name;
+    private final long tickMs;
+    private final int mask;
+    private final List<Timeout>[] buckets;
+    private final Executor executor;
+    // Producers never touch the buckets; the worker moves new timeouts in at each tick
+    private final ConcurrentLinkedQueue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private Thread worker;
+    private volatile boolean running;
+    private long startMs;
+    private long tick;
+
+    /**
+     * @param size     rounded up to a power of two
+     * @param executor runs expired tasks, so slow tasks never delay the wheel
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimingWheel(String name, long tickMs, int size, Executor executor) {
+        int n = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+        this.name = name;
+        this.tickMs = tickMs;
+        this.mask = n - 1;
+        this.buckets = new List[n];
+        for (int i = 0; i < n; i++) buckets[i] = new ArrayList<>();
+        this.executor = executor;
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        startMs = System.currentTimeMillis();
+        worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /** Stops ticking; timeouts that have not fired are dropped. */
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        worker.interrupt();
+    }
+
+    /** @param deadline epoch millis; a deadline in the past fires on the next tick */
+    public Timeout schedule(Runnable task, long deadline) {
+        Timeout timeout = new Timeout(task, deadline);
+        pending.incrementAndGet();
+        incoming.add(timeout);
+        return timeout;
+    }
+
+    public int pending() {
+        return pending.get();
+    }
+
+    private void run() {
+        while (running) {
+            long sleep = startMs + (tick + 1) * tickMs - System.currentTimeMillis();
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    continue; // stop() clears running
+                }
+            }
+            transferIncoming();
+            expire(buckets[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void transferIncoming() {
+        for (Timeout t; (t = incoming.poll()) != null; ) {
+            if (t.cancelled) {
+                pending.decrementAndGet();
+                continue;
+            }
+            // Bucket k is walked once tick k has fully elapsed, so flooring never fires early
+            long due = Math.max(tick, (t.deadline - startMs) / tickMs);
+            t.rounds = (due - tick) / buckets.length;
+            buckets[(int) (due & mask)].add(t);
+        }
+    }
+
+    private void expire(List<Timeout> bucket) {
+        int i = 0;
+        while (i < bucket.size()) {
+            Timeout t = bucket.get(i);
+            if (!t.cancelled && t.rounds > 0) {
+                t.rounds--;
+                i++;
+                continue;
+            }
+            // Swap-remove: order inside a bucket does not matter
+            bucket.set(i, bucket.get(bucket.size() - 1));
+            bucket.remove(bucket.size() - 1);
+            pending.decrementAndGet();
+            if (t.cancelled) continue;
+            try {
+                executor.execute(t.task);
+            } catch (RejectedExecutionException e) {
+                // executor shut down: the process is stopping
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.edutech.analytics;
+
+import com.edutech.db.DatabaseManager;
+import com.edutech.db.ExamWriter;
+import com.edutech.db.TestDatabase;
+import com.edutech.model.Exam;
+import com.edutech.model.Option;
+import com.edutech.model.Question;
+import com.edutech.util.Ids;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ExamAnalytics following the results table. Rows are inserted straight into
+ * the table, as another node's writer would, so nothing reaches the aggregates
+ * except through the database.
+ */
+class ExamAnalyticsTest {
+    private static final String DB = "analytics";
+
+    @BeforeAll
+    static void setUp() {
+        TestDatabase.configure(DB);
+        System.setProperty("ANALYTICS_POLL_MS", "20");
+        System.setProperty("ANALYTICS_GAP_MS", "60000");
+    }
+
+    @AfterAll
+    static void tearDown() {
+        ExamAnalytics.shutdown();
+        DatabaseManager.close();
+    }
+
+    @Test
+    void foldsRowsFromEveryNodeAndLateCommitsBelowTheTail() throws Exception {
+        TestDatabase.create(DB);
+        DatabaseManager.init();
+        ExamAnalytics.start();
+        String examId = insertExam();
+
+        // 1. Written before anybody looked: read by the exam's first load
+        for (int i = 0; i < 3; i++) insertResult(examId, i, null);
+        assertEquals(3L, ExamAnalytics.view(examId).get("submissions"));
+
+        // 2. Written afterwards: folded in by the tail poller
+        insertResult(examId, 2, null);
+        insertResult(examId, 1, null);
+        awaitSubmissions(examId, 5);
+
+        // 3. A later seq commits first; the earlier one is a gap until it commits too
+        long max = TestDatabase.count(DB, "SELECT MAX(seq) FROM results");
+        insertResult(examId, 2, max + 2);
+        awaitSubmissions(examId, 6);
+        assertEquals(1, ExamAnalytics.stats().get("openGaps"));
+        insertResult(examId, 0, max + 1);
+        awaitSubmissions(examId, 7);
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((Long) ExamAnalytics.stats().get("cursor") < max + 2) {
+            assertTrue(System.currentTimeMillis() < deadline, "cursor did not move past the filled gap");
+            Thread.sleep(10);
+        }
+        assertEquals(1L, ExamAnalytics.stats().get("gapsFilled"));
+
+        // Nothing counted twice on the way
+        Thread.sleep(100);
+        assertEquals(7L, ExamAnalytics.view(examId).get("submissions"));
+
+        // An older snapshot saved by another node is replaced at shutdown
+        try (Connection conn = TestDatabase.open(DB); PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO exam_stats (exam_id, last_seq, snapshot, updated_at) VALUES (?, 1, '{}', CURRENT_TIMESTAMP)")) {
+            Ids.bind(ps, 1, examId);
+            ps.executeUpdate();
+        }
+        ExamAnalytics.shutdown();
+        assertEquals(1L, ExamAnalytics.stats().get("snapshotsWritten"));
+        assertEquals(max + 2, TestDatabase.count(DB, "SELECT last_seq FROM exam_stats"));
+    }
+
+    private static void awaitSubmissions(String examId, long submissions) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((Long) ExamAnalytics.view(examId).get("submissions") < submissions) {
+            assertTrue(System.currentTimeMillis() < deadline, "aggregates did not reach " + submissions);
+            Thread.sleep(10);
+        }
+        assertEquals(submissions, ExamAnalytics.view(examId).get("submissions"));
+    }
+
+    /** @param seq null to let the database number the row */
+    private static void insertResult(String examId, int score, Long seq) throws SQLException {
+        String sql = "INSERT INTO results (id, student_id, exam_id, score, total_questions" + (seq == null ? ")" : ", seq)") +
+            " VALUES (?, ?, ?, ?, 2" + (seq == null ? ")" : ", ?)");
+        try (Connection conn = TestDatabase.open(DB); PreparedStatement ps = conn.prepareStatement(sql)) {
+            Ids.bind(ps, 1, Ids.newId());
+            Ids.bind(ps, 2, Ids.newId());
+            Ids.bind(ps, 3, examId);
+            ps.setInt(4, score);
+            if (seq != null) ps.setLong(5, seq);
+            ps.executeUpdate();
+        }
+    }
+
+    private static String insertExam() throws SQLException {
+        Exam exam = new Exam();
+        exam.setTitle("Analytics");
+        exam.setDurationMinutes(30);
+        Question q1 = new Question();
+        q1.setText("One");
+        q1.setOptions(List.of(new Option(null, "a", null, null), new Option(null, "b", null, null)));
+        q1.setCorrectOptionIndex(0);
+        Question q2 = new Question();
+        q2.setText("Two");
+        q2.setOptions(List.of(new Option(null, "a", null, null), new Option(null, "b", null, null)));
+        q2.setCorrectOptionIndex(1);
+        exam.setQuestions(List.of(q1, q2));
+        try (Connection conn = TestDatabase.open(DB); ExamWriter writer = new ExamWriter(conn)) {
+            String examId = writer.add(exam);
+            writer.flush();
+            return examId;
+        }
+    }
+}
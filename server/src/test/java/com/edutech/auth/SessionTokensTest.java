@@ -0,0 +1,71 @@
+package com.edutech.auth;
+
+import com.edutech.model.User;
+import com.edutech.util.Ids;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SessionTokensTest {
+
+    private static User student(String name) {
+        return new User(Ids.newId(), name, null, "STUDENT");
+    }
+
+    @Test
+    void refreshKeepsTheSession() {
+        String token = SessionTokens.issue(student("alice"));
+        SessionTokens.Session session = SessionTokens.verify(token);
+
+        SessionTokens.Session refreshed = SessionTokens.verify(SessionTokens.refresh(session));
+        assertNotNull(refreshed);
+        assertEquals(session.getTokenId(), refreshed.getTokenId());
+        assertEquals(session.getUser().getId(), refreshed.getUser().getId());
+        assertEquals("alice", refreshed.getUser().getUsername());
+    }
+
+    @Test
+    void logoutRevokesTokensFromBeforeAndAfterRefresh() {
+        String original = SessionTokens.issue(student("bob"));
+        String refreshed = SessionTokens.refresh(SessionTokens.verify(original));
+
+        // Logging out with either copy ends both
+        SessionTokens.revoke(SessionTokens.verify(original));
+        assertNull(SessionTokens.verify(original));
+        assertNull(SessionTokens.verify(refreshed));
+    }
+
+    @Test
+    void logoutLeavesOtherSessionsOfTheUser() {
+        User carol = student("carol");
+        String laptop = SessionTokens.issue(carol);
+        String phone = SessionTokens.issue(carol);
+
+        SessionTokens.revoke(SessionTokens.verify(laptop));
+        assertNull(SessionTokens.verify(laptop));
+        assertNotNull(SessionTokens.verify(phone));
+    }
+
+    @Test
+    void revocationOutlivesTheLatestRefresh() {
+        SessionTokens.Session session = SessionTokens.verify(SessionTokens.issue(student("dave")));
+        long until = SessionTokens.revoke(session);
+        assertEquals(System.currentTimeMillis() / 1000 + SessionTokens.TTL_SECONDS, until, 1);
+
+        // An older, shorter entry for the same session (say from another node) does not shorten it
+        SessionTokens.revoke(session.getTokenId(), session.getExpiresAt() - 60);
+        assertNull(SessionTokens.verify(SessionTokens.refresh(session)));
+    }
+
+    @Test
+    void rejectsTamperedToken() {
+        String token = SessionTokens.issue(student("erin"));
+        // Not the last character: its low bits are padding and may not change the signature
+        int at = token.length() - 5;
+        char c = token.charAt(at);
+        String tampered = token.substring(0, at) + (c == 'A' ? 'B' : 'A') + token.substring(at + 1);
+        assertNull(SessionTokens.verify(tampered));
+    }
+}
@@ -0,0 +1,295 @@
+package com.edutech.config;
+
+import com.edutech.db.TestDatabase;
+import com.edutech.util.Ids;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.catalina.Context;
+import org.apache.catalina.WebResourceRoot;
+import org.apache.catalina.loader.WebappLoader;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.webresources.DirResourceSet;
+import org.apache.catalina.webresources.StandardRoot;
+import org.apache.tomcat.util.scan.StandardJarScanner;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Two nodes behind one database, as behind a load balancer: two embedded
+ * Tomcats in this JVM, each with its own webapp class loader, so pools, caches,
+ * revocation lists, attempt indexes and aggregates are per node just as in
+ * separate processes. Everything one node learns about the other's writes has
+ * to come through the database.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class TwoNodeTest {
+    private static final String DB = "two_nodes";
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final HttpClient http = HttpClient.newHttpClient();
+
+    private static Node a;
+    private static Node b;
+    private static String admin;
+    private static String examOne;
+    private static String examTwo;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        TestDatabase.create(DB);
+        TestDatabase.configure(DB);
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        System.setProperty("SESSION_KEYS", "1:" + Base64.getEncoder().encodeToString(secret));
+        System.setProperty("CHANGE_LOG_POLL_MS", "20");
+        // Long enough that a gap stays open until the test commits the transaction behind it
+        System.setProperty("CHANGE_LOG_GAP_MS", "60000");
+        System.setProperty("ANALYTICS_POLL_MS", "20");
+        System.setProperty("RESULT_FLUSH_INTERVAL_MS", "20");
+        System.setProperty("RATE_LIMIT_ENABLED", "false");
+        a = new Node("a");
+        b = new Node("b");
+
+        admin = login(a, "admin", TestDatabase.ADMIN_PASSWORD);
+        JsonNode imported = call(a, "POST", "/exams/import", admin,
+            "[" + exam("One") + "," + exam("Two") + "]").json();
+        examOne = imported.get("examIds").get(0).asText();
+        examTwo = imported.get("examIds").get(1).asText();
+    }
+
+    @AfterAll
+    static void tearDown() throws Exception {
+        if (a != null) a.stop();
+        if (b != null) b.stop();
+    }
+
+    /**
+     * Exams cannot be edited through the API, so the edits are committed
+     * straight to the database together with their change log rows, as another
+     * node's writer would. The first one commits after the second, leaving a
+     * seq gap on the node that polls in between.
+     */
+    @Test
+    @Order(1)
+    void examChangesReachTheOtherNodeWhenTheyCommitOutOfOrder() throws Exception {
+        String student = student(a, "caching-student");
+        assertEquals("One", title(b, student, examOne));
+        assertEquals("Two", title(b, student, examTwo));
+
+        try (Connection first = TestDatabase.open(DB); Connection second = TestDatabase.open(DB)) {
+            first.setAutoCommit(false);
+            second.setAutoCommit(false);
+            rename(first, examOne, "One (edited)");
+            rename(second, examTwo, "Two (edited)");
+            second.commit();
+
+            await("the committed change", () -> title(b, student, examTwo).equals("Two (edited)"));
+            await("an open gap", () -> changeLog(b).get("openGaps").asInt() == 1);
+            assertEquals("One", title(b, student, examOne));
+
+            long filled = changeLog(b).get("gapsFilled").asLong();
+            first.commit();
+            await("the late commit", () -> title(b, student, examOne).equals("One (edited)"));
+            await("the gap to close", () -> changeLog(b).get("openGaps").asInt() == 0);
+            assertEquals(filled + 1, changeLog(b).get("gapsFilled").asLong());
+        }
+    }
+
+    @Test
+    @Order(2)
+    void deletedStudentIsSignedOutOnEveryNode() throws Exception {
+        String session = student(b, "deleted-student");
+        JsonNode user = call(b, "GET", "/login", session, null).json();
+        assertTrue(user.get("success").asBoolean());
+
+        assertEquals(200, call(a, "DELETE", "/users/" + user.get("user").get("id").asText(), admin, null).status);
+        assertFalse(signedIn(a, session));
+        await("node b to revoke the session", () -> !signedIn(b, session));
+    }
+
+    @Test
+    @Order(3)
+    void logoutOnOneNodeEndsTheSessionOnTheOther() throws Exception {
+        String session = student(a, "leaving-student");
+        assertTrue(signedIn(b, session));
+
+        assertEquals(200, call(a, "POST", "/logout", session, null).status);
+        assertFalse(signedIn(a, session));
+        // The browser dropped the cookie, but a copy of it must not work elsewhere either
+        await("node b to revoke the session", () -> !signedIn(b, session));
+    }
+
+    /** Attempts started on one node and submitted on the other, and aggregates over both nodes' results. */
+    @Test
+    @Order(4)
+    void attemptsAndAggregatesSpanNodes() throws Exception {
+        String first = student(a, "first-student");
+        String second = student(a, "second-student");
+
+        assertEquals(200, call(a, "POST", "/exams/" + examOne + "/attempt", first, null).status);
+        assertEquals(200, call(b, "POST", "/exams/submit/" + examOne, first, "{}").status);
+        assertEquals(200, call(b, "POST", "/exams/" + examOne + "/attempt", second, null).status);
+        assertEquals(200, call(a, "POST", "/exams/submit/" + examOne, second, "{}").status);
+        await("both results to be written", () -> results() == 2);
+
+        // Node a still holds the first attempt as open; the claim on its row turns the repeat away
+        assertEquals(409, call(a, "POST", "/exams/submit/" + examOne, first, "{}").status);
+        assertEquals(0, stats(a).get("resultWriter").get("duplicatesDropped").asLong());
+        assertEquals(2, results());
+        assertEquals(409, call(b, "POST", "/exams/submit/" + examOne, first, "{}").status);
+
+        await("node a's aggregates", () -> submissions(a) == 2);
+        await("node b's aggregates", () -> submissions(b) == 2);
+    }
+
+    /** One node: the webapp from target/classes, loaded by its own class loader. */
+    private static final class Node {
+        final Tomcat tomcat = new Tomcat();
+        final int port;
+
+        Node(String name) throws Exception {
+            File classes = new File(AppListener.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            Path base = Files.createTempDirectory("node-" + name);
+            // Read once, while this node's ResultWriter starts
+            System.setProperty("RESULT_WAL_PATH", base.resolve("results.wal").toString());
+
+            tomcat.setBaseDir(base.toString());
+            tomcat.setPort(0);
+            tomcat.getEngine().setName("node-" + name);
+            tomcat.getConnector();
+            tomcat.setAddDefaultWebXmlToWebapp(false);
+            Context context = tomcat.addWebapp("", Files.createDirectories(base.resolve("webapp")).toString());
+            WebResourceRoot resources = new StandardRoot(context);
+            resources.addPreResources(new DirResourceSet(resources, "/WEB-INF/classes", classes.getPath(), "/"));
+            resources.addPreResources(new DirResourceSet(resources, "/WEB-INF", classes.getPath() + "/webapp/WEB-INF", "/"));
+            context.setResources(resources);
+
+            // Unlike Launcher: the app's classes come from the webapp, not the shared parent, so statics are per node
+            WebappLoader loader = new WebappLoader();
+            loader.setDelegate(false);
+            context.setLoader(loader);
+            context.setParentClassLoader(TwoNodeTest.class.getClassLoader());
+            StandardJarScanner scanner = (StandardJarScanner) context.getJarScanner();
+            scanner.setScanClassPath(false);
+            scanner.setScanManifest(false);
+
+            tomcat.start();
+            assertTrue(context.getState().isAvailable(), "node " + name + " did not start");
+            port = tomcat.getConnector().getLocalPort();
+        }
+
+        void stop() throws Exception {
+            tomcat.stop();
+            tomcat.destroy();
+        }
+    }
+
+    private record Response(int status, String body, String session) {
+        JsonNode json() throws Exception {
+            return mapper.readTree(body);
+        }
+    }
+
+    private static Response call(Node node, String method, String path, String session, String body) throws Exception {
+        HttpRequest.Builder req = HttpRequest.newBuilder(URI.create("http://localhost:" + node.port + "/api" + path))
+            .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body));
+        if (body != null) req.header("Content-Type", "application/json");
+        if (session != null) req.header("Cookie", "EDU_SESSION=" + session);
+        HttpResponse<String> resp = http.send(req.build(), HttpResponse.BodyHandlers.ofString());
+        String issued = null;
+        for (String cookie : resp.headers().allValues("Set-Cookie")) {
+            if (cookie.startsWith("EDU_SESSION=")) issued = cookie.substring(12, cookie.indexOf(';'));
+        }
+        return new Response(resp.statusCode(), resp.body(), issued);
+    }
+
+    private static String login(Node node, String username, String password) throws Exception {
+        Response resp = call(node, "POST", "/login", null,
+            mapper.writeValueAsString(Map.of("username", username, "password", password)));
+        assertEquals(200, resp.status, resp.body);
+        return resp.session;
+    }
+
+    /** Creates a student through the admin API and signs them in on the given node. */
+    private static String student(Node node, String username) throws Exception {
+        String password = username + "-password";
+        Response created = call(a, "POST", "/users", admin,
+            mapper.writeValueAsString(Map.of("username", username, "password", password)));
+        assertEquals(200, created.status, created.body);
+        return login(node, username, password);
+    }
+
+    private static boolean signedIn(Node node, String session) throws Exception {
+        return call(node, "GET", "/login", session, null).json().get("success").asBoolean();
+    }
+
+    private static String title(Node node, String session, String examId) throws Exception {
+        return call(node, "GET", "/exams/" + examId, session, null).json().get("title").asText();
+    }
+
+    private static JsonNode stats(Node node) throws Exception {
+        return call(node, "GET", "/stats", admin, null).json();
+    }
+
+    private static JsonNode changeLog(Node node) throws Exception {
+        return stats(node).get("changeLog");
+    }
+
+    private static long submissions(Node node) throws Exception {
+        return call(node, "GET", "/exams/" + examOne + "/stats", admin, null).json().get("submissions").asLong();
+    }
+
+    private static long results() throws Exception {
+        return TestDatabase.count(DB, "SELECT COUNT(*) FROM results");
+    }
+
+    /** An exam edit and its change log row, in the caller's open transaction. */
+    private static void rename(Connection conn, String examId, String title) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement("UPDATE exams SET title = ? WHERE id = ?")) {
+            ps.setString(1, title);
+            Ids.bind(ps, 2, examId);
+            assertEquals(1, ps.executeUpdate());
+        }
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO change_log (kind, entity, origin, created_at) VALUES ('EXAM', ?, 'test', ?)")) {
+            ps.setString(1, examId);
+            ps.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
+            ps.executeUpdate();
+        }
+    }
+
+    private static String exam(String title) {
+        return "{\"title\": \"" + title + "\", \"durationMinutes\": 30, \"questions\": [" +
+            "{\"text\": \"Q\", \"options\": [{\"text\": \"a\"}, {\"text\": \"b\"}], \"correctOptionIndex\": 1}]}";
+    }
+
+    private static void await(String what, Callable<Boolean> condition) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.call()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out waiting for " + what);
+            Thread.sleep(20);
+        }
+    }
+}
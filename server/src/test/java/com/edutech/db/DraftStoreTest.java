@@ -0,0 +1,65 @@
+package com.edutech.db;
+
+import com.edutech.util.Ids;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * DraftStore against H2: a flush must not replace a draft that another node
+ * has already written with a later save.
+ */
+class DraftStoreTest {
+    private static final String DB = "draft_store";
+
+    @BeforeAll
+    static void setUp() throws SQLException {
+        TestDatabase.create(DB);
+        TestDatabase.configure(DB);
+        System.setProperty("DRAFT_FLUSH_INTERVAL_MS", "20");
+        DatabaseManager.init();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        DatabaseManager.close();
+    }
+
+    @Test
+    void olderSaveDoesNotOverwriteNewerDraft() throws Exception {
+        String student = Ids.newId();
+        String newer = Ids.newId();
+        String older = Ids.newId();
+
+        // Node A flushed a save made a second from now; node B still holds one made before it
+        insertDraft(student, newer, "{\"q\":\"newer\"}", System.currentTimeMillis() + 1000);
+        insertDraft(student, older, "{\"q\":\"older\"}", System.currentTimeMillis() - 1000);
+        DraftStore.start();
+        DraftStore.save(student, newer, Map.of("q", "stale"));
+        DraftStore.save(student, older, Map.of("q", "latest"));
+        DraftStore.shutdown();
+
+        assertEquals(Map.of("q", "newer"), DraftStore.get(student, newer));
+        assertEquals(Map.of("q", "latest"), DraftStore.get(student, older));
+    }
+
+    private static void insertDraft(String student, String exam, String answers, long updatedAt) throws SQLException {
+        try (Connection conn = TestDatabase.open(DB);
+             PreparedStatement ps = conn.prepareStatement(
+                 "INSERT INTO drafts (student_id, exam_id, answers, updated_at) VALUES (?, ?, ?, ?)")) {
+            Ids.bind(ps, 1, student);
+            Ids.bind(ps, 2, exam);
+            ps.setString(3, answers);
+            ps.setTimestamp(4, new Timestamp(updatedAt));
+            ps.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.edutech.db;
+
+import com.edutech.model.Exam;
+import com.edutech.model.Option;
+import com.edutech.model.Question;
+import com.edutech.scoring.AnswerKey;
+import com.edutech.util.Ids;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExamLoaderTest {
+    private static final String DB = "exam_loader";
+    private static final int OPTIONS = 4;
+
+    @BeforeAll
+    static void createSchema() throws SQLException {
+        TestDatabase.create(DB);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 100})
+    void loadsWholeExamInTwoQueries(int questions) throws SQLException {
+        try (Connection conn = TestDatabase.open(DB)) {
+            String examId = insertExam(conn, questions);
+
+            AtomicInteger executions = new AtomicInteger();
+            Exam exam = ExamLoader.load(TestDatabase.counting(conn, executions), examId, true);
+
+            assertEquals(2, executions.get());
+            assertEquals(questions, exam.getQuestions().size());
+            for (Question q : exam.getQuestions()) {
+                assertEquals(OPTIONS, q.getOptions().size());
+                assertNotNull(q.getCorrect_option_id());
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 100})
+    void studentViewLeavesAnswersOut(int questions) throws SQLException {
+        try (Connection conn = TestDatabase.open(DB)) {
+            String examId = insertExam(conn, questions);
+
+            AtomicInteger executions = new AtomicInteger();
+            Exam exam = ExamLoader.load(TestDatabase.counting(conn, executions), examId, false);
+
+            assertEquals(2, executions.get());
+            for (Question q : exam.getQuestions()) {
+                assertNull(q.getCorrect_option_id());
+                for (Option o : q.getOptions()) assertNull(o.getCorrect());
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 100})
+    void loadsAnswerKeyInTwoQueries(int questions) throws SQLException {
+        try (Connection conn = TestDatabase.open(DB)) {
+            String examId = insertExam(conn, questions);
+
+            AtomicInteger executions = new AtomicInteger();
+            AnswerKey key = ExamLoader.loadAnswerKey(TestDatabase.counting(conn, executions), examId);
+
+            assertEquals(2, executions.get());
+            for (Question q : ExamLoader.load(conn, examId, true).getQuestions()) {
+                assertTrue(key.isCorrect(q.getId(), q.getCorrect_option_id()));
+            }
+        }
+    }
+
+    @Test
+    void unknownExamStopsAfterOneQuery() throws SQLException {
+        try (Connection conn = TestDatabase.open(DB)) {
+            AtomicInteger executions = new AtomicInteger();
+            assertNull(ExamLoader.load(TestDatabase.counting(conn, executions), Ids.newId(), true));
+            assertEquals(1, executions.get());
+        }
+    }
+
+    private static String insertExam(Connection conn, int questions) throws SQLException {
+        Exam exam = new Exam();
+        exam.setTitle("Exam of " + questions);
+        exam.setDurationMinutes(30);
+        List<Question> qs = new ArrayList<>();
+        for (int i = 0; i < questions; i++) {
+            Question q = new Question();
+            q.setText("Question " + i);
+            List<Option> opts = new ArrayList<>();
+            for (int j = 0; j < OPTIONS; j++) opts.add(new Option(null, "Option " + j, null, null));
+            q.setOptions(opts);
+            q.setCorrectOptionIndex(i % OPTIONS);
+            qs.add(q);
+        }
+        exam.setQuestions(qs);
+        try (ExamWriter writer = new ExamWriter(conn)) {
+            String examId = writer.add(exam);
+            writer.flush();
+            return examId;
+        }
+    }
+}
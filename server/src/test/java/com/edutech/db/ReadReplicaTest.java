@@ -0,0 +1,162 @@
+package com.edutech.db;
+
+import com.edutech.util.Ids;
+import com.edutech.util.ReadYourWrites;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.h2.tools.Server;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.lang.reflect.Proxy;
+import java.net.ServerSocket;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Read routing between two H2 databases: a primary, and a replica served over
+ * TCP so it can be taken down and brought back. Nothing copies rows between
+ * them, so a user added on the primary is a write the replica has not caught
+ * up with, and every read shows which database answered it.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class ReadReplicaTest {
+    private static final String PRIMARY = "rw_primary";
+    private static final String REPLICA = "rw_replica";
+    private static final String USERNAME = "fresh-student";
+    private static String port;
+    private static Server server;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        TestDatabase.create(PRIMARY);
+        TestDatabase.create(REPLICA);
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = Integer.toString(socket.getLocalPort());
+        }
+        server = Server.createTcpServer("-tcpPort", port).start();
+
+        TestDatabase.configure(PRIMARY);
+        System.setProperty("DB_READ_URL", "jdbc:h2:tcp://localhost:" + port + "/" + TestDatabase.url(REPLICA).substring("jdbc:h2:".length()));
+        System.setProperty("DB_READ_POOL_SIZE", "2");
+        System.setProperty("DB_READ_CONNECTION_TIMEOUT_MS", "250");
+        System.setProperty("DB_READ_RETRY_MS", "500");
+        DatabaseManager.init();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!DatabaseManager.hasReplica()) {
+            assertTrue(System.currentTimeMillis() < deadline, "replica pool did not open");
+            Thread.sleep(10);
+        }
+    }
+
+    @AfterAll
+    static void tearDown() {
+        DatabaseManager.close();
+        server.stop();
+    }
+
+    @Test
+    @Order(1)
+    void callerWhoJustWroteReadsFromThePrimary() throws Exception {
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement ps = conn.prepareStatement("INSERT INTO users (id, username, password, role) VALUES (?, ?, 'x', 'STUDENT')")) {
+            Ids.bind(ps, 1, Ids.newId());
+            ps.setString(2, USERNAME);
+            ps.executeUpdate();
+        }
+        List<Cookie> cookies = new ArrayList<>();
+        ReadYourWrites.markWrite(request(), response(cookies));
+        assertEquals(1, cookies.size());
+
+        // The writer is pinned to the primary and sees their write
+        long pinned = stat("pinnedReads");
+        assertTrue(read(request(cookies.toArray(new Cookie[0]))));
+        assertEquals(pinned + 1, stat("pinnedReads"));
+
+        // Everyone else reads from the replica, which does not have it yet
+        long replicaReads = stat("replicaReads");
+        assertFalse(read(request()));
+        assertEquals(replicaReads + 1, stat("replicaReads"));
+
+        // Once the window has passed, so does the writer
+        Cookie expired = new Cookie(ReadYourWrites.COOKIE_NAME, Long.toString(System.currentTimeMillis() - 1));
+        assertFalse(read(request(expired)));
+        assertEquals(replicaReads + 2, stat("replicaReads"));
+        assertEquals(1, stat("healthy"));
+    }
+
+    @Test
+    @Order(2)
+    void readsFallBackToThePrimaryWhileTheReplicaIsDown() throws Exception {
+        server.stop();
+        // Past Hikari's 500ms alive-check bypass, so the next borrow notices the dead connections
+        Thread.sleep(600);
+
+        long fallback = stat("fallbackReads");
+        assertTrue(read(request()));
+        assertEquals(fallback + 1, stat("fallbackReads"));
+        assertEquals(0, stat("healthy"));
+
+        // Within DB_READ_RETRY_MS the replica is not tried again, so the read does not wait for it
+        long start = System.nanoTime();
+        assertTrue(read(request()));
+        assertTrue((System.nanoTime() - start) / 1_000_000 < 250, "read waited for the dead replica");
+        assertEquals(fallback + 2, stat("fallbackReads"));
+
+        // Back up: reads return to it after the retry period
+        server = Server.createTcpServer("-tcpPort", port).start();
+        long replicaReads = stat("replicaReads");
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (read(request())) {
+            assertTrue(System.currentTimeMillis() < deadline, "reads did not return to the replica");
+            Thread.sleep(50);
+        }
+        assertEquals(replicaReads + 1, stat("replicaReads"));
+    }
+
+    /** One read-only request, routed the way the servlets route them. @return whether it saw the new user */
+    private static boolean read(HttpServletRequest req) throws SQLException {
+        try (Connection conn = DatabaseManager.getReadConnection(ReadYourWrites.recentlyWrote(req));
+             PreparedStatement ps = conn.prepareStatement("SELECT 1 FROM users WHERE username = ?")) {
+            ps.setString(1, USERNAME);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static long stat(String name) {
+        return ((Number) DatabaseManager.readPoolStats().get(name)).longValue();
+    }
+
+    private static HttpServletRequest request(Cookie... cookies) {
+        return (HttpServletRequest) Proxy.newProxyInstance(ReadReplicaTest.class.getClassLoader(),
+            new Class<?>[] {HttpServletRequest.class}, (proxy, method, args) -> switch (method.getName()) {
+                case "getCookies" -> cookies.length == 0 ? null : cookies;
+                case "isSecure" -> false;
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+    }
+
+    private static HttpServletResponse response(List<Cookie> cookies) {
+        return (HttpServletResponse) Proxy.newProxyInstance(ReadReplicaTest.class.getClassLoader(),
+            new Class<?>[] {HttpServletResponse.class}, (proxy, method, args) -> {
+                if (!method.getName().equals("addCookie")) throw new UnsupportedOperationException(method.getName());
+                cookies.add((Cookie) args[0]);
+                return null;
+            });
+    }
+}
@@ -0,0 +1,160 @@
+package com.edutech.db;
+
+import com.edutech.model.Result;
+import com.edutech.util.Ids;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ResultWriter against H2: startup replay of a journal, then the flusher's
+ * handling of bad rows and of several results for one attempt.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class ResultWriterTest {
+    private static final String DB = "result_writer";
+    private static Path dir;
+    private static Path wal;
+    private static final List<Result> journaled = new ArrayList<>();
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        dir = Files.createTempDirectory("result-writer");
+        wal = dir.resolve("results.wal");
+        TestDatabase.create(DB);
+        TestDatabase.configure(DB);
+        System.setProperty("RESULT_WAL_PATH", wal.toString());
+        System.setProperty("RESULT_BATCH_RETRIES", "2");
+        System.setProperty("RESULT_RETRY_BACKOFF_MS", "10");
+        System.setProperty("RESULT_FLUSH_INTERVAL_MS", "20");
+
+        // A previous run that crashed after committing some of its journaled results but before truncating
+        ResultJournal journal = new ResultJournal(wal, 1 << 20);
+        for (int i = 0; i < 6; i++) {
+            Result r = ResultJournalTest.result(i);
+            journal.append(r);
+            journaled.add(r);
+        }
+        journal.close();
+        try (Connection conn = TestDatabase.open(DB);
+             PreparedStatement ps = conn.prepareStatement(
+                 "INSERT INTO results (id, student_id, exam_id, score, total_questions, submitted_at) VALUES (?, ?, ?, ?, ?, ?)")) {
+            for (Result r : journaled.subList(0, 3)) {
+                Ids.bind(ps, 1, r.getId());
+                Ids.bind(ps, 2, r.getStudent_id());
+                Ids.bind(ps, 3, r.getExam_id());
+                ps.setInt(4, r.getScore());
+                ps.setInt(5, r.getTotal_questions());
+                ps.setTimestamp(6, Timestamp.valueOf(LocalDateTime.parse(r.getSubmitted_at())));
+                ps.executeUpdate();
+            }
+        }
+
+        DatabaseManager.init();
+        ResultWriter.start();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        ResultWriter.shutdown();
+        DatabaseManager.close();
+    }
+
+    @Test
+    @Order(1)
+    void replaysPartlyCommittedJournalOncePerResult() throws SQLException {
+        assertEquals(6, TestDatabase.count(DB, "SELECT COUNT(*) FROM results"));
+        assertEquals(6, TestDatabase.count(DB, "SELECT COUNT(DISTINCT id) FROM results"));
+        // Replayed rows carry their answers, the pre-committed ones had none
+        assertEquals(3, TestDatabase.count(DB, "SELECT COUNT(*) FROM results WHERE answers IS NOT NULL"));
+        assertFalse(Files.exists(Path.of(wal + ".1")), "recovered segment is deleted after replay");
+    }
+
+    @Test
+    @Order(2)
+    void deadLettersUnwritableRowWithoutStallingOthers() throws Exception {
+        Result good1 = ResultJournalTest.result(1);
+        Result bad = ResultJournalTest.result(2);
+        bad.setSubmitted_at("not-a-date");
+        Result good2 = ResultJournalTest.result(3);
+        ResultWriter.submit(good1);
+        ResultWriter.submit(bad);
+        ResultWriter.submit(good2);
+
+        awaitRows(8);
+        Path dead = Path.of(wal + ".dead");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!Files.exists(dead) && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        List<String> lines = Files.readAllLines(dead);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).startsWith(bad.getId()));
+        assertEquals(1L, ResultWriter.stats().get("deadLettered"));
+
+        // The flusher is back to batches afterwards
+        ResultWriter.submit(ResultJournalTest.result(4));
+        awaitRows(9);
+    }
+
+    @Test
+    @Order(3)
+    void keepsOnlyTheFirstResultOfAnAttempt() throws Exception {
+        // Both the student's submission and another node's deadline expiry finished the same attempt
+        Result submitted = ResultJournalTest.result(5);
+        Result expired = ResultJournalTest.result(6);
+        expired.setStudent_id(submitted.getStudent_id());
+        expired.setExam_id(submitted.getExam_id());
+        try (Connection conn = TestDatabase.open(DB);
+             PreparedStatement ps = conn.prepareStatement(
+                 "INSERT INTO attempts (student_id, exam_id, started_at, deadline_at) VALUES (?, ?, ?, ?)")) {
+            Ids.bind(ps, 1, submitted.getStudent_id());
+            Ids.bind(ps, 2, submitted.getExam_id());
+            ps.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+            ps.setTimestamp(4, new Timestamp(System.currentTimeMillis() + 60_000));
+            ps.executeUpdate();
+        }
+        ResultWriter.submit(submitted);
+        ResultWriter.submit(expired);
+
+        awaitRows(10);
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((Long) ResultWriter.stats().get("duplicatesDropped") < 1) {
+            assertTrue(System.currentTimeMillis() < deadline, "duplicate not settled in time");
+            Thread.sleep(10);
+        }
+        assertEquals(10, TestDatabase.count(DB, "SELECT COUNT(*) FROM results"));
+        assertEquals(0, TestDatabase.count(DB, "SELECT COUNT(*) FROM attempts WHERE finished_at IS NULL"));
+        try (Connection conn = TestDatabase.open(DB);
+             PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM results WHERE id = ?")) {
+            Ids.bind(ps, 1, submitted.getId());
+            try (var rs = ps.executeQuery()) {
+                rs.next();
+                assertEquals(1, rs.getInt(1));
+            }
+        }
+    }
+
+    private static void awaitRows(long rows) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (TestDatabase.count(DB, "SELECT COUNT(*) FROM results") < rows) {
+            assertTrue(System.currentTimeMillis() < deadline, "results not flushed in time");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.edutech.db;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory H2 databases in MySQL mode with the schema of src/test/resources/schema-h2.sql.
+ * A named database lives until the JVM exits, so several connections (or two app nodes) can share it.
+ */
+public class TestDatabase {
+    public static final String USER = "sa";
+    public static final String PASSWORD = "sa";
+    public static final String ADMIN_PASSWORD = "admin-test";
+
+    public static String url(String name) {
+        return "jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    }
+
+    /** Creates the database and its schema; call once per name. */
+    public static void create(String name) throws SQLException {
+        createEmpty(name);
+        try (Connection conn = open(name); Statement stmt = conn.createStatement()) {
+            stmt.execute("RUNSCRIPT FROM 'classpath:/schema-h2.sql'");
+        }
+    }
+
+    /** Creates the database without any tables, for MigrationRunner to build; call once per name. */
+    public static void createEmpty(String name) throws SQLException {
+        try (Connection conn = open(name); Statement stmt = conn.createStatement()) {
+            // MySQL named locks, as MigrationRunner takes them; H2 has a single writer anyway
+            stmt.execute("CREATE ALIAS GET_LOCK AS 'int getLock(String name, int timeout) { return 1; }'");
+            stmt.execute("CREATE ALIAS RELEASE_LOCK AS 'int releaseLock(String name) { return 1; }'");
+        }
+    }
+
+    public static Connection open(String name) throws SQLException {
+        return DriverManager.getConnection(url(name), USER, PASSWORD);
+    }
+
+    /** Points DatabaseManager.init() at the named database, through the system properties Env reads. */
+    public static void configure(String name) {
+        System.setProperty("DB_URL", url(name));
+        System.setProperty("DB_USERNAME", USER);
+        System.setProperty("DB_PASSWORD", PASSWORD);
+        System.setProperty("Admin_passwd", ADMIN_PASSWORD);
+        System.setProperty("DB_POOL_SIZE", "4");
+    }
+
+    public static long count(String name, String sql) throws SQLException {
+        try (Connection conn = open(name); Statement stmt = conn.createStatement(); var rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    /** Wraps conn so that every statement execution (query, update or batch) increments executions. */
+    public static Connection counting(Connection conn, AtomicInteger executions) {
+        return (Connection) Proxy.newProxyInstance(TestDatabase.class.getClassLoader(), new Class<?>[] {Connection.class},
+            (proxy, method, args) -> {
+                Object result = invoke(conn, method, args);
+                if (result instanceof Statement statement) {
+                    Class<?> type = result instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+                    return Proxy.newProxyInstance(TestDatabase.class.getClassLoader(), new Class<?>[] {type},
+                        (p, m, a) -> {
+                            if (m.getName().startsWith("execute")) executions.incrementAndGet();
+                            return invoke(statement, m, a);
+                        });
+                }
+                return result;
+            });
+    }
+
+    private static Object invoke(Object target, java.lang.reflect.Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
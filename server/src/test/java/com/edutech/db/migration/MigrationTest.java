@@ -0,0 +1,216 @@
+package com.edutech.db.migration;
+
+import com.edutech.db.DatabaseManager;
+import com.edutech.db.TestDatabase;
+import com.edutech.metrics.Metrics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * MigrationRunner and the resulting schema against H2 in MySQL mode. The test
+ * database starts one version behind, so startup has to apply the last
+ * migration; a second run then takes the one-query path. A second database
+ * starts empty and runs the real migrations up to V2, the last one before the
+ * V3 table swap that H2 cannot replay, so the plans of the V2 indexes are
+ * checked against what the migrations build rather than against schema-h2.sql.
+ */
+class MigrationTest {
+    private static final String DB = "migrations";
+    private static final String V2_DB = "migrations_v2";
+    private static final String VERSION_SQL = "SELECT MAX(version) FROM schema_version";
+
+    @BeforeAll
+    static void setUp() throws SQLException {
+        TestDatabase.create(DB);
+        // Undo the latest migration, which H2 can replay (unlike the V3 table swap)
+        try (Connection conn = TestDatabase.open(DB); Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE change_log");
+            stmt.execute("DELETE FROM schema_version WHERE version = 7");
+        }
+        TestDatabase.configure(DB);
+        DatabaseManager.init();
+
+        TestDatabase.createEmpty(V2_DB);
+        try (Connection conn = TestDatabase.open(V2_DB)) {
+            MigrationRunner.migrate(conn, false, 2);
+        }
+    }
+
+    @AfterAll
+    static void tearDown() {
+        DatabaseManager.close();
+    }
+
+    @Test
+    void startupAppliesPendingMigration() throws SQLException {
+        assertEquals(Migrations.latestVersion(), TestDatabase.count(DB, VERSION_SQL));
+        assertEquals(Migrations.ALL.size(), TestDatabase.count(DB, "SELECT COUNT(*) FROM schema_version"));
+    }
+
+    @Test
+    void upToDateSchemaCostsOneQuery() throws SQLException {
+        long versionQueries = queryCount(VERSION_SQL);
+        long locks = queryCount("SELECT GET_LOCK(?, ?)");
+        long start = System.nanoTime();
+        MigrationRunner.migrate();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(versionQueries + 1, queryCount(VERSION_SQL));
+        assertEquals(locks, queryCount("SELECT GET_LOCK(?, ?)"));
+        assertEquals(Migrations.ALL.size(), TestDatabase.count(DB, "SELECT COUNT(*) FROM schema_version"));
+        assertTrue(millis < 1000, "up-to-date check took " + millis + "ms");
+    }
+
+    /**
+     * schema-h2.sql is kept in step with Migrations by hand: its secondary
+     * indexes must be exactly those the MSSQL migrations leave behind. MySQL
+     * has the same ones except where its foreign key index already serves.
+     */
+    @Test
+    void testSchemaHasTheMigratedIndexes() throws SQLException {
+        Map<String, String> h2 = new HashMap<>();
+        try (Connection conn = TestDatabase.open(DB); Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT index_name, table_name FROM information_schema.indexes " +
+                 "WHERE table_schema = 'public' AND index_type_name = 'INDEX' AND index_name LIKE 'idx!_%' ESCAPE '!'")) {
+            while (rs.next()) h2.put(rs.getString(1), rs.getString(2));
+        }
+        Map<String, String> mssql = indexesAfterMigrations(true);
+        Map<String, String> mysql = indexesAfterMigrations(false);
+
+        assertEquals(mssql, h2);
+        for (Map.Entry<String, String> e : mysql.entrySet()) assertEquals(e.getValue(), h2.get(e.getKey()), e.getKey());
+    }
+
+    /** The hot queries served by the V2 indexes, as they are sent, on the database that ran V1 and V2. */
+    @Test
+    void hotQueriesUseTheV2Indexes() throws SQLException {
+        assertEquals(2, TestDatabase.count(V2_DB, VERSION_SQL));
+        // Student's results page, newest first (ExamServlet.handleGetResults)
+        assertPlanUses(V2_DB, "idx_results_student_time",
+            "SELECT r.id, r.score, u.username, e.title FROM results r JOIN users u ON r.student_id = u.id " +
+            "JOIN exams e ON r.exam_id = e.id WHERE r.student_id = ? ORDER BY r.submitted_at DESC, r.id DESC LIMIT ?");
+        // Exam graph (ExamLoader); MySQL serves questions from the index of its foreign key
+        assertNoTableScan(V2_DB, "SELECT q.id AS q_id, o.id AS o_id FROM questions q LEFT JOIN options o ON o.question_id = q.id " +
+            "WHERE q.exam_id = ? ORDER BY q.id, o.id");
+        // Answer key (ExamLoader)
+        assertPlanUses(V2_DB, "idx_options_question_correct",
+            "SELECT q.id AS q_id, o.id AS o_id FROM questions q LEFT JOIN options o ON o.question_id = q.id AND o.is_correct = ? " +
+            "WHERE q.exam_id = ? ORDER BY q.id");
+        // Student directory with prefix search and cursor (UserServlet.doGet)
+        assertPlanUses(V2_DB, "idx_users_role_username",
+            "SELECT id, username, role FROM users WHERE role = 'STUDENT' AND username LIKE ? ESCAPE '!' " +
+            "AND username > ? ORDER BY username LIMIT ?");
+    }
+
+    /** The hot queries on the indexes of later migrations, on the schema of schema-h2.sql. */
+    @Test
+    void hotQueriesUseTheirIndexes() throws SQLException {
+        // Exam graph on the index MSSQL gets instead of a foreign key index, as schema-h2.sql has it
+        assertPlanUses(DB, "idx_questions_exam",
+            "SELECT q.id AS q_id, o.id AS o_id FROM questions q LEFT JOIN options o ON o.question_id = q.id " +
+            "WHERE q.exam_id = ? ORDER BY q.id, o.id");
+        // Analytics tail, attempt rebuild scan and change log pruning
+        assertPlanUses(DB, "idx_results_exam_seq", "SELECT score FROM results WHERE exam_id = ? AND seq > ? ORDER BY seq");
+        // Analytics tail of every exam, on the unique index of seq, which the database names itself
+        String tail = plan(DB, "SELECT seq, exam_id, score, answers FROM results WHERE seq > ? ORDER BY seq LIMIT ?");
+        assertTrue(tail.contains("public.CONSTRAINT_INDEX_") && tail.contains("index sorted"), tail);
+        assertPlanUses(DB, "idx_attempts_deadline", "SELECT student_id FROM attempts WHERE deadline_at > ?");
+        assertPlanUses(DB, "idx_attempts_finished", "SELECT student_id FROM attempts WHERE finished_at IS NULL");
+        assertPlanUses(DB, "idx_attempts_finished", "SELECT student_id FROM attempts WHERE finished_at > ?");
+        assertPlanUses(DB, "idx_change_log_created", "DELETE FROM change_log WHERE created_at < ?");
+    }
+
+    private static void assertPlanUses(String db, String index, String sql) throws SQLException {
+        String plan = plan(db, sql);
+        assertTrue(plan.contains("public." + index + ":"), "expected " + index + " in\n" + plan);
+        assertFalse(plan.contains("tableScan"), plan);
+    }
+
+    private static void assertNoTableScan(String db, String sql) throws SQLException {
+        String plan = plan(db, sql);
+        assertFalse(plan.contains("tableScan"), plan);
+    }
+
+    private static String plan(String db, String sql) throws SQLException {
+        try (Connection conn = TestDatabase.open(db); PreparedStatement ps = conn.prepareStatement("EXPLAIN " + sql);
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
+    private static final Pattern INLINE_INDEX = Pattern.compile("(?i)(?:^|,\\s*)(?:UNIQUE\\s+)?INDEX\\s+(\\w+)\\s*\\(");
+    private static final Pattern CREATE_TABLE = Pattern.compile("(?i)^CREATE TABLE (\\w+)");
+    private static final Pattern CREATE_INDEX = Pattern.compile("(?i)^CREATE (?:UNIQUE )?INDEX (\\w+) ON (\\w+)");
+    private static final Pattern ALTER_ADD_INDEX = Pattern.compile("(?i)ADD (?:UNIQUE )?INDEX (\\w+)");
+    private static final Pattern ALTER_TABLE = Pattern.compile("(?i)^ALTER TABLE (\\w+)");
+    private static final Pattern DROP_INDEX = Pattern.compile("(?i)^DROP INDEX (\\w+) ON (\\w+)");
+    private static final Pattern ALTER_DROP_INDEX = Pattern.compile("(?i)DROP INDEX (\\w+)");
+    private static final Pattern DROP_TABLE = Pattern.compile("(?i)^DROP TABLE (.+)$");
+    private static final Pattern RENAME = Pattern.compile("(?i)(\\w+) TO (\\w+)");
+    private static final Pattern SP_RENAME = Pattern.compile("(?i)^EXEC sp_rename '(\\w+)', '(\\w+)'");
+
+    /** Index name -> table, for the named secondary indexes the migrations of one dialect leave behind. */
+    private static Map<String, String> indexesAfterMigrations(boolean isMSSQL) {
+        Map<String, String> indexes = new HashMap<>();
+        for (Migration m : Migrations.ALL) {
+            for (String sql : m.statements(isMSSQL)) {
+                Matcher t = CREATE_TABLE.matcher(sql);
+                Matcher ci = CREATE_INDEX.matcher(sql);
+                Matcher at = ALTER_TABLE.matcher(sql);
+                Matcher di = DROP_INDEX.matcher(sql);
+                Matcher dt = DROP_TABLE.matcher(sql);
+                Matcher sp = SP_RENAME.matcher(sql);
+                if (t.find()) {
+                    Matcher inline = INLINE_INDEX.matcher(sql.substring(sql.indexOf('(') + 1));
+                    while (inline.find()) indexes.put(inline.group(1), t.group(1));
+                } else if (ci.find()) {
+                    indexes.put(ci.group(1), ci.group(2));
+                } else if (di.find()) {
+                    indexes.remove(di.group(1));
+                } else if (at.find()) {
+                    Matcher drop = ALTER_DROP_INDEX.matcher(sql);
+                    while (drop.find()) indexes.remove(drop.group(1));
+                    Matcher add = ALTER_ADD_INDEX.matcher(sql);
+                    while (add.find()) indexes.put(add.group(1), at.group(1));
+                } else if (dt.find()) {
+                    for (String table : dt.group(1).split(",")) indexes.values().removeIf(table.trim()::equals);
+                } else if (sql.regionMatches(true, 0, "RENAME TABLE ", 0, 13)) {
+                    Matcher r = RENAME.matcher(sql.substring(13));
+                    while (r.find()) indexes.replaceAll((name, table) -> table.equals(r.group(1)) ? r.group(2) : table);
+                } else if (sp.find()) {
+                    indexes.replaceAll((name, table) -> table.equals(sp.group(1)) ? sp.group(2) : table);
+                }
+            }
+        }
+        return indexes;
+    }
+
+    /** Executions of one SQL text so far, as Metrics reports them. */
+    private static long queryCount(String sql) {
+        StringWriter out = new StringWriter();
+        Metrics.writePrometheus(new PrintWriter(out));
+        String prefix = "edutech_db_query_duration_seconds_count{sql=\"" + sql + "\"} ";
+        for (String line : out.toString().split("\n")) {
+            if (line.startsWith(prefix)) return Long.parseLong(line.substring(prefix.length()).trim());
+        }
+        return 0;
+    }
+}
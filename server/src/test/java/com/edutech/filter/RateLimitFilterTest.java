@@ -0,0 +1,78 @@
+package com.edutech.filter;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** The per-account login limit: one school behind one address, one account under attack. */
+class RateLimitFilterTest {
+    private static final String SCHOOL = "203.0.113.7";
+
+    @BeforeAll
+    static void setUp() {
+        System.setProperty("RATE_LIMIT_LOGIN", "0.001:3");
+    }
+
+    @Test
+    void classmatesBehindOneAddressDoNotShareABucket() throws IOException {
+        for (int i = 0; i < 500; i++) {
+            assertTrue(login("student" + i, SCHOOL, new Response()), "student" + i);
+        }
+    }
+
+    @Test
+    void oneAccountRunsOutAtOneAddressOnly() throws IOException {
+        for (int i = 0; i < 3; i++) assertTrue(login("alice", SCHOOL, new Response()));
+
+        Response refused = new Response();
+        assertFalse(login("alice", SCHOOL, refused));
+        assertEquals(429, refused.status);
+        assertNotNull(refused.headers.get("Retry-After"));
+        // Same account in another case is the same account
+        assertFalse(login("ALICE", SCHOOL, new Response()));
+
+        // Nobody elsewhere is locked out by it
+        assertTrue(login("alice", "198.51.100.1", new Response()));
+    }
+
+    private static boolean login(String username, String address, Response response) throws IOException {
+        return RateLimitFilter.allowLogin(request(address), response.proxy(), username);
+    }
+
+    private static HttpServletRequest request(String address) {
+        return (HttpServletRequest) Proxy.newProxyInstance(RateLimitFilterTest.class.getClassLoader(),
+            new Class<?>[] {HttpServletRequest.class}, (proxy, method, args) -> {
+                if (method.getName().equals("getRemoteAddr")) return address;
+                throw new UnsupportedOperationException(method.getName());
+            });
+    }
+
+    /** Records what the filter answers. */
+    private static final class Response {
+        int status = 200;
+        final Map<String, String> headers = new HashMap<>();
+
+        HttpServletResponse proxy() {
+            return (HttpServletResponse) Proxy.newProxyInstance(RateLimitFilterTest.class.getClassLoader(),
+                new Class<?>[] {HttpServletResponse.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "setHeader" -> headers.put((String) args[0], (String) args[1]);
+                        case "sendError" -> status = (Integer) args[0];
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    }
+                    return null;
+                });
+        }
+    }
+}
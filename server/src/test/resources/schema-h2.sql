@@ -0,0 +1,43 @@
+-- The schema as the MySQL migrations leave it, for H2 in MySQL mode.
+-- H2 cannot replay the migrations themselves (V3 swaps tables with a multi-table RENAME),
+-- so this file is kept in step with Migrations by hand; MigrationTest checks its indexes
+-- against the migrations, and the plans of the V2 indexes on a database that really ran V1-V2.
+
+CREATE TABLE users (id BINARY(16) PRIMARY KEY, username VARCHAR(50) UNIQUE, password VARCHAR(255), role VARCHAR(20));
+CREATE INDEX idx_users_role_username ON users (role, username);
+
+CREATE TABLE exams (id BINARY(16) PRIMARY KEY, title VARCHAR(255), description TEXT, duration_minutes INT);
+
+CREATE TABLE questions (id BINARY(16) PRIMARY KEY, exam_id BINARY(16), text TEXT,
+    FOREIGN KEY (exam_id) REFERENCES exams(id) ON DELETE CASCADE);
+CREATE INDEX idx_questions_exam ON questions (exam_id, id);
+
+CREATE TABLE options (id BINARY(16) PRIMARY KEY, question_id BINARY(16), text VARCHAR(255), is_correct BOOLEAN DEFAULT FALSE,
+    FOREIGN KEY (question_id) REFERENCES questions(id) ON DELETE CASCADE);
+CREATE INDEX idx_options_question_correct ON options (question_id, is_correct);
+
+CREATE TABLE results (id BINARY(16) PRIMARY KEY, student_id BINARY(16), exam_id BINARY(16), score INT, total_questions INT,
+    submitted_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, answers MEDIUMTEXT NULL, seq BIGINT NOT NULL AUTO_INCREMENT UNIQUE);
+CREATE INDEX idx_results_student_time ON results (student_id, submitted_at, id);
+CREATE INDEX idx_results_time ON results (submitted_at, id);
+CREATE INDEX idx_results_exam_seq ON results (exam_id, seq);
+
+CREATE TABLE drafts (student_id BINARY(16) NOT NULL, exam_id BINARY(16) NOT NULL, answers MEDIUMTEXT NOT NULL,
+    updated_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3), PRIMARY KEY (student_id, exam_id));
+
+CREATE TABLE attempts (student_id BINARY(16) NOT NULL, exam_id BINARY(16) NOT NULL, started_at DATETIME(3) NOT NULL,
+    deadline_at DATETIME(3) NOT NULL, finished_at DATETIME(3) NULL, result_id BINARY(16) NULL,
+    PRIMARY KEY (student_id, exam_id));
+CREATE INDEX idx_attempts_deadline ON attempts (deadline_at);
+CREATE INDEX idx_attempts_finished ON attempts (finished_at);
+
+CREATE TABLE exam_stats (exam_id BINARY(16) NOT NULL PRIMARY KEY, last_seq BIGINT NOT NULL, snapshot MEDIUMTEXT NOT NULL,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP);
+
+CREATE TABLE change_log (seq BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY, kind VARCHAR(16) NOT NULL, entity VARCHAR(64) NOT NULL,
+    origin VARCHAR(36) NOT NULL, created_at DATETIME(3) NOT NULL);
+CREATE INDEX idx_change_log_created ON change_log (created_at);
+
+CREATE TABLE schema_version (version INT PRIMARY KEY, description VARCHAR(255), applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP);
+INSERT INTO schema_version (version, description) VALUES (1, 'baseline tables'), (2, 'indexes for hot queries'),
+    (3, 'binary(16) uuid keys'), (4, 'answer drafts'), (5, 'exam attempts'), (6, 'exam analytics'), (7, 'change log');